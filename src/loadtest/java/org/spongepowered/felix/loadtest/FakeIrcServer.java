@@ -0,0 +1,237 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process IRC server which speaks just enough of the protocol for a client to register,
+ * join channels and exchange {@code PRIVMSG}s and {@code NOTICE}s.
+ *
+ * <p>Replies from the client are matched against the messages injected by {@link #inject(LoadProfile.Message, String, int)}
+ * in order, per destination.</p>
+ */
+final class FakeIrcServer implements AutoCloseable {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final String NAME = "fake.server";
+  private final LoadProfile profile;
+  private final ServerSocket socket;
+  private final CountDownLatch joined;
+  private final LatencyRecorder latencies = new LatencyRecorder();
+  private final AtomicInteger expected = new AtomicInteger();
+  private final AtomicInteger unmatched = new AtomicInteger();
+  // destination -> send times of the messages still awaiting a reply there
+  private final Map<String, Queue<Long>> pending = new HashMap<>();
+  private volatile Writer writer;
+  private volatile String nick = "*";
+
+  FakeIrcServer(final LoadProfile profile) throws IOException {
+    this.profile = profile;
+    this.joined = new CountDownLatch(profile.channels);
+    this.socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    final Thread thread = new Thread(this::accept, "Fake IRC server");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  int port() {
+    return this.socket.getLocalPort();
+  }
+
+  LatencyRecorder latencies() {
+    return this.latencies;
+  }
+
+  int expected() {
+    return this.expected.get();
+  }
+
+  int unmatched() {
+    return this.unmatched.get();
+  }
+
+  boolean awaitJoined(final long timeout) throws InterruptedException {
+    return this.joined.await(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends a channel message to the client.
+   *
+   * @param message the message
+   * @param replyTarget where the reply is expected, or {@code null} if none is
+   * @param lines the number of reply lines expected
+   */
+  void inject(final LoadProfile.Message message, final String replyTarget, final int lines) throws IOException {
+    final long now = System.nanoTime();
+    if(replyTarget != null) {
+      synchronized(this.pending) {
+        final Queue<Long> queue = this.pending.computeIfAbsent(replyTarget.toLowerCase(Locale.ENGLISH), key -> new ArrayDeque<>());
+        for(int i = 0; i < lines; i++) {
+          queue.add(now);
+        }
+      }
+      this.expected.addAndGet(lines);
+    }
+    this.send(':' + message.user + '!' + message.user + "@load.test PRIVMSG " + message.channel + " :" + message.text);
+  }
+
+  // Clients are served one after another, so that the startup stand-in can outlive many Felix processes.
+  private void accept() {
+    while(!this.socket.isClosed()) {
+      try(final Socket client = this.socket.accept()) {
+        client.setTcpNoDelay(true);
+        this.nick = "*";
+        this.writer = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while((line = reader.readLine()) != null) {
+          this.receive(line);
+        }
+      } catch(final IOException e) {
+        if(!this.socket.isClosed()) {
+          LOGGER.warn("Fake IRC server connection failed", e);
+        }
+      }
+    }
+  }
+
+  private void receive(final String line) throws IOException {
+    final int space = line.indexOf(' ');
+    final String command = (space == -1 ? line : line.substring(0, space)).toUpperCase(Locale.ENGLISH);
+    final String rest = space == -1 ? "" : line.substring(space + 1);
+    switch(command) {
+      case "CAP":
+        if(rest.startsWith("LS")) {
+          this.send(':' + NAME + " CAP * LS :");
+        } else if(rest.startsWith("REQ")) {
+          this.send(':' + NAME + " CAP * NAK :" + rest.substring(rest.indexOf(':') + 1));
+        }
+        break;
+      case "NICK":
+        this.nick = rest.startsWith(":") ? rest.substring(1) : rest;
+        break;
+      case "USER":
+        this.numeric("001", ":Welcome to the load test network " + this.nick);
+        this.numeric("002", ":Your host is " + NAME);
+        this.numeric("003", ":This server was created just now");
+        this.numeric("004", NAME + " loadtest-1.0 iow ntklovb");
+        this.numeric("005", "PREFIX=(ov)@+ CHANTYPES=# CHANMODES=b,k,l,nt NETWORK=LoadTest CASEMAPPING=ascii :are supported by this server");
+        this.numeric("422", ":MOTD File is missing");
+        break;
+      case "PING":
+        this.send(':' + NAME + " PONG " + NAME + ' ' + rest);
+        break;
+      case "JOIN":
+        for(final String channel : rest.split(" ")[0].split(",")) {
+          this.join(channel);
+        }
+        break;
+      case "WHO":
+        this.numeric("315", rest.split(" ")[0] + " :End of /WHO list.");
+        break;
+      case "MODE":
+        final String target = rest.split(" ")[0];
+        if(target.startsWith("#")) {
+          this.numeric("324", target + " +nt");
+        }
+        break;
+      case "PRIVMSG":
+      case "NOTICE":
+        this.reply(rest.substring(0, rest.indexOf(' ')));
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void join(final String channel) throws IOException {
+    this.send(':' + this.nick + "!felix@load.test JOIN :" + channel);
+    StringBuilder names = new StringBuilder(this.nick);
+    for(int i = 0; i < this.profile.users; i++) {
+      if(names.length() > 400) {
+        this.numeric("353", "= " + channel + " :" + names);
+        names = new StringBuilder();
+      }
+      names.append(names.length() == 0 ? "" : " ").append(this.profile.user(i));
+    }
+    this.numeric("353", "= " + channel + " :" + names);
+    this.numeric("366", channel + " :End of /NAMES list.");
+    this.joined.countDown();
+  }
+
+  private void reply(final String target) {
+    final Long sent;
+    synchronized(this.pending) {
+      final Queue<Long> queue = this.pending.get(target.toLowerCase(Locale.ENGLISH));
+      sent = queue == null ? null : queue.poll();
+    }
+    if(sent == null) {
+      this.unmatched.incrementAndGet();
+    } else {
+      this.latencies.record(System.nanoTime() - sent);
+    }
+  }
+
+  private void numeric(final String numeric, final String rest) throws IOException {
+    this.send(':' + NAME + ' ' + numeric + ' ' + this.nick + ' ' + rest);
+  }
+
+  private void send(final String line) throws IOException {
+    final Writer writer = this.writer;
+    if(writer == null) {
+      throw new IOException("No client is connected");
+    }
+    synchronized(writer) {
+      writer.write(line);
+      writer.write("\r\n");
+      writer.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.socket.close();
+  }
+}
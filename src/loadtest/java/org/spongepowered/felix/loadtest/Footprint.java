@@ -0,0 +1,110 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import com.google.gson.stream.JsonWriter;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.command.CommandConfiguration;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Measures the heap retained by a loaded factoid database.
+ *
+ * <p>The generated database mimics ours: mostly single-alias factoids, with responses drawn from a
+ * limited set of URLs and boilerplate so that many of them repeat.</p>
+ */
+public final class Footprint {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final String[] TEMPLATES = {
+    "https://docs.spongepowered.org/stable/en/plugin/%s.html",
+    "https://jd.spongepowered.org/7.1.0/org/spongepowered/api/%s.html",
+    "Please use a paste site such as https://gist.github.com for %s, not the channel.",
+    "See https://github.com/SpongePowered/SpongeAPI/issues/%s"
+  };
+
+  public static void main(final String[] args) throws IOException {
+    final int factoids = Integer.getInteger("loadtest.factoids", 100_000);
+    // the number of distinct values each template is filled with
+    final int variety = Integer.getInteger("loadtest.variety", 2_000);
+    write(factoids, variety, new Random(Long.getLong("loadtest.seed", 0xfe11fL)));
+
+    final ConfigurationNode config = SimpleConfigurationNode.root();
+    config.getNode("command", "prefix").setValue("!");
+    config.getNode("command", "ignore").setValue(Collections.emptyList());
+    config.getNode("command", "tiered").setValue(Boolean.getBoolean("loadtest.tiered"));
+
+    final long before = used();
+    final CommandConfiguration cc = new CommandConfiguration(config);
+    final long after = used();
+    LOGGER.info(
+      "{} factoids ({} distinct responses) retain {} KiB, {} bytes per factoid",
+      factoids,
+      Math.min(factoids, variety * TEMPLATES.length),
+      (after - before) / 1024,
+      (after - before) / factoids
+    );
+    // Keep the database reachable until it has been measured.
+    LOGGER.debug("Measured version #{}", cc.snapshot().version);
+    System.exit(0);
+  }
+
+  private static long used() {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for(int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static void write(final int factoids, final int variety, final Random random) throws IOException {
+    try(final Writer writer = Files.newBufferedWriter(Paths.get("commands.json"), StandardCharsets.UTF_8); final JsonWriter json = new JsonWriter(writer)) {
+      json.beginArray();
+      for(int i = 0; i < factoids; i++) {
+        json.beginObject();
+        json.name("aliases").beginArray().value("factoid" + i);
+        if(random.nextInt(10) == 0) {
+          json.value("alias" + i);
+        }
+        json.endArray();
+        final String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+        json.name("responses").beginArray().value(String.format(template, random.nextInt(variety))).endArray();
+        json.endObject();
+      }
+      json.endArray();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records latencies, and reports percentiles over them.
+ */
+final class LatencyRecorder {
+  private long[] samples = new long[1024];
+  private int size;
+
+  synchronized void record(final long nanos) {
+    if(this.size == this.samples.length) {
+      this.samples = Arrays.copyOf(this.samples, this.size * 2);
+    }
+    this.samples[this.size++] = nanos;
+  }
+
+  synchronized int count() {
+    return this.size;
+  }
+
+  /**
+   * Gets a percentile, in milliseconds.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency
+   */
+  synchronized double percentile(final double percentile) {
+    if(this.size == 0) {
+      return Double.NaN;
+    }
+    final long[] sorted = Arrays.copyOf(this.samples, this.size);
+    Arrays.sort(sorted);
+    final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000d;
+  }
+}
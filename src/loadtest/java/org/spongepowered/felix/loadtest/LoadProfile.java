@@ -0,0 +1,159 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import org.spongepowered.felix.command.Target;
+
+import java.util.Random;
+
+/**
+ * The shape of a generated message flood, read from {@code loadtest.*} system properties.
+ */
+final class LoadProfile {
+  final int messages = Integer.getInteger("loadtest.messages", 10_000);
+  // messages per second, or 0 to send flat out
+  final int rate = Integer.getInteger("loadtest.rate", 0);
+  final int factoids = Integer.getInteger("loadtest.factoids", 1_000);
+  final int channels = Integer.getInteger("loadtest.channels", 4);
+  final int users = Integer.getInteger("loadtest.users", 50);
+  final double prefixRatio = ratio("loadtest.prefixRatio", 0.05);
+  final double hitRatio = ratio("loadtest.hitRatio", 0.8);
+  // relative weights of DEFAULT, USER_PUBLIC, USER_PRIVATE and SELF
+  final int[] targetWeights = weights(System.getProperty("loadtest.targets", "70,15,5,10"));
+  final long seed = Long.getLong("loadtest.seed", 0xfe11fL);
+  final long timeout = Long.getLong("loadtest.timeout", 60_000L);
+  final char prefix = '!';
+
+  private static double ratio(final String key, final double def) {
+    final String value = System.getProperty(key);
+    return value == null ? def : Double.parseDouble(value);
+  }
+
+  private static int[] weights(final String value) {
+    final String[] split = value.split(",");
+    final int[] weights = new int[Target.values().length];
+    for(int i = 0; i < weights.length && i < split.length; i++) {
+      weights[i] = Integer.parseInt(split[i].trim());
+    }
+    return weights;
+  }
+
+  String channel(final int index) {
+    return "#load" + index;
+  }
+
+  String user(final int index) {
+    return "user" + index;
+  }
+
+  String factoid(final int index) {
+    return "f" + index;
+  }
+
+  /**
+   * Generates the next message.
+   *
+   * @param random the source of randomness
+   * @return the message
+   */
+  Message next(final Random random) {
+    final String channel = this.channel(random.nextInt(this.channels));
+    final String user = this.user(random.nextInt(this.users));
+    if(random.nextDouble() >= this.prefixRatio) {
+      return new Message(channel, user, "just some idle chatter, nothing to see here " + random.nextInt(), null, false);
+    }
+
+    final Target target = this.target(random);
+    final boolean hit = random.nextDouble() < this.hitRatio;
+    final String name = hit ? this.factoid(random.nextInt(this.factoids)) : "miss" + random.nextInt(this.factoids);
+    final String victim = this.user(random.nextInt(this.users));
+    final StringBuilder message = new StringBuilder().append(this.prefix);
+    switch(target) {
+      case USER_PUBLIC:
+        message.append('>').append(name).append(' ').append(victim);
+        break;
+      case USER_PRIVATE:
+        message.append(">>").append(name).append(' ').append(victim);
+        break;
+      case SELF:
+        message.append('<').append(name);
+        break;
+      default:
+        message.append(name);
+        break;
+    }
+    return new Message(channel, user, message.toString(), target, hit);
+  }
+
+  private Target target(final Random random) {
+    int total = 0;
+    for(final int weight : this.targetWeights) {
+      total += weight;
+    }
+    int roll = random.nextInt(Math.max(1, total));
+    for(int i = 0; i < this.targetWeights.length; i++) {
+      roll -= this.targetWeights[i];
+      if(roll < 0) {
+        return Target.values()[i];
+      }
+    }
+    return Target.DEFAULT;
+  }
+
+  static final class Message {
+    final String channel;
+    final String user;
+    final String text;
+    final Target target;
+    final boolean hit;
+
+    Message(final String channel, final String user, final String text, final Target target, final boolean hit) {
+      this.channel = channel;
+      this.user = user;
+      this.text = text;
+      this.target = target;
+      this.hit = hit;
+    }
+
+    /**
+     * Gets where a reply to this message will be sent on IRC.
+     *
+     * @return the reply destination, or {@code null} if no reply is expected
+     */
+    String ircReplyTarget() {
+      if(!this.hit) {
+        return null;
+      }
+      switch(this.target) {
+        case USER_PRIVATE:
+          return this.text.substring(this.text.lastIndexOf(' ') + 1);
+        case SELF:
+          return this.user;
+        default:
+          return this.channel;
+      }
+    }
+  }
+}
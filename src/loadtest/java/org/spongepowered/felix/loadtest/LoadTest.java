@@ -0,0 +1,199 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import com.google.gson.stream.JsonWriter;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.capture.Capture;
+import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.platform.DiscordDriver;
+import org.spongepowered.felix.platform.Health;
+import org.spongepowered.felix.platform.IrcPlatform;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Floods Felix with generated traffic over a {@link FakeIrcServer} and a {@link DiscordDriver},
+ * and reports throughput and reply latency for each.
+ *
+ * <p>Runs in the current working directory, where it writes the {@code commands.json} being tested.</p>
+ */
+public final class LoadTest {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final int TRACE_LINES = 4096;
+
+  public static void main(final String[] args) throws Exception {
+    final LoadProfile profile = new LoadProfile();
+    writeFactoids(profile);
+    final CommandConfiguration cc = new CommandConfiguration(config(profile));
+
+    final String platforms = System.getProperty("loadtest.platforms", "irc,discord");
+    if(platforms.contains("irc")) {
+      irc(profile, cc);
+    }
+    if(platforms.contains("discord")) {
+      discord(profile, cc);
+    }
+    System.exit(0);
+  }
+
+  private static void irc(final LoadProfile profile, final CommandConfiguration cc) throws Exception {
+    try(final FakeIrcServer server = new FakeIrcServer(profile)) {
+      final ConfigurationNode config = SimpleConfigurationNode.root();
+      config.getNode("nick").setValue("felix");
+      config.getNode("host").setValue("127.0.0.1");
+      config.getNode("port").setValue(server.port());
+      config.getNode("ssl").setValue(false);
+      final List<String> channels = new ArrayList<>(profile.channels);
+      for(int i = 0; i < profile.channels; i++) {
+        channels.add(profile.channel(i));
+      }
+      config.getNode("channels").setValue(channels);
+
+      new IrcPlatform(config, cc, new WireTrace(TRACE_LINES), new Health(SimpleConfigurationNode.root()), new Plugins(SimpleConfigurationNode.root()), new History(SimpleConfigurationNode.root()), Capture.create(SimpleConfigurationNode.root()));
+      if(!server.awaitJoined(profile.timeout)) {
+        throw new IllegalStateException("Felix did not join every channel within " + profile.timeout + "ms");
+      }
+
+      final Random random = new Random(profile.seed);
+      final long start = System.nanoTime();
+      for(int i = 0; i < profile.messages; i++) {
+        pace(profile, start, i);
+        final LoadProfile.Message message = profile.next(random);
+        server.inject(message, message.ircReplyTarget(), 1);
+      }
+      final long sent = System.nanoTime();
+      await(profile, server.latencies()::count, server.expected());
+      report("IRC", profile, start, sent, server.latencies(), server.expected());
+      if(server.unmatched() > 0) {
+        LOGGER.warn("[IRC] {} replies could not be matched to a message", server.unmatched());
+      }
+    }
+  }
+
+  private static void discord(final LoadProfile profile, final CommandConfiguration cc) throws Exception {
+    final DiscordDriver driver = new DiscordDriver(cc);
+    final LatencyRecorder latencies = new LatencyRecorder();
+    final AtomicInteger unexpected = new AtomicInteger();
+
+    final Random random = new Random(profile.seed);
+    int expected = 0;
+    final long start = System.nanoTime();
+    for(int i = 0; i < profile.messages; i++) {
+      pace(profile, start, i);
+      final LoadProfile.Message message = profile.next(random);
+      if(message.hit) {
+        expected++;
+      }
+      final long now = System.nanoTime();
+      driver.dispatch("1", "100" + message.channel.substring("#load".length()), "200" + message.user.substring("user".length()), message.text, reply -> {
+        if(message.hit) {
+          latencies.record(System.nanoTime() - now);
+        } else {
+          unexpected.incrementAndGet();
+        }
+      });
+    }
+    final long sent = System.nanoTime();
+    await(profile, latencies::count, expected);
+    report("Discord", profile, start, sent, latencies, expected);
+    if(unexpected.get() > 0) {
+      LOGGER.warn("[Discord] {} replies were sent for messages that should have missed", unexpected.get());
+    }
+  }
+
+  private static void pace(final LoadProfile profile, final long start, final int index) {
+    if(profile.rate > 0) {
+      final long deadline = start + TimeUnit.SECONDS.toNanos(index) / profile.rate;
+      final long wait = deadline - System.nanoTime();
+      if(wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+    }
+  }
+
+  private static void await(final LoadProfile profile, final IntSupplier replies, final int expected) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + profile.timeout;
+    while(replies.getAsInt() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static void report(final String platform, final LoadProfile profile, final long start, final long sent, final LatencyRecorder latencies, final int expected) {
+    final double sendSeconds = (sent - start) / 1e9;
+    final double totalSeconds = (System.nanoTime() - start) / 1e9;
+    LOGGER.info(
+      "[{}] {} messages in {}s ({} msg/s offered), {}/{} replies in {}s ({} replies/s), latency p50 {}ms p99 {}ms",
+      platform,
+      profile.messages,
+      String.format("%.3f", sendSeconds),
+      String.format("%.0f", profile.messages / sendSeconds),
+      latencies.count(),
+      expected,
+      String.format("%.3f", totalSeconds),
+      String.format("%.0f", latencies.count() / totalSeconds),
+      String.format("%.2f", latencies.percentile(50)),
+      String.format("%.2f", latencies.percentile(99))
+    );
+  }
+
+  private static ConfigurationNode config(final LoadProfile profile) {
+    final ConfigurationNode config = SimpleConfigurationNode.root();
+    config.getNode("command", "prefix").setValue(String.valueOf(profile.prefix));
+    config.getNode("command", "ignore").setValue(Collections.emptyList());
+    return config;
+  }
+
+  static void writeFactoids(final LoadProfile profile) throws IOException {
+    try(final Writer writer = Files.newBufferedWriter(Paths.get("commands.json"), StandardCharsets.UTF_8); final JsonWriter json = new JsonWriter(writer)) {
+      json.beginArray();
+      for(int i = 0; i < profile.factoids; i++) {
+        json.beginObject();
+        json.name("aliases").beginArray().value(profile.factoid(i)).endArray();
+        json.name("responses").beginArray().value("https://docs.spongepowered.org/stable/en/load/test/" + i + ".html").endArray();
+        json.endObject();
+      }
+      json.endArray();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import ninja.leaping.configurate.gson.GsonConfigurationLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.capture.Capture;
+import org.spongepowered.felix.capture.CaptureReader;
+import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.platform.DiscordDriver;
+import org.spongepowered.felix.platform.IrcDriver;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Replays a capture taken by {@link Capture} against an {@link IrcDriver} and a
+ * {@link DiscordDriver}, and reports the throughput, latency and allocation of handling each message.
+ *
+ * <p>Runs in the current working directory, where it copies the {@code commands.json} being tested.</p>
+ */
+public final class Replay {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final long SETTLE = TimeUnit.MILLISECONDS.toNanos(200);
+  private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+  public static void main(final String[] args) throws Exception {
+    @Nullable final String capture = System.getProperty("replay.capture");
+    if(capture == null) {
+      throw new IllegalArgumentException("replay.capture must name the capture to replay");
+    }
+    final double speed = Double.parseDouble(System.getProperty("replay.speed", "0"));
+    final String platforms = System.getProperty("replay.platforms", "irc,discord");
+    @Nullable final String commands = System.getProperty("replay.commands");
+    if(commands != null) {
+      Files.copy(Paths.get(commands), Paths.get("commands.json"), StandardCopyOption.REPLACE_EXISTING);
+    }
+    final CommandConfiguration cc = new CommandConfiguration(config());
+
+    final Stats irc = new Stats("IRC");
+    final Stats discord = new Stats("Discord");
+    final IrcDriver ircDriver = new IrcDriver(cc);
+    final DiscordDriver discordDriver = new DiscordDriver(cc);
+    final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long thread = Thread.currentThread().getId();
+
+    final int damaged;
+    try(final CaptureReader reader = new CaptureReader(Paths.get(capture))) {
+      final long start = System.nanoTime();
+      for(@Nullable CaptureReader.Message message = reader.next(); message != null; message = reader.next()) {
+        final boolean isIrc = message.source == Capture.Source.IRC || message.source == Capture.Source.IRC_PRIVATE;
+        if(!platforms.contains(isIrc ? "irc" : "discord")) {
+          continue;
+        }
+        if(speed > 0) {
+          final long wait = start + (long) (TimeUnit.MICROSECONDS.toNanos(message.time) / speed) - System.nanoTime();
+          if(wait > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        }
+
+        final Stats stats = isIrc ? irc : discord;
+        final String user = message.user == null ? "0" : message.user;
+        final String name = message.name == null ? user : message.name;
+        // Build the stand-ins before measuring, so that only handling the message is counted.
+        final Runnable dispatch = isIrc
+          ? ircDriver.prepare(message.channel, user, message.operator, message.message, stats.reply)
+          // direct messages have no channel of their own in a capture, so each user gets one
+          : discordDriver.prepare(message.guild, message.channel == null ? user : message.channel, user, name, message.operator, message.message, stats.reply);
+        final long allocated = threads.getThreadAllocatedBytes(thread);
+        final long now = System.nanoTime();
+        dispatch.run();
+        final long latency = System.nanoTime() - now;
+        stats.allocated += threads.getThreadAllocatedBytes(thread) - allocated;
+        stats.latencies.record(latency);
+        stats.events++;
+        if(message.command) {
+          stats.commands++;
+        }
+        if(stats.first == 0) {
+          stats.first = now;
+        }
+        stats.last = System.nanoTime();
+      }
+      damaged = reader.damaged();
+    }
+    if(damaged > 0) {
+      LOGGER.warn("Skipped {} damaged stretches of the capture", damaged);
+    }
+
+    // Discord's replies are sent from its request buffer, so give the last of them a moment to arrive.
+    settle(discord.replies);
+    irc.report();
+    discord.report();
+    System.exit(0);
+  }
+
+  private static ConfigurationNode config() throws Exception {
+    @Nullable final String path = System.getProperty("replay.config");
+    if(path != null) {
+      return GsonConfigurationLoader.builder().setPath(Paths.get(path)).build().load();
+    }
+    final ConfigurationNode config = SimpleConfigurationNode.root();
+    config.getNode("command", "prefix").setValue("!");
+    config.getNode("command", "ignore").setValue(Collections.emptyList());
+    return config;
+  }
+
+  private static void settle(final AtomicInteger replies) throws InterruptedException {
+    final long deadline = System.nanoTime() + TIMEOUT;
+    int last = -1;
+    while(replies.get() != last && System.nanoTime() < deadline) {
+      last = replies.get();
+      TimeUnit.NANOSECONDS.sleep(SETTLE);
+    }
+  }
+
+  private static final class Stats {
+    final String platform;
+    final LatencyRecorder latencies = new LatencyRecorder();
+    final AtomicInteger replies = new AtomicInteger();
+    final Consumer<String> reply = message -> this.replies.incrementAndGet();
+    int events;
+    int commands;
+    long allocated;
+    long first;
+    long last;
+
+    Stats(final String platform) {
+      this.platform = platform;
+    }
+
+    void report() {
+      if(this.events == 0) {
+        return;
+      }
+      final double seconds = Math.max(1, this.last - this.first) / 1e9;
+      LOGGER.info(
+        "[{}] {} messages ({} commands, {} replies) in {}s ({} msg/s), latency p50 {}ms p99 {}ms p99.9 {}ms max {}ms, {} bytes allocated per message",
+        this.platform,
+        this.events,
+        this.commands,
+        this.replies.get(),
+        String.format("%.3f", seconds),
+        String.format("%.0f", this.events / seconds),
+        String.format("%.3f", this.latencies.percentile(50)),
+        String.format("%.3f", this.latencies.percentile(99)),
+        String.format("%.3f", this.latencies.percentile(99.9)),
+        String.format("%.3f", this.latencies.percentile(100)),
+        this.allocated / this.events
+      );
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.loadtest;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Serves a {@link FakeIrcServer} for separately launched Felix processes, such as the class-data sharing
+ * training run and the startup benchmark.
+ *
+ * <p>Writes a {@code config.json} pointing at the server and a generated {@code commands.json} into the current
+ * working directory, prints {@link #READY} and then serves until it is killed.</p>
+ */
+public final class StartupStandIn {
+  static final String READY = "Stand-in ready";
+
+  public static void main(final String[] args) throws Exception {
+    final LoadProfile profile = new LoadProfile();
+    LoadTest.writeFactoids(profile);
+    final FakeIrcServer server = new FakeIrcServer(profile);
+    writeConfig(profile, server.port());
+    System.out.println(READY);
+    Thread.currentThread().join();
+  }
+
+  private static void writeConfig(final LoadProfile profile, final int port) throws IOException {
+    try(final Writer writer = Files.newBufferedWriter(Paths.get("config.json"), StandardCharsets.UTF_8); final JsonWriter json = new JsonWriter(writer)) {
+      json.setIndent("  ");
+      json.beginObject();
+      json.name("command").beginObject();
+      json.name("prefix").value(String.valueOf(profile.prefix));
+      json.name("ignore").beginArray().endArray();
+      json.endObject();
+      json.name("irc").beginObject();
+      json.name("nick").value("felix");
+      json.name("host").value("127.0.0.1");
+      json.name("port").value(port);
+      json.name("ssl").value(false);
+      json.name("channels").beginArray();
+      for(int i = 0; i < profile.channels; i++) {
+        json.value(profile.channel(i));
+      }
+      json.endArray();
+      json.endObject();
+      // No Discord token: Felix starts with Discord disabled.
+      json.name("discord").beginObject().endObject();
+      json.endObject();
+    }
+  }
+}
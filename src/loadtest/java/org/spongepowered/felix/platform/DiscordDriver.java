@@ -0,0 +1,146 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import org.spongepowered.felix.capture.Capture;
+import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
+import sx.blah.discord.api.ClientBuilder;
+import sx.blah.discord.handle.impl.events.guild.channel.message.MessageReceivedEvent;
+import sx.blah.discord.handle.obj.IChannel;
+import sx.blah.discord.handle.obj.IGuild;
+import sx.blah.discord.handle.obj.IMessage;
+import sx.blah.discord.handle.obj.IUser;
+import sx.blah.discord.handle.obj.Permissions;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Feeds synthetic {@link MessageReceivedEvent}s to a {@link DiscordPlatform} which never logs in.
+ */
+public final class DiscordDriver {
+  private static final int TRACE_LINES = 4096;
+  private final DiscordPlatform platform;
+
+  public DiscordDriver(final CommandConfiguration cc) throws IOException {
+    this.platform = new DiscordPlatform(new ClientBuilder().withToken("loadtest").build(), cc, new WireTrace(TRACE_LINES), new Health(SimpleConfigurationNode.root()), new Plugins(SimpleConfigurationNode.root()), new History(SimpleConfigurationNode.root()), Capture.create(SimpleConfigurationNode.root()));
+  }
+
+  /**
+   * Dispatches a message, as if it had been received from Discord.
+   *
+   * @param guildId the guild id, or {@code null} for a private channel
+   * @param channelId the channel id
+   * @param authorId the author id
+   * @param content the message content
+   * @param reply called with anything sent to the channel in response
+   */
+  public void dispatch(@Nullable final String guildId, final String channelId, final String authorId, final String content, final Consumer<String> reply) {
+    this.dispatch(guildId, channelId, authorId, authorId, false, content, reply);
+  }
+
+  /**
+   * Dispatches a message, as if it had been received from Discord.
+   *
+   * @param guildId the guild id, or {@code null} for a private channel
+   * @param channelId the channel id
+   * @param authorId the author id
+   * @param authorName the author's name
+   * @param operator if the author may manage messages in the channel
+   * @param content the message content
+   * @param reply called with anything sent to the channel in response
+   */
+  public void dispatch(@Nullable final String guildId, final String channelId, final String authorId, final String authorName, final boolean operator, final String content, final Consumer<String> reply) {
+    this.prepare(guildId, channelId, authorId, authorName, operator, content, reply).run();
+  }
+
+  /**
+   * Builds the stand-ins for a message, to be dispatched later, so that building them is not counted as handling it.
+   *
+   * @param guildId the guild id, or {@code null} for a private channel
+   * @param channelId the channel id
+   * @param authorId the author id
+   * @param authorName the author's name
+   * @param operator if the author may manage messages in the channel
+   * @param content the message content
+   * @param reply called with anything sent to the channel in response
+   * @return dispatches the message when run
+   */
+  public Runnable prepare(@Nullable final String guildId, final String channelId, final String authorId, final String authorName, final boolean operator, final String content, final Consumer<String> reply) {
+    @Nullable final IGuild guild = guildId == null ? null : Stubs.stub(IGuild.class, (method, args) -> method.equals("getStringID") ? guildId : null);
+    final IChannel channel = Stubs.stub(IChannel.class, (method, args) -> {
+      switch(method) {
+        case "getStringID":
+          return channelId;
+        case "getLongID":
+          return Long.parseLong(channelId);
+        case "getModifiedPermissions":
+          return operator ? EnumSet.of(Permissions.MANAGE_MESSAGES) : EnumSet.noneOf(Permissions.class);
+        case "getGuild":
+          return guild;
+        case "isPrivate":
+          return guild == null;
+        case "sendMessage":
+          reply.accept((String) args[0]);
+          return null;
+        default:
+          return null;
+      }
+    });
+    final IUser author = Stubs.stub(IUser.class, (method, args) -> {
+      switch(method) {
+        case "getStringID":
+          return authorId;
+        case "getName":
+          return authorName;
+        default:
+          return null;
+      }
+    });
+    final IMessage message = Stubs.stub(IMessage.class, (method, args) -> {
+      switch(method) {
+        case "getContent":
+          return content;
+        case "getAuthor":
+          return author;
+        case "getChannel":
+          return channel;
+        case "getGuild":
+          return guild;
+        default:
+          return null;
+      }
+    });
+    final MessageReceivedEvent event = new MessageReceivedEvent(message);
+    return () -> this.platform.messageReceiver(event);
+  }
+}
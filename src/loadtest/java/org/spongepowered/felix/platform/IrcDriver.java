@@ -0,0 +1,162 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import ninja.leaping.configurate.SimpleConfigurationNode;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.User;
+import org.kitteh.irc.client.library.element.mode.ChannelUserMode;
+import org.spongepowered.felix.capture.Capture;
+import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Feeds messages straight to an {@link IrcCommandManager}, without a client or a server.
+ */
+public final class IrcDriver {
+  private static final int TRACE_LINES = 4096;
+  private static final String NICK = "felix";
+  private static final Client CLIENT = Stubs.stub(Client.class, (method, args) -> {
+    switch(method) {
+      case "getNick":
+        return NICK;
+      case "getUser":
+        return Optional.empty();
+      default:
+        return null;
+    }
+  });
+  private static final ChannelUserMode OPERATOR = Stubs.stub(ChannelUserMode.class, (method, args) -> {
+    switch(method) {
+      case "getNickPrefix":
+        return '@';
+      case "getChar":
+        return 'o';
+      default:
+        return null;
+    }
+  });
+  private final IrcCommandManager manager;
+
+  public IrcDriver(final CommandConfiguration cc) throws IOException {
+    this.manager = new IrcCommandManager(cc, new WireTrace(TRACE_LINES), new Health(SimpleConfigurationNode.root()), new Plugins(SimpleConfigurationNode.root()), new History(SimpleConfigurationNode.root()), Capture.create(SimpleConfigurationNode.root()));
+  }
+
+  /**
+   * Dispatches a message, as if it had been received from IRC.
+   *
+   * @param channel the channel's name, or {@code null} for a private message
+   * @param nick the sender's nick
+   * @param operator if the sender is a channel operator
+   * @param message the message
+   * @param reply called with anything sent in response, to the channel or to anyone in it
+   */
+  public void dispatch(@Nullable final String channel, final String nick, final boolean operator, final String message, final Consumer<String> reply) {
+    this.prepare(channel, nick, operator, message, reply).run();
+  }
+
+  /**
+   * Builds the stand-ins for a message, to be dispatched later, so that building them is not counted as handling it.
+   *
+   * @param channel the channel's name, or {@code null} for a private message
+   * @param nick the sender's nick
+   * @param operator if the sender is a channel operator
+   * @param message the message
+   * @param reply called with anything sent in response, to the channel or to anyone in it
+   * @return dispatches the message when run
+   */
+  public Runnable prepare(@Nullable final String channel, final String nick, final boolean operator, final String message, final Consumer<String> reply) {
+    final User user = user(nick, reply);
+    if(channel == null) {
+      return () -> this.manager.privateMessage(user, message);
+    }
+    final Channel stub = Stubs.stub(Channel.class, (method, args) -> {
+      switch(method) {
+        case "getName":
+        case "getMessagingName":
+          return channel;
+        case "getClient":
+          return CLIENT;
+        case "getUser":
+          return Optional.of(nick.equals(args[0]) ? user : user((String) args[0], reply));
+        case "getUserModes":
+          final SortedSet<ChannelUserMode> modes = new TreeSet<>(Comparator.comparing(ChannelUserMode::getChar));
+          if(operator && (args[0] == user || nick.equals(args[0]))) {
+            modes.add(OPERATOR);
+          }
+          return Optional.of(modes);
+        case "sendMessage":
+        case "sendNotice":
+        case "sendMultiLineMessage":
+        case "sendMultiLineNotice":
+          reply.accept((String) args[0]);
+          return null;
+        default:
+          return null;
+      }
+    });
+    return () -> this.manager.channelMessage(stub, user, message);
+  }
+
+  private static User user(final String nick, final Consumer<String> reply) {
+    return Stubs.stub(User.class, (method, args) -> {
+      switch(method) {
+        case "getNick":
+        case "getMessagingName":
+          return nick;
+        case "getName":
+          return nick + '!' + nick + "@replay";
+        case "getUserString":
+          return nick;
+        case "getHost":
+          return "replay";
+        case "getAccount":
+          return Optional.empty();
+        case "getClient":
+          return CLIENT;
+        case "sendMessage":
+        case "sendNotice":
+        case "sendMultiLineMessage":
+        case "sendMultiLineNotice":
+          reply.accept((String) args[0]);
+          return null;
+        default:
+          return null;
+      }
+    });
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import java.lang.reflect.Proxy;
+import java.util.function.BiFunction;
+
+/**
+ * Stands in for the interfaces of the platform libraries, answering only what the drivers need.
+ */
+final class Stubs {
+  private Stubs() {
+  }
+
+  /**
+   * Creates a stub, which answers every method through a handler, given the method's name and arguments. Where the
+   * handler returns {@code null} for a method returning a primitive, the stub returns zero or {@code false}.
+   *
+   * @param type the interface
+   * @param handler the handler
+   * @param <T> the interface's type
+   * @return the stub
+   */
+  static <T> T stub(final Class<T> type, final BiFunction<String, Object[], Object> handler) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+      if(method.getDeclaringClass() == Object.class) {
+        switch(method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            return type.getSimpleName();
+        }
+      }
+
+      final Object result = handler.apply(method.getName(), args);
+      if(result == null && method.getReturnType().isPrimitive()) {
+        final Class<?> primitive = method.getReturnType();
+        if(primitive == boolean.class) {
+          return false;
+        } else if(primitive == long.class) {
+          return 0L;
+        } else if(primitive == int.class) {
+          return 0;
+        } else if(primitive == char.class) {
+          return '\0';
+        }
+      }
+      return result;
+    }));
+  }
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+# Starts Felix in the current directory, which holds config.json and commands.json.
+#
+# Class-data sharing (JDK 10 or later): the archive is dumped from felix.classlist, next to the jar, whenever it is
+# missing or older than the jar, and is mapped at startup. An archive records the jar's location, so delete felix.jsa
+# after moving the installation. Set FELIX_CDS=false to start without it.
+home=$(cd "$(dirname "$0")" && pwd)
+java=${JAVA:-java}
+
+# Logging: every logger is asynchronous, and drops debug and info messages rather than wait when its queue is full.
+# log4j2-production.xml adds garbage-free layouts and a rate limit. Set FELIX_LOG4J to use another configuration.
+log4j="-Dlog4j.configurationFile=${FELIX_LOG4J:-log4j2-production.xml}
+  -DLog4jContextSelector=org.apache.logging.log4j.core.async.AsyncLoggerContextSelector
+  -Dlog4j2.asyncQueueFullPolicy=Discard -Dlog4j2.discardThreshold=INFO"
+
+# JDK 10 only archives application classes with AppCDS switched on, when dumping and mapping alike.
+appcds=
+if [ "${FELIX_CDS:-true}" = true ]; then
+  case $("$java" -version 2>&1) in
+    *' version "10'*) appcds=-XX:+UseAppCDS ;;
+  esac
+fi
+
+if [ "${FELIX_CDS:-true}" = true ] && [ -f "$home/felix.classlist" ]; then
+  if [ ! -f "$home/felix.jsa" ] || [ "$home/felix.jar" -nt "$home/felix.jsa" ]; then
+    # shellcheck disable=SC2086
+    "$java" $appcds -Xshare:dump -XX:SharedClassListFile="$home/felix.classlist" -XX:SharedArchiveFile="$home/felix.jsa" \
+      -cp "$home/felix.jar" > /dev/null 2>&1 || rm -f "$home/felix.jsa"
+  fi
+fi
+
+if [ "${FELIX_CDS:-true}" = true ] && [ -f "$home/felix.jsa" ]; then
+  # shellcheck disable=SC2086
+  set -- $appcds -XX:SharedArchiveFile="$home/felix.jsa" -Xshare:auto -jar "$home/felix.jar" "$@"
+else
+  set -- -jar "$home/felix.jar" "$@"
+fi
+# shellcheck disable=SC2086
+exec "$java" $log4j $JAVA_OPTS "$@"
@@ -36,6 +36,13 @@ public final class Application {
   }
 
   public static void main(final String[] args) throws IOException {
+    try {
+      // The Flight Recorder events are used throughout, and JDK 8 only has them from 8u262.
+      Class.forName("jdk.jfr.Event", false, Application.class.getClassLoader());
+    } catch(final ClassNotFoundException e) {
+      System.err.println("Felix needs Flight Recorder, which is in JDK 8u262 or later, but this is " + System.getProperty("java.version") + '.');
+      System.exit(1);
+    }
     new Application(args);
   }
 }
@@ -24,21 +24,34 @@
  */
 package org.spongepowered.felix;
 
+import org.spongepowered.felix.capture.Capture;
 import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.command.Replica;
+import org.spongepowered.felix.command.Replicator;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.gson.GsonConfigurationLoader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.http.HttpApi;
 import org.spongepowered.felix.platform.DiscordPlatform;
+import org.spongepowered.felix.platform.Health;
 import org.spongepowered.felix.platform.IrcPlatform;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
 
 final class Felix {
   private static final Logger LOGGER = LogManager.getLogger();
+  private static final int DEFAULT_TRACE_LINES = 4096;
   private final IrcPlatform irc;
-  private final DiscordPlatform discord;
+  @Nullable private final DiscordPlatform discord;
 
   Felix() throws IOException {
     LOGGER.info("Felix is starting up. Go get yourself a coffee.");
@@ -47,8 +60,54 @@ final class Felix {
       .build()
       .load();
     final CommandConfiguration dcm = new CommandConfiguration(config);
-    this.irc = new IrcPlatform(config.getNode("irc"), dcm);
-    this.discord = new DiscordPlatform(config.getNode("discord"), dcm);
-    LOGGER.info("We're ready to go.");
+    final ConfigurationNode replication = config.getNode("replication");
+    @Nullable Replica replica = null;
+    switch(replication.getNode("role").getString("")) {
+      case "primary":
+        new Replicator(dcm, replication);
+        break;
+      case "standby":
+        // before the platforms connect, so that they start out answering nothing
+        replica = new Replica(dcm, replication);
+        break;
+      case "":
+        break;
+      default:
+        LOGGER.warn("Unknown replication role {}: replication is disabled.", replication.getNode("role").getString());
+    }
+    final WireTrace trace = new WireTrace(config.getNode("trace", "lines").getInt(DEFAULT_TRACE_LINES));
+    final Health health = new Health(config.getNode("health"));
+    final Plugins plugins = new Plugins(config.getNode("plugins"));
+    final History history = new History(config.getNode("history"));
+    final Capture capture = Capture.create(config.getNode("capture"));
+    if(config.getNode("http", "port").getInt(0) != 0) {
+      new HttpApi(dcm, config.getNode("http"));
+    }
+    this.irc = new IrcPlatform(config.getNode("irc"), dcm, trace, health, plugins, history, capture);
+    if(config.getNode("discord", "token").getString("").isEmpty()) {
+      LOGGER.info("No Discord token is configured, so Discord is disabled.");
+      this.discord = null;
+    } else {
+      this.discord = new DiscordPlatform(config.getNode("discord"), dcm, trace, health, plugins, history, capture);
+    }
+    if(replica != null) {
+      replica.start(this::takeover);
+    }
+    CompletableFuture.allOf(
+      this.irc.ready(),
+      this.discord == null ? CompletableFuture.completedFuture(null) : this.discord.ready()
+    ).thenRun(this::ready);
+  }
+
+  private void takeover() {
+    this.irc.activate();
+  }
+
+  private void ready() {
+    LOGGER.info("We're ready to go, {}ms after the JVM started.", System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+    // Used by the class-data sharing training run and the startup benchmark.
+    if(Boolean.getBoolean("felix.exitWhenReady")) {
+      System.exit(0);
+    }
   }
 }
@@ -0,0 +1,282 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.capture;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Records every inbound message, as the platforms see it, for replaying later.
+ *
+ * <p>Messages are handed to a writer thread through a bounded queue, so capturing never waits on the disk: when the
+ * queue is full, messages are dropped and counted. The file is only ever appended to, each start adding a segment
+ * of its own. See {@link CaptureReader} for the format.</p>
+ *
+ * <p>When anonymizing, channels, guilds and users are replaced by keyed hashes, with a key which is never saved, and
+ * messages which are not commands have their letters and digits masked.</p>
+ */
+public final class Capture {
+  private static final Logger LOGGER = LogManager.getLogger();
+  static final int MAGIC = 0x46584350;
+  static final int FORMAT = 1;
+  static final int OPERATOR = 0x80;
+  static final int COMMAND = 0x40;
+  static final int SOURCE = 0x0f;
+  private static final int DEFAULT_QUEUE = 65536;
+  // how long the writer waits for a message before checking if it should close, and how long shutdown waits for it
+  private static final long POLL = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(2);
+  private static final Capture DISABLED = new Capture();
+  @Nullable private final BlockingQueue<Message> queue;
+  private final AtomicLong dropped = new AtomicLong();
+  @Nullable private final HashFunction anonymizer;
+  // the writer's state: strings already written, by the number they are referred to by
+  private final Map<String, Integer> strings = new HashMap<>();
+  private long last;
+  private volatile boolean closing;
+
+  private Capture() {
+    this.queue = null;
+    this.anonymizer = null;
+  }
+
+  private Capture(final ConfigurationNode config) throws IOException {
+    this.queue = new LinkedBlockingQueue<>(Math.max(1, config.getNode("queue").getInt(DEFAULT_QUEUE)));
+    if(config.getNode("anonymize").getBoolean(false)) {
+      final byte[] key = new byte[32];
+      new SecureRandom().nextBytes(key);
+      this.anonymizer = Hashing.hmacSha256(key);
+    } else {
+      this.anonymizer = null;
+    }
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+      Paths.get(config.getNode("file").getString()), StandardOpenOption.CREATE, StandardOpenOption.APPEND
+    )));
+    out.writeInt(MAGIC);
+    out.writeByte(FORMAT);
+    out.writeLong(System.currentTimeMillis());
+    this.last = System.nanoTime();
+    final Thread thread = new Thread(() -> this.write(out), "Felix capture");
+    thread.setDaemon(true);
+    thread.start();
+    // Write out what is queued and close on the way out, rather than leave a message torn in the buffer.
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      this.closing = true;
+      try {
+        thread.join(CLOSE_TIMEOUT);
+      } catch(final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "Felix capture shutdown"));
+    LOGGER.info("Capturing inbound messages to {}{}", config.getNode("file").getString(), this.anonymizer == null ? "" : ", anonymized");
+  }
+
+  /**
+   * Creates a capture as configured, which does nothing unless {@code capture.file} is set.
+   *
+   * @param config the {@code capture} configuration
+   * @return the capture
+   * @throws IOException if the file could not be opened
+   */
+  public static Capture create(final ConfigurationNode config) throws IOException {
+    return config.getNode("file").getString("").isEmpty() ? DISABLED : new Capture(config);
+  }
+
+  /**
+   * Tests if messages are being captured, so that the platforms can skip working out what to record.
+   *
+   * @return {@code true} if they are
+   */
+  public boolean enabled() {
+    return this.queue != null;
+  }
+
+  /**
+   * Captures a message.
+   *
+   * @param source where the message came from
+   * @param channel the channel's name or id, or {@code null} if the message was private
+   * @param guild the guild's id, or {@code null}
+   * @param user the sender's id, their nick on IRC
+   * @param name the sender's name
+   * @param command if the message is a command
+   * @param operator if the sender may modify commands
+   * @param message the message
+   */
+  public void record(final Source source, @Nullable final String channel, @Nullable final String guild, final String user, final String name, final boolean command, final boolean operator, final String message) {
+    if(this.queue != null && !this.queue.offer(new Message(System.nanoTime(), source, channel, guild, user, name, command, operator, message))) {
+      this.dropped.incrementAndGet();
+    }
+  }
+
+  private void write(final DataOutputStream out) {
+    @Nullable final BlockingQueue<Message> queue = this.queue;
+    try {
+      while(true) {
+        @Nullable Message message = queue.poll();
+        if(message == null) {
+          // Nothing more is waiting, so this is a good time to write out what has been.
+          out.flush();
+          final long dropped = this.dropped.getAndSet(0);
+          if(dropped > 0) {
+            LOGGER.warn("Dropped {} messages from the capture, which could not keep up", dropped);
+          }
+          if(this.closing) {
+            out.close();
+            return;
+          }
+          message = queue.poll(POLL, TimeUnit.NANOSECONDS);
+          if(message == null) {
+            continue;
+          }
+        }
+        this.write(out, message);
+      }
+    } catch(final IOException e) {
+      LOGGER.error("Could not write the capture, which has stopped", e);
+    } catch(final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void write(final DataOutputStream out, final Message message) throws IOException {
+    out.writeByte(message.source.ordinal() | (message.command ? COMMAND : 0) | (message.operator ? OPERATOR : 0));
+    writeVarLong(out, TimeUnit.NANOSECONDS.toMicros(Math.max(0, message.time - this.last)));
+    this.last = message.time;
+    this.writeString(out, this.anonymize(message.channel, message.source.irc ? "#" : ""));
+    this.writeString(out, this.anonymize(message.guild, ""));
+    this.writeString(out, this.anonymize(message.user, message.source.irc ? "u" : ""));
+    this.writeString(out, this.anonymize(message.name, "u"));
+    final byte[] text = (this.anonymizer == null || message.command ? message.message : mask(message.message)).getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, text.length);
+    out.write(text);
+  }
+
+  // Strings are written once, and referred to by number after that: 0 is null, 1 a new string, and 2 on the first string.
+  private void writeString(final DataOutputStream out, @Nullable final String string) throws IOException {
+    if(string == null) {
+      writeVarLong(out, 0);
+      return;
+    }
+    @Nullable final Integer known = this.strings.get(string);
+    if(known != null) {
+      writeVarLong(out, known + 2);
+      return;
+    }
+    this.strings.put(string, this.strings.size());
+    writeVarLong(out, 1);
+    final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  // IRC names keep a letter in front, and Discord ids stay numbers, so that replays see names of the same shape.
+  @Nullable
+  private String anonymize(@Nullable final String string, final String prefix) {
+    if(string == null || this.anonymizer == null) {
+      return string;
+    }
+    final long hash = this.anonymizer.hashString(string, StandardCharsets.UTF_8).asLong();
+    return prefix.isEmpty() ? Long.toString(hash & Long.MAX_VALUE) : prefix + Long.toHexString(hash);
+  }
+
+  // Keeps the shape of a message - its length, spacing and first character - and nothing it says.
+  private static String mask(final String message) {
+    final char[] chars = message.toCharArray();
+    for(int i = 1; i < chars.length; i++) {
+      if(Character.isLetter(chars[i])) {
+        chars[i] = 'x';
+      } else if(Character.isDigit(chars[i])) {
+        chars[i] = '0';
+      }
+    }
+    return new String(chars);
+  }
+
+  static void writeVarLong(final DataOutputStream out, long value) throws IOException {
+    while((value & ~0x7fL) != 0) {
+      out.writeByte((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  public enum Source {
+    IRC(true),
+    IRC_PRIVATE(true),
+    DISCORD(false),
+    DISCORD_PRIVATE(false);
+
+    final boolean irc;
+
+    Source(final boolean irc) {
+      this.irc = irc;
+    }
+  }
+
+  private static final class Message {
+    final long time;
+    final Source source;
+    @Nullable final String channel;
+    @Nullable final String guild;
+    final String user;
+    final String name;
+    final boolean command;
+    final boolean operator;
+    final String message;
+
+    Message(final long time, final Source source, @Nullable final String channel, @Nullable final String guild, final String user, final String name, final boolean command, final boolean operator, final String message) {
+      this.time = time;
+      this.source = source;
+      this.channel = channel;
+      this.guild = guild;
+      this.user = user;
+      this.name = name;
+      this.command = command;
+      this.operator = operator;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads back what a {@link Capture} wrote.
+ *
+ * <p>A capture is a sequence of segments, one for each time Felix started capturing to the file. A segment starts with
+ * the magic number {@code FXCP}, a format byte and the time it started, in milliseconds since the epoch. Each message
+ * follows as a flags byte - its {@link Capture.Source} and whether it was a command and sent by an operator - then the
+ * microseconds since the previous message, its channel, guild, user id and user name, and its text. Numbers are
+ * variable-length, seven bits to a byte. Strings are written in full only the first time, and by number after that.</p>
+ *
+ * <p>A writer killed part way through a message leaves it torn, with the next segment straight after. A message which
+ * cannot be read is skipped by scanning ahead for the next segment's magic number.</p>
+ */
+public final class CaptureReader implements Closeable {
+  // longer than any text a platform delivers, so that a damaged length is caught, and room for a message of five
+  private static final int MAX_TEXT = 1 << 16;
+  private static final int MAX_RECORD = 1 << 20;
+  private final DataInputStream in;
+  private final List<String> strings = new ArrayList<>();
+  private long origin = Long.MIN_VALUE;
+  private long time;
+  private int damaged;
+
+  public CaptureReader(final Path path) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+  }
+
+  /**
+   * Reads the next message.
+   *
+   * @return the message, or {@code null} at the end of the capture
+   * @throws IOException if the capture could not be read, or is damaged
+   */
+  @Nullable
+  public Message next() throws IOException {
+    if(this.origin == Long.MIN_VALUE) {
+      this.in.mark(1);
+      if(this.in.read() == -1) {
+        return null;
+      }
+      this.in.reset();
+      if(this.in.readInt() != Capture.MAGIC) {
+        throw new IOException("Not a capture");
+      }
+      this.segment();
+    }
+    while(true) {
+      this.in.mark(MAX_RECORD);
+      final int flags = this.in.read();
+      if(flags == -1) {
+        return null;
+      }
+      try {
+        if(flags == Capture.MAGIC >>> 24) {
+          if(this.in.readUnsignedByte() != (Capture.MAGIC >>> 16 & 0xff) || this.in.readUnsignedByte() != (Capture.MAGIC >>> 8 & 0xff) || this.in.readUnsignedByte() != (Capture.MAGIC & 0xff)) {
+            throw new IOException("Damaged segment");
+          }
+          this.segment();
+          continue;
+        }
+        return this.message(flags);
+      } catch(final IOException e) {
+        // Torn or damaged: go back to where the message started, and look for the next segment from just after it.
+        this.damaged++;
+        this.in.reset();
+        this.in.skipBytes(1);
+        if(!this.resync()) {
+          return null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of times a message could not be read, and the rest of its segment was skipped.
+   *
+   * @return the number of times
+   */
+  public int damaged() {
+    return this.damaged;
+  }
+
+  private Message message(final int flags) throws IOException {
+    final int source = flags & Capture.SOURCE;
+    if(source >= Capture.Source.values().length) {
+      throw new IOException("Unknown source " + source);
+    }
+    this.time += this.readVarLong();
+    return new Message(
+      this.time,
+      Capture.Source.values()[source],
+      this.readString(),
+      this.readString(),
+      this.readString(),
+      this.readString(),
+      (flags & Capture.COMMAND) != 0,
+      (flags & Capture.OPERATOR) != 0,
+      this.readText()
+    );
+  }
+
+  // A segment restarts the strings, as the process which wrote it did, and its clock from the time it started.
+  private void segment() throws IOException {
+    final int format = this.in.readUnsignedByte();
+    if(format != Capture.FORMAT) {
+      throw new IOException("Unsupported capture format " + format);
+    }
+    final long start = this.in.readLong();
+    if(this.origin == Long.MIN_VALUE) {
+      this.origin = start;
+    }
+    // never backwards, should the clock have been set back between segments
+    this.time = Math.max(this.time, TimeUnit.MILLISECONDS.toMicros(start - this.origin));
+    this.strings.clear();
+  }
+
+  // Skips to just after the next magic number, and reads the segment it starts.
+  private boolean resync() throws IOException {
+    int window = 0;
+    for(int b = this.in.read(); b != -1; b = this.in.read()) {
+      window = window << 8 | b;
+      if(window == Capture.MAGIC) {
+        this.in.mark(MAX_RECORD);
+        try {
+          this.segment();
+          return true;
+        } catch(final IOException e) {
+          // a message which happened to contain the magic number, so keep looking
+          this.in.reset();
+        }
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private String readString() throws IOException {
+    final long reference = this.readVarLong();
+    if(reference == 0) {
+      return null;
+    } else if(reference == 1) {
+      final String string = this.readText();
+      this.strings.add(string);
+      return string;
+    } else if(reference - 2 < this.strings.size()) {
+      return this.strings.get((int) (reference - 2));
+    }
+    throw new IOException("Unknown string " + reference);
+  }
+
+  private String readText() throws IOException {
+    final long length = this.readVarLong();
+    if(length > MAX_TEXT) {
+      throw new IOException("Impossible length " + length);
+    }
+    final byte[] bytes = new byte[(int) length];
+    this.in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private long readVarLong() throws IOException {
+    long value = 0;
+    for(int shift = 0; shift < 64; shift += 7) {
+      final int b = this.in.read();
+      if(b == -1) {
+        throw new EOFException();
+      }
+      value |= (long) (b & 0x7f) << shift;
+      if((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed number");
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+
+  public static final class Message {
+    /**
+     * The microseconds since the first segment began, counting the time between segments.
+     */
+    public final long time;
+    public final Capture.Source source;
+    @Nullable public final String channel;
+    @Nullable public final String guild;
+    @Nullable public final String user;
+    @Nullable public final String name;
+    public final boolean command;
+    public final boolean operator;
+    public final String message;
+
+    Message(final long time, final Capture.Source source, @Nullable final String channel, @Nullable final String guild, @Nullable final String user, @Nullable final String name, final boolean command, final boolean operator, final String message) {
+      this.time = time;
+      this.source = source;
+      this.channel = channel;
+      this.guild = guild;
+      this.user = user;
+      this.name = name;
+      this.command = command;
+      this.operator = operator;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import javax.annotation.Nullable;
+
+/**
+ * Whoever ran a management command, on whichever platform they ran it.
+ */
+public interface Actor {
+  /**
+   * Gets the name to log and record in the command history.
+   *
+   * @return the name
+   */
+  String name();
+
+  /**
+   * Gets if the actor may modify commands where they ran the command.
+   *
+   * @return {@code true} if they may
+   */
+  boolean isOperator();
+
+  /**
+   * Gets if the actor is one of {@code command.admins}, who may change what applies everywhere.
+   *
+   * @return {@code true} if they are
+   */
+  boolean isAdmin();
+
+  /**
+   * Tests if a mask, in the syntax of {@link Ignores}, matches the actor.
+   *
+   * @param mask the mask, normalized
+   * @return {@code true} if it does
+   */
+  boolean matches(String mask);
+
+  /**
+   * Gets the scope key of where the command was run, used for the {@code here} scope.
+   *
+   * @return the scope key, or {@code null} if there is no such scope
+   */
+  @Nullable
+  String here();
+
+  /**
+   * Replies to the actor, with a notice on IRC or a message in the channel on Discord.
+   *
+   * @param message the message, which may contain IRC formatting and span several lines
+   */
+  void reply(String message);
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decides which messages are commands, and where in each the command starts.
+ *
+ * <p>A message is a command if it starts with one of its channel's prefixes, or addresses Felix by name, as in
+ * {@code Felix: cmd}. Most messages are neither, so before anything else their first character is looked up in a
+ * bitset of the characters every prefix and name starts with.</p>
+ */
+public final class Addressing {
+  private static final int CHARACTERS = Character.MAX_VALUE + 1;
+  private final String[] prefixes;
+  private final Map<String, String[]> channelPrefixes;
+  private volatile Names names;
+
+  public Addressing(final CommandConfiguration cc) {
+    this.prefixes = cc.prefixes;
+    this.channelPrefixes = cc.channelPrefixes;
+    this.names = new Names(this.prefixes, this.channelPrefixes.values(), new String[0], new boolean[0]);
+  }
+
+  /**
+   * Sets the names Felix may be addressed by.
+   *
+   * @param nicks names followed by {@code :} or {@code ,}, such as {@code Felix: cmd}, ignoring case
+   * @param mentions names followed by a space, such as a Discord mention
+   */
+  public void names(final Collection<String> nicks, final Collection<String> mentions) {
+    final String[] names = new String[nicks.size() + mentions.size()];
+    final boolean[] mention = new boolean[names.length];
+    int i = 0;
+    for(final String nick : nicks) {
+      names[i++] = nick;
+    }
+    for(final String name : mentions) {
+      mention[i] = true;
+      names[i++] = name;
+    }
+    this.names = new Names(this.prefixes, this.channelPrefixes.values(), names, mention);
+  }
+
+  /**
+   * Finds where the command in a message starts.
+   *
+   * @param scope the scope key of the channel the message was sent in, or {@code null} if it was sent privately
+   * @param message the message
+   * @return the index of the command, after the prefix or name, or {@code -1} if the message is not a command
+   */
+  public int match(@Nullable final String scope, final String message) {
+    if(message.isEmpty()) {
+      return -1;
+    }
+    final Names names = this.names;
+    final char first = message.charAt(0);
+    if((names.first[first >>> 6] & 1L << first) == 0) {
+      return -1;
+    }
+
+    @Nullable final String[] channel = scope == null ? null : this.channelPrefixes.get(scope);
+    for(final String prefix : channel != null ? channel : this.prefixes) {
+      if(message.length() > prefix.length() && message.startsWith(prefix)) {
+        return prefix.length();
+      }
+    }
+    for(int i = 0; i < names.names.length; i++) {
+      final String name = names.names[i];
+      if(!message.regionMatches(true, 0, name, 0, name.length())) {
+        continue;
+      }
+      int start = name.length();
+      if(names.mention[i]) {
+        if(start == message.length() || message.charAt(start) != ' ') {
+          continue;
+        }
+      } else if(start < message.length() && (message.charAt(start) == ':' || message.charAt(start) == ',')) {
+        start++;
+      } else {
+        continue;
+      }
+      while(start < message.length() && message.charAt(start) == ' ') {
+        start++;
+      }
+      if(start < message.length()) {
+        return start;
+      }
+    }
+    return -1;
+  }
+
+  private static final class Names {
+    // the characters any prefix or name starts with, in either case for names
+    final long[] first = new long[CHARACTERS / Long.SIZE];
+    final String[] names;
+    final boolean[] mention;
+
+    Names(final String[] prefixes, final Collection<String[]> channelPrefixes, final String[] names, final boolean[] mention) {
+      this.names = names;
+      this.mention = mention;
+      for(final String prefix : prefixes) {
+        this.set(prefix.charAt(0));
+      }
+      for(final String[] channel : channelPrefixes) {
+        for(final String prefix : channel) {
+          this.set(prefix.charAt(0));
+        }
+      }
+      for(final String name : names) {
+        this.set(Character.toLowerCase(name.charAt(0)));
+        this.set(Character.toUpperCase(name.charAt(0)));
+      }
+    }
+
+    private void set(final char c) {
+      this.first[c >>> 6] |= 1L << c;
+    }
+  }
+}
@@ -24,42 +24,44 @@
  */
 package org.spongepowered.felix.command;
 
-import com.sk89q.intake.parametric.ParameterException;
-import com.sk89q.intake.parametric.argument.ArgumentStack;
-import com.sk89q.intake.parametric.binding.BindingBehavior;
-import com.sk89q.intake.parametric.binding.BindingHelper;
-import com.sk89q.intake.parametric.binding.BindingMatch;
-import org.kitteh.irc.client.library.element.Channel;
-import org.kitteh.irc.client.library.element.User;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
-public final class ProviderBinding extends BindingHelper {
-  @BindingMatch(
-    type = Channel.class,
-    behavior = BindingBehavior.PROVIDES,
-    consumedCount = -1
-  )
-  public Channel provideChannel(final ArgumentStack stack) {
-    @Nullable final Channel channel = stack.getContext().getLocals().get(Channel.class);
-    if(channel == null) {
-      return null; // Do not throw
-    } else {
-      return channel;
+/**
+ * The people who may change what applies everywhere, such as the ignore list, and edit channels other than their own.
+ *
+ * <p>Admins are given as masks, in the syntax of {@link Ignores}: IRC hostmasks and {@code $a:<account>}, Discord user
+ * ids and {@code $r:<role id>}. A bare nick is not accepted, as anyone may take a nick.</p>
+ */
+public final class Admins {
+  private final List<String> masks = new ArrayList<>();
+
+  Admins(final Collection<String> masks) {
+    for(final String mask : masks) {
+      this.masks.add(Ignores.normalize(mask));
+    }
+  }
+
+  public boolean irc(final String nick, final String user, final String host, @Nullable final String account) {
+    for(final String mask : this.masks) {
+      if(Ignores.hostmask(mask) != null || mask.startsWith("$a:")) {
+        if(Ignores.matchesIrc(mask, nick, user, host, account)) {
+          return true;
+        }
+      }
     }
+    return false;
   }
 
-  @BindingMatch(
-    type = User.class,
-    behavior = BindingBehavior.PROVIDES,
-    consumedCount = -1
-  )
-  public User provideUser(final ArgumentStack stack) throws ParameterException {
-    @Nullable final User user = stack.getContext().getLocals().get(User.class);
-    if(user == null) {
-      throw new ParameterException("The User is unavailable.");
-    } else {
-      return user;
+  public boolean discord(final String id, final Collection<String> roles) {
+    for(final String mask : this.masks) {
+      if(Ignores.matchesDiscord(mask, id, roles)) {
+        return true;
+      }
     }
+    return false;
   }
 }
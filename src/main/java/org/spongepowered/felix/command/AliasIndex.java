@@ -0,0 +1,120 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import org.spongepowered.felix.util.PersistentSortedSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * The aliases of each scope in sorted order, for listing and completing them a page at a time.
+ *
+ * <p>The index is maintained from the aliases whose mapping changed between each version and the next, so a listing
+ * never sorts anything: it finds its first alias by rank, in O(log n), and walks the page from there.</p>
+ */
+public final class AliasIndex {
+  // the global layer is keyed by the empty string, which is no scope's key
+  private static final String GLOBAL = "";
+  // sorts after every character an alias holds, so that prefix + END bounds the aliases starting with prefix
+  private static final char END = Character.MAX_VALUE;
+  private final Map<String, PersistentSortedSet<String>> scopes = new ConcurrentHashMap<>();
+
+  void update(final CommandSnapshot from, final CommandSnapshot to) {
+    final Map<String, PersistentSortedSet<String>> changed = new HashMap<>();
+    CommandSnapshot.diff(from, to, (scope, alias, previous, command) -> {
+      if((previous == null) != (command == null)) {
+        final String key = scope == null ? GLOBAL : scope;
+        final PersistentSortedSet<String> aliases = changed.computeIfAbsent(key, this::aliases);
+        changed.put(key, command == null ? aliases.minus(alias) : aliases.plus(alias));
+      }
+    });
+    for(final Map.Entry<String, PersistentSortedSet<String>> entry : changed.entrySet()) {
+      if(entry.getValue().isEmpty()) {
+        this.scopes.remove(entry.getKey());
+      } else {
+        this.scopes.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private PersistentSortedSet<String> aliases(final String key) {
+    return this.scopes.getOrDefault(key, PersistentSortedSet.empty());
+  }
+
+  /**
+   * Lists the aliases starting with a prefix, in order.
+   *
+   * @param scope the scope, or {@code null} for the global layer
+   * @param prefix the lower-cased prefix
+   * @param page the page, starting at 0
+   * @param pageSize the number of aliases per page
+   * @return the page
+   */
+  public Page list(@Nullable final String scope, final String prefix, final int page, final int pageSize) {
+    final PersistentSortedSet<String> aliases = this.aliases(scope == null ? GLOBAL : scope);
+    final int first = aliases.rank(prefix);
+    final int total = aliases.rank(prefix + END) - first;
+    if(total == 0) {
+      return new Page(Collections.emptyList(), 0, prefix);
+    }
+
+    final List<String> results = new ArrayList<>(Math.min(pageSize, total));
+    final long end = first + (long) total;
+    final long from = Math.min(first + (long) page * pageSize, end);
+    aliases.forEach((int) from, (int) Math.min(from + pageSize, end), results::add);
+    return new Page(Collections.unmodifiableList(results), total, commonPrefix(aliases.get(first), aliases.get(first + total - 1)));
+  }
+
+  // The aliases are sorted, so the prefix shared by the first and last is shared by every one in between.
+  private static String commonPrefix(final String first, final String last) {
+    int length = 0;
+    while(length < first.length() && length < last.length() && first.charAt(length) == last.charAt(length)) {
+      length++;
+    }
+    return first.substring(0, length);
+  }
+
+  public static final class Page {
+    public final List<String> aliases;
+    public final int total;
+    /**
+     * The longest prefix shared by every alias starting with the prefix listed, which is what it completes to.
+     */
+    public final String completion;
+
+    Page(final List<String> aliases, final int total, final String completion) {
+      this.aliases = aliases;
+      this.total = total;
+      this.completion = completion;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * The arguments of a management command, parsed over the tokens of the message they came from.
+ *
+ * <p>Parsing follows the rules commands have always had: empty tokens are skipped, tokens wrapped in single or double
+ * quotes are joined, and any token made only of letters after a {@code -} is a set of flags, wherever it appears.
+ * A value flag takes the token after it as its value.</p>
+ */
+public final class Arguments {
+  private final String input;
+  private final String[] tokens;
+  // the positional arguments, and the index of the token each starts at
+  private final String[] values;
+  private final int[] origins;
+  // flag values, indexed by flag; boolean flags map to the empty string
+  private final String[] flags;
+
+  private Arguments(final String input, final String[] tokens, final String[] values, final int[] origins, final String[] flags) {
+    this.input = input;
+    this.tokens = tokens;
+    this.values = values;
+    this.origins = origins;
+    this.flags = flags;
+  }
+
+  /**
+   * Parses arguments from the tokens of a message.
+   *
+   * @param input the message, without the prefix
+   * @param tokens the message split by {@link CommandUtil#split(String)}, where the first token is the command name
+   * @param valueFlags the flags which take a value
+   * @return the arguments
+   * @throws UsageException if a value flag is repeated or has no value
+   */
+  public static Arguments parse(final String input, final String[] tokens, final String valueFlags) {
+    final String[] args = new String[tokens.length];
+    final int[] argOrigins = new int[tokens.length];
+    int argCount = 0;
+    for(int i = 1; i < tokens.length; i++) {
+      String arg = tokens[i];
+      if(arg.isEmpty()) {
+        continue;
+      }
+      final int origin = i;
+      final char quote = arg.charAt(0);
+      if(quote == '\'' || quote == '"') {
+        final int end = closingQuote(tokens, i, quote);
+        if(end != -1) {
+          arg = join(tokens, i, end);
+          i = end;
+          if(arg.isEmpty()) {
+            continue;
+          }
+        }
+      }
+      args[argCount] = arg;
+      argOrigins[argCount++] = origin;
+    }
+
+    final String[] values = new String[argCount];
+    final int[] origins = new int[argCount];
+    int valueCount = 0;
+    // flags are letters, or '?'
+    final String[] flags = new String[128];
+    for(int next = 0; next < argCount; ) {
+      final String arg = args[next];
+      final int origin = argOrigins[next++];
+      if(!isFlags(arg)) {
+        values[valueCount] = arg;
+        origins[valueCount++] = origin;
+        continue;
+      }
+
+      for(int i = 1; i < arg.length(); i++) {
+        final char flag = arg.charAt(i);
+        if(valueFlags.indexOf(flag) == -1) {
+          flags[flag] = "";
+        } else if(flags[flag] != null) {
+          throw new UsageException("Value flag '" + flag + "' already given");
+        } else if(next >= argCount) {
+          throw new UsageException("No value specified for the '-" + flag + "' flag.");
+        } else {
+          flags[flag] = args[next++];
+        }
+      }
+    }
+
+    return new Arguments(input, tokens, Arrays.copyOf(values, valueCount), Arrays.copyOf(origins, valueCount), flags);
+  }
+
+  // Finds the token closing a quote opened at the given token, or -1 if it is never closed.
+  private static int closingQuote(final String[] tokens, final int start, final char quote) {
+    for(int i = start; i < tokens.length; i++) {
+      final String token = tokens[i];
+      if(token.length() > 1 && token.charAt(token.length() - 1) == quote) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String join(final String[] tokens, final int start, final int end) {
+    final StringBuilder result = new StringBuilder();
+    for(int i = start; i <= end; i++) {
+      if(i != start) {
+        result.append(' ');
+      }
+      final String token = tokens[i];
+      result.append(token, i == start ? 1 : 0, i == end ? token.length() - 1 : token.length());
+    }
+    return result.toString();
+  }
+
+  private static boolean isFlags(final String arg) {
+    if(arg.length() < 2 || arg.charAt(0) != '-') {
+      return false;
+    }
+    for(int i = 1; i < arg.length(); i++) {
+      final char c = arg.charAt(i);
+      if(!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '?')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the number of positional arguments.
+   *
+   * @return the number of positional arguments
+   */
+  public int size() {
+    return this.values.length;
+  }
+
+  public String get(final int index) {
+    return this.values[index];
+  }
+
+  /**
+   * Gets a positional argument as a number.
+   *
+   * @param index the index of the argument
+   * @param def the value if there is no such argument
+   * @return the number
+   * @throws UsageException if the argument is not a number
+   */
+  public int getInt(final int index, final int def) {
+    return index < this.values.length ? number(this.values[index]) : def;
+  }
+
+  /**
+   * Gets the message from the token a positional argument starts at, to its end, as it was typed.
+   *
+   * @param index the index of the argument
+   * @return the remainder of the message
+   */
+  public String getJoined(final int index) {
+    final int origin = this.origins[index];
+    int offset = 0;
+    for(int i = 0; i < origin; i++) {
+      offset += this.tokens[i].length() + 1;
+    }
+    return this.input.substring(offset);
+  }
+
+  public boolean hasFlag(final char flag) {
+    return this.flags[flag] != null;
+  }
+
+  @Nullable
+  public String getFlag(final char flag) {
+    return this.flags[flag];
+  }
+
+  /**
+   * Gets the value of a flag as a number.
+   *
+   * @param flag the flag
+   * @param def the value if the flag was not given
+   * @return the number
+   * @throws UsageException if the value is not a number
+   */
+  public int getFlag(final char flag, final int def) {
+    @Nullable final String value = this.flags[flag];
+    return value == null ? def : number(value);
+  }
+
+  /**
+   * Gets the first flag given that is not one of the known flags.
+   *
+   * @param known the known flags
+   * @return the flag, or {@code 0} if every flag given is known
+   */
+  char unknownFlag(final String known) {
+    for(char flag = 0; flag < this.flags.length; flag++) {
+      if(this.flags[flag] != null && known.indexOf(flag) == -1) {
+        return flag;
+      }
+    }
+    return 0;
+  }
+
+  private static int number(final String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch(final NumberFormatException e) {
+      throw new UsageException("Number expected; string " + CommandUtil.quote(value) + " given.");
+    }
+  }
+}
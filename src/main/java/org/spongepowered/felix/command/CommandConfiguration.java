@@ -25,72 +25,344 @@
 package org.spongepowered.felix.command;
 
 import com.google.common.collect.Sets;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.Types;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.jfr.CommandsWrittenEvent;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import javax.annotation.Nullable;
+
+/**
+ * Holds the command set.
+ *
+ * <p>Reads go to the current {@link CommandSnapshot} without locking. Writes are made through
+ * {@link #transaction(String, Function)}, which publishes a new snapshot once the whole batch has been applied,
+ * and requests a single write of {@code commands.json}.</p>
+ *
+ * <p>The most recent snapshots are retained as history, and can be rolled back to.</p>
+ */
 public final class CommandConfiguration {
-  private static final Gson GSON = new GsonBuilder().create();
+  private static final Logger LOGGER = LogManager.getLogger();
   private static final Path PATH = Paths.get("commands.json");
-  public static final Set<String> RESERVED_COMMAND_NAMES = Sets.newHashSet("addalias", "addcmd", "cmdinfo", "delcmd", "setcmd", "unsetcmd");
+  private static final Path TRIGGERS_PATH = Paths.get("triggers.json");
+  private static final Path IGNORES_PATH = Paths.get("ignores.json");
+  private static final Path RESPONSES_PATH = Paths.get("responses.dat");
+  public static final Set<String> RESERVED_COMMAND_NAMES = Sets.newHashSet("addalias", "addcmd", "addtrigger", "cmdinfo", "cmdlist", "delcmd", "deltrigger", "diff", "export", "grab", "health", "history", "ignore", "ignores", "import", "last", "plugins", "quote", "rollback", "search", "seen", "setcmd", "triggers", "unignore", "unsetcmd", "wiredump");
   public static final int MAX_TARGETS = 3;
-  public final Map<String, PhysicalCommand> commands = new HashMap<>();
-  public final char prefix;
-  private final Set<String> ignore;
+  private static final int DEFAULT_HISTORY = 100;
+  // in MiB
+  private static final long DEFAULT_CACHE = 32;
+  private volatile CommandSnapshot snapshot = CommandSnapshot.EMPTY;
+  // oldest first, ending with the current snapshot
+  private final Deque<CommandSnapshot> history = new ArrayDeque<>();
+  private final int historySize;
+  private final ExecutorService persistence = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Felix persistence").build());
+  private final AtomicBoolean writePending = new AtomicBoolean();
+  private final List<Consumer<CommandSnapshot>> listeners = new CopyOnWriteArrayList<>();
+  private volatile boolean following;
+  public final SearchIndex index = new SearchIndex();
+  public final AliasIndex aliases = new AliasIndex();
+  public final Timers timers = new Timers(this);
+  public final Dumps dumps = new Dumps(this);
+  public final Triggers triggers;
+  public final Ignores ignores;
+  public final Admins admins;
+  /**
+   * The first configured prefix, which help and usage show.
+   */
+  public final String prefix;
+  // every prefix, and each channel's prefixes where they differ, longest first
+  final String[] prefixes;
+  final Map<String, String[]> channelPrefixes = new HashMap<>();
+  /**
+   * Where responses are kept, or {@code null} if they are all kept on the heap.
+   */
+  @Nullable public final ResponseStore responses;
 
   public CommandConfiguration(final ConfigurationNode config) throws IOException {
-    this.prefix = config.getNode("command", "prefix").getString().charAt(0);
-    this.ignore = new HashSet<>(config.getNode("command", "ignore").getList(Types::asString));
+    final List<String> prefixes = new ArrayList<>();
+    prefixes.add(config.getNode("command", "prefix").getString());
+    prefixes.addAll(config.getNode("command", "prefixes").getList(Types::asString));
+    this.prefixes = prefixes(prefixes);
+    this.prefix = prefixes.get(0);
+    for(final Map.Entry<Object, ? extends ConfigurationNode> channel : config.getNode("command", "channelPrefixes").getChildrenMap().entrySet()) {
+      this.channelPrefixes.put(Scope.parse(channel.getKey().toString(), null), prefixes(new ArrayList<>(channel.getValue().getList(Types::asString))));
+    }
+    this.ignores = new Ignores(IGNORES_PATH, config.getNode("command", "ignore").getList(Types::asString));
+    this.admins = new Admins(config.getNode("command", "admins").getList(Types::asString));
+    this.historySize = Math.max(1, config.getNode("command", "history").getInt(DEFAULT_HISTORY));
+    this.triggers = new Triggers(TRIGGERS_PATH);
+    if(config.getNode("command", "tiered").getBoolean(false)) {
+      this.responses = new ResponseStore(RESPONSES_PATH, config.getNode("command", "cache").getLong(DEFAULT_CACHE) * 1024 * 1024);
+      PhysicalCommand.store = this.responses;
+    } else {
+      this.responses = null;
+    }
 
     this.read();
   }
 
+  // Drops empty prefixes from the list, and returns the rest longest first, so that "!!" is tried before "!".
+  private static String[] prefixes(final List<String> prefixes) {
+    prefixes.removeIf(prefix -> prefix == null || prefix.isEmpty());
+    if(prefixes.isEmpty()) {
+      throw new IllegalArgumentException("At least one command prefix is needed");
+    }
+    final String[] sorted = prefixes.toArray(new String[0]);
+    Arrays.sort(sorted, Comparator.comparingInt(String::length).reversed());
+    return sorted;
+  }
+
+  public CommandSnapshot snapshot() {
+    return this.snapshot;
+  }
+
+  @Nullable
   public PhysicalCommand get(final String alias) {
-    return this.commands.get(alias);
+    return this.snapshot.get(null, alias);
   }
 
-  public PhysicalCommand getOrCreate(final String alias) {
-    return this.commands.getOrDefault(alias, new PhysicalCommand());
+  @Nullable
+  public PhysicalCommand get(@Nullable final String scope, final String alias) {
+    return this.snapshot.get(scope, alias);
   }
 
-  public void put(final PhysicalCommand command) {
-    for(final String alias : command.aliases) {
-      this.commands.put(alias.toLowerCase(Locale.ENGLISH), command);
+  @Nullable
+  public PhysicalCommand resolve(final String channel, @Nullable final String guild, final String alias) {
+    return this.snapshot.resolve(channel, guild, alias);
+  }
+
+  /**
+   * Gets the retained versions.
+   *
+   * @return the versions, oldest first and ending with the current one
+   */
+  public synchronized List<CommandSnapshot> history() {
+    return new ArrayList<>(this.history);
+  }
+
+  /**
+   * Gets a retained version.
+   *
+   * @param version the version number
+   * @return the version, or {@code null} if it is not retained
+   */
+  @Nullable
+  public synchronized CommandSnapshot version(final long version) {
+    for(final CommandSnapshot snapshot : this.history) {
+      if(snapshot.version == version) {
+        return snapshot;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Applies a batch of changes atomically. Readers see either none or all of the changes.
+   *
+   * <p>If the body throws, nothing is applied.</p>
+   *
+   * @param description a description of the changes, for history
+   * @param body the changes
+   * @param <T> the result type
+   * @return the result of the body
+   */
+  public <T> T transaction(@Nullable final String description, final Function<Transaction, T> body) {
+    return this.transaction(description, body, true);
+  }
+
+  /**
+   * Applies a batch of changes atomically, like {@link #transaction(String, Function)}, and gets the version they made.
+   *
+   * @param description a description of the changes, for history
+   * @param body the changes
+   * @return the new version, or the current one if nothing changed
+   */
+  public synchronized CommandSnapshot apply(@Nullable final String description, final Consumer<Transaction> body) {
+    this.transaction(description, transaction -> {
+      body.accept(transaction);
+      return null;
+    });
+    return this.snapshot;
+  }
+
+  synchronized <T> T transaction(@Nullable final String description, final Function<Transaction, T> body, final boolean persist) {
+    final Transaction transaction = new Transaction(this.snapshot);
+    final T result = body.apply(transaction);
+    this.publish(transaction, transaction.commit(System.currentTimeMillis(), description), persist, null);
+    return result;
+  }
+
+  /**
+   * Applies a batch of changes which continues an earlier one, without writing {@code commands.json}. If the earlier
+   * version is still the latest, it is replaced in history, so that a long run of batches takes a single entry.
+   *
+   * @param amended the version made by the earlier batch, or {@code null} if this is the first
+   * @param description a description of every batch so far, for history
+   * @param body the changes
+   * @return the new version, or {@code amended} if nothing changed
+   */
+  @Nullable
+  synchronized CommandSnapshot amend(@Nullable final CommandSnapshot amended, @Nullable final String description, final Consumer<Transaction> body) {
+    final Transaction transaction = new Transaction(this.snapshot);
+    body.accept(transaction);
+    final CommandSnapshot snapshot = transaction.commit(System.currentTimeMillis(), description);
+    this.publish(transaction, snapshot, false, amended);
+    // never the version before the first batch, which must stay in history
+    return transaction.changed() ? snapshot : amended;
+  }
+
+  /**
+   * Applies a batch of changes replicated from the primary, as the version it was there.
+   *
+   * @param version the version
+   * @param time the time the version was made
+   * @param description the description of the version
+   * @param body the changes
+   */
+  synchronized void replicate(final long version, final long time, @Nullable final String description, final Consumer<Transaction> body) {
+    final Transaction transaction = new Transaction(this.snapshot);
+    body.accept(transaction);
+    this.publish(transaction, transaction.commit(version, time, description), true, null);
+  }
+
+  private void publish(final Transaction transaction, final CommandSnapshot snapshot, final boolean persist, @Nullable final CommandSnapshot amended) {
+    if(transaction.changed()) {
+      final CommandSnapshot previous = this.snapshot;
+      this.snapshot = snapshot;
+      if(amended != null && this.history.peekLast() == amended) {
+        this.history.removeLast();
+      }
+      this.history.addLast(this.snapshot);
+      while(this.history.size() > this.historySize) {
+        this.history.removeFirst();
+      }
+      for(final PhysicalCommand command : transaction.removed) {
+        this.index.remove(command);
+        this.timers.remove(command);
+      }
+      for(final PhysicalCommand command : transaction.displaced) {
+        if(!this.live(command)) {
+          this.index.remove(command);
+          this.timers.remove(command);
+        }
+      }
+      for(final PhysicalCommand command : transaction.added) {
+        if(this.live(command)) {
+          this.index.add(command);
+          this.timers.add(command);
+        }
+      }
+      this.aliases.update(previous, snapshot);
+      if(persist) {
+        this.requestWrite();
+      }
+      for(final Consumer<CommandSnapshot> listener : this.listeners) {
+        listener.accept(snapshot);
+      }
     }
   }
 
-  public void remove(final PhysicalCommand command) {
+  void addListener(final Consumer<CommandSnapshot> listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Tests if this instance is a hot standby, following the primary's command set through a {@link Replica}.
+   *
+   * <p>A standby answers no messages, and leaves expiring and announcing commands to the primary.</p>
+   *
+   * @return {@code true} if this instance is following the primary
+   */
+  public boolean following() {
+    return this.following;
+  }
+
+  void follow(final boolean following) {
+    this.following = following;
+  }
+
+  // A command put by a transaction may have had all of its aliases taken over by a later put.
+  private boolean live(final PhysicalCommand command) {
     for(final String alias : command.aliases) {
-      this.commands.remove(alias.toLowerCase(Locale.ENGLISH));
+      if(this.snapshot.get(command.scope, alias.toLowerCase(Locale.ENGLISH)) == command) {
+        return true;
+      }
     }
+    return false;
   }
 
   private void read() throws IOException {
     if(Files.exists(PATH)) {
-      final PhysicalCommand[] commands = GSON.fromJson(new String(Files.readAllBytes(PATH), StandardCharsets.UTF_8), PhysicalCommand[].class);
-      for(final PhysicalCommand command : commands) {
-        this.put(command);
+      try(final JsonReader in = new JsonReader(Files.newBufferedReader(PATH, StandardCharsets.UTF_8))) {
+        this.transaction("load " + PATH, transaction -> {
+          try {
+            FactoidFormats.FELIX.read(in, transaction::put);
+          } catch(final IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          return null;
+        }, false);
+      } catch(final UncheckedIOException e) {
+        throw e.getCause();
       }
     }
   }
 
-  public void write() throws IOException {
-    Files.write(Paths.get("commands.json"), GSON.toJson(this.commands.values()).getBytes(StandardCharsets.UTF_8));
+  void requestWrite() {
+    // Coalesce requests made while a write is waiting - it will pick up the latest snapshot anyway.
+    if(this.writePending.compareAndSet(false, true)) {
+      this.persistence.execute(() -> {
+        this.writePending.set(false);
+        try {
+          this.write(this.snapshot);
+        } catch(final IOException e) {
+          LOGGER.error("Could not write commands", e);
+        }
+      });
+    }
   }
 
-  public boolean ignored(final String string) {
-    return this.ignore.contains(string);
+  private void write(final CommandSnapshot snapshot) throws IOException {
+    final CommandsWrittenEvent event = new CommandsWrittenEvent();
+    event.begin();
+    final Path temporary = PATH.resolveSibling(PATH.getFileName() + ".tmp");
+    final Collection<PhysicalCommand> commands = snapshot.all();
+    try(final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8); final JsonWriter out = new JsonWriter(writer)) {
+      FactoidFormats.FELIX.write(out, commands);
+    }
+    final long bytes = event.shouldCommit() ? Files.size(temporary) : 0;
+    Files.move(temporary, PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    event.commit(snapshot.version, commands.size(), bytes);
   }
 }
@@ -0,0 +1,137 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import org.spongepowered.felix.util.PersistentMap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable version of the command set, published by {@link CommandConfiguration} after every {@link Transaction}.
+ *
+ * <p>Versions share structure with each other, so keeping old ones around for history costs little.</p>
+ */
+public final class CommandSnapshot {
+  static final CommandSnapshot EMPTY = new CommandSnapshot(PersistentMap.empty(), PersistentMap.empty(), 0, 0, null);
+  // alias -> command
+  final PersistentMap<String, PhysicalCommand> commands;
+  // scope -> (alias -> command), layered over the global commands
+  final PersistentMap<String, PersistentMap<String, PhysicalCommand>> overlays;
+  public final long version;
+  public final long time;
+  @Nullable public final String description;
+
+  CommandSnapshot(
+    final PersistentMap<String, PhysicalCommand> commands,
+    final PersistentMap<String, PersistentMap<String, PhysicalCommand>> overlays,
+    final long version,
+    final long time,
+    @Nullable final String description
+  ) {
+    this.commands = commands;
+    this.overlays = overlays;
+    this.version = version;
+    this.time = time;
+    this.description = description;
+  }
+
+  /**
+   * Gets a command from a single layer.
+   *
+   * @param scope the scope, or {@code null} for the global layer
+   * @param alias the alias
+   * @return the command, or {@code null}
+   */
+  @Nullable
+  public PhysicalCommand get(@Nullable final String scope, final String alias) {
+    return this.layer(scope).get(alias);
+  }
+
+  /**
+   * Resolves a command as seen from a channel, preferring the channel overlay, then the guild overlay, then the global layer.
+   *
+   * @param channel the channel scope
+   * @param guild the guild scope, or {@code null}
+   * @param alias the alias
+   * @return the command, or {@code null}
+   */
+  @Nullable
+  public PhysicalCommand resolve(final String channel, @Nullable final String guild, final String alias) {
+    @Nullable PhysicalCommand command = this.layer(channel).get(alias);
+    if(command == null && guild != null) {
+      command = this.layer(guild).get(alias);
+    }
+    if(command == null) {
+      command = this.commands.get(alias);
+    }
+    return command;
+  }
+
+  /**
+   * Gets every command in every layer, once each.
+   *
+   * @return the commands
+   */
+  public Collection<PhysicalCommand> all() {
+    final Set<PhysicalCommand> commands = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.commands.forEach((alias, command) -> commands.add(command));
+    this.overlays.forEach((scope, overlay) -> overlay.forEach((alias, command) -> commands.add(command)));
+    return Collections.unmodifiableSet(commands);
+  }
+
+  /**
+   * Reports every alias whose command differs between two versions.
+   *
+   * @param from the old version
+   * @param to the new version
+   * @param consumer receives the scope and alias, with the old and new commands
+   */
+  public static void diff(final CommandSnapshot from, final CommandSnapshot to, final DiffConsumer consumer) {
+    PersistentMap.diff(from.commands, to.commands, (alias, a, b) -> consumer.accept(null, alias, a, b));
+    PersistentMap.diff(from.overlays, to.overlays, (scope, a, b) -> PersistentMap.diff(
+      a == null ? PersistentMap.<String, PhysicalCommand>empty() : a,
+      b == null ? PersistentMap.<String, PhysicalCommand>empty() : b,
+      (alias, c, d) -> consumer.accept(scope, alias, c, d)
+    ));
+  }
+
+  PersistentMap<String, PhysicalCommand> layer(@Nullable final String scope) {
+    if(scope == null) {
+      return this.commands;
+    }
+    @Nullable final PersistentMap<String, PhysicalCommand> overlay = this.overlays.get(scope);
+    return overlay == null ? PersistentMap.empty() : overlay;
+  }
+
+  @FunctionalInterface
+  public interface DiffConsumer {
+    void accept(@Nullable String scope, String alias, @Nullable PhysicalCommand from, @Nullable PhysicalCommand to);
+  }
+}
@@ -28,8 +28,28 @@ import com.google.common.collect.Lists;
 import org.kitteh.irc.client.library.util.Format;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public final class CommandUtil {
+  /**
+   * The longest duration {@link #parseDuration(String)} accepts, so that a deadline computed from one cannot overflow.
+   */
+  public static final long MAX_DURATION = TimeUnit.DAYS.toMillis(365);
+  private static final Pattern DURATION = Pattern.compile("(\\d{1,9})([smhd])");
+
+  /**
+   * Splits a command line on single spaces, keeping empty tokens so that every token's offset can be recovered.
+   *
+   * @param string the command line
+   * @return the tokens
+   */
+  public static String[] split(final String string) {
+    return string.split(" ", -1);
+  }
+
   public static String arrayToString(final String[] array, final int index) {
     final StringBuilder result = new StringBuilder();
     for(final String item : copyArray(array, index)) {
@@ -44,11 +64,11 @@ public final class CommandUtil {
     return args.toArray(new String[args.size()]);
   }
 
-  public static String prefix(final char prefix, final String string) {
+  public static String prefix(final String prefix, final String string) {
     return prefix + string;
   }
 
-  public static String wrapPrefix(final char prefix, final String name, final String value) {
+  public static String wrapPrefix(final String prefix, final String name, final String value) {
     return prefix + name + ": " + value;
   }
 
@@ -59,4 +79,98 @@ public final class CommandUtil {
   public static String quote(final String string) {
     return '\'' + reset(string) + '\'';
   }
+
+  /**
+   * Parses a duration such as {@code 90s}, {@code 30m}, {@code 12h}, {@code 7d} or {@code 1h30m}.
+   *
+   * @param string the duration
+   * @return the duration, in milliseconds
+   * @throws IllegalArgumentException if the duration is malformed, or longer than {@link #MAX_DURATION}
+   */
+  public static long parseDuration(final String string) {
+    final Matcher matcher = DURATION.matcher(string.toLowerCase(Locale.ENGLISH));
+    long duration = 0;
+    int end = 0;
+    while(matcher.find() && matcher.start() == end) {
+      final long amount = Long.parseLong(matcher.group(1));
+      switch(matcher.group(2).charAt(0)) {
+        case 's': duration += TimeUnit.SECONDS.toMillis(amount); break;
+        case 'm': duration += TimeUnit.MINUTES.toMillis(amount); break;
+        case 'h': duration += TimeUnit.HOURS.toMillis(amount); break;
+        default: duration += TimeUnit.DAYS.toMillis(amount); break;
+      }
+      end = matcher.end();
+      if(duration > MAX_DURATION) {
+        throw new IllegalArgumentException(string);
+      }
+    }
+    if(end == 0 || end != string.length()) {
+      throw new IllegalArgumentException(string);
+    }
+    return duration;
+  }
+
+  /**
+   * Formats a duration, such as {@code 45s} or, to the minute, {@code 1d 2h 30m}.
+   *
+   * @param millis the duration, in milliseconds
+   * @return the duration
+   */
+  public static String formatDuration(final long millis) {
+    if(millis < TimeUnit.MINUTES.toMillis(1)) {
+      return TimeUnit.MILLISECONDS.toSeconds(Math.max(0, millis) + 999) + "s";
+    }
+    final long minutes = Math.max(1, TimeUnit.MILLISECONDS.toMinutes(millis + TimeUnit.SECONDS.toMillis(59)));
+    final StringBuilder result = new StringBuilder();
+    if(minutes >= TimeUnit.DAYS.toMinutes(1)) {
+      result.append(minutes / TimeUnit.DAYS.toMinutes(1)).append("d ");
+    }
+    if(minutes % TimeUnit.DAYS.toMinutes(1) >= 60) {
+      result.append(minutes % TimeUnit.DAYS.toMinutes(1) / 60).append("h ");
+    }
+    if(minutes % 60 != 0) {
+      result.append(minutes % 60).append('m');
+    }
+    return result.toString().trim();
+  }
+
+  /**
+   * Removes IRC formatting codes, for platforms which do not understand them.
+   *
+   * @param string the string
+   * @return the string, without formatting
+   */
+  public static String stripFormatting(final String string) {
+    final StringBuilder result = new StringBuilder(string.length());
+    for(int i = 0; i < string.length(); i++) {
+      final char c = string.charAt(i);
+      switch(c) {
+        case '\u0002': // bold
+        case '\u000f': // reset
+        case '\u0016': // reverse
+        case '\u001d': // italic
+        case '\u001f': // underline
+          break;
+        case '\u0003': // colour, followed by up to two digits and an optional comma and background of up to two digits
+          i = skipDigits(string, i + 1);
+          if(i + 2 < string.length() && string.charAt(i + 1) == ',' && Character.isDigit(string.charAt(i + 2))) {
+            i = skipDigits(string, i + 2);
+          }
+          break;
+        default:
+          result.append(c);
+          break;
+      }
+    }
+    return result.toString();
+  }
+
+  // Returns the index of the last of up to two digits starting at the given index.
+  private static int skipDigits(final String string, int index) {
+    final int end = Math.min(index + 2, string.length());
+    while(index < end && Character.isDigit(string.charAt(index))) {
+      index++;
+    }
+    return index - 1;
+  }
 }
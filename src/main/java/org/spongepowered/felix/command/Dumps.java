@@ -0,0 +1,250 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.common.collect.Iterables;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Imports and exports factoid dumps in the {@code dumps} directory, in the background and one at a time.
+ *
+ * <p>Dumps are streamed, so neither holds more than a batch of factoids beyond the database itself. An import applies
+ * its factoids in batched transactions, which readers never wait on, and requests a single write of
+ * {@code commands.json} once it is done. Each batch replaces the last in history, so an import takes one entry, and
+ * the version before it can always be rolled back to.</p>
+ */
+public final class Dumps {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final Path DIRECTORY = Paths.get("dumps");
+  private static final int BATCH = 1000;
+  private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+  private final CommandConfiguration cc;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Felix dumps").setDaemon(true).build());
+  // a description of the running job, or null if there is none
+  @Nullable private volatile String running;
+
+  Dumps(final CommandConfiguration cc) {
+    this.cc = cc;
+  }
+
+  /**
+   * Starts importing a dump.
+   *
+   * @param file the name of the dump
+   * @param format the format of the dump
+   * @param scope the scope to import every factoid into, or {@code null} to keep the scope the dump gives
+   * @param actor who started the import, for history
+   * @param progress the consumer of progress reports
+   * @return {@code null} if the import started, or why it did not
+   */
+  @Nullable
+  public synchronized String startImport(final String file, final FactoidFormat format, @Nullable final String scope, final String actor, final Consumer<String> progress) {
+    @Nullable final String problem = this.check(file);
+    if(problem != null) {
+      return problem;
+    }
+    final Path path = DIRECTORY.resolve(file);
+    if(!Files.isRegularFile(path)) {
+      return "There is no dump named " + CommandUtil.quote(file) + '.';
+    }
+    this.running = "import of " + file;
+    this.executor.execute(() -> this.run(() -> this.importDump(path, format, scope, actor, progress)));
+    return null;
+  }
+
+  /**
+   * Starts exporting the current version of the database.
+   *
+   * @param file the name of the dump
+   * @param format the format of the dump
+   * @param progress the consumer of progress reports
+   * @return {@code null} if the export started, or why it did not
+   */
+  @Nullable
+  public synchronized String startExport(final String file, final FactoidFormat format, final Consumer<String> progress) {
+    @Nullable final String problem = this.check(file);
+    if(problem != null) {
+      return problem;
+    }
+    this.running = "export to " + file;
+    this.executor.execute(() -> this.run(() -> this.exportDump(DIRECTORY.resolve(file), format, progress)));
+    return null;
+  }
+
+  @Nullable
+  private String check(final String file) {
+    if(this.running != null) {
+      return "Please wait for the " + this.running + " to finish.";
+    }
+    if(!file.matches("[A-Za-z0-9_-][A-Za-z0-9._-]*")) {
+      return "Dump names may only contain letters, digits, '.', '_' and '-', and may not start with '.'.";
+    }
+    return null;
+  }
+
+  private void run(final Runnable job) {
+    try {
+      job.run();
+    } finally {
+      this.running = null;
+    }
+  }
+
+  private void importDump(final Path path, final FactoidFormat format, @Nullable final String scope, final String actor, final Consumer<String> progress) {
+    final long start = System.nanoTime();
+    final Progress state = new Progress(start);
+    final List<PhysicalCommand> batch = new ArrayList<>(BATCH);
+    try(final CountingInputStream counting = new CountingInputStream(Files.newInputStream(path));
+        final JsonReader in = new JsonReader(new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8)))) {
+      final long size = Math.max(1, Files.size(path));
+      progress.accept("Importing " + path.getFileName() + " (" + size / 1024 + " KiB) as " + format.name() + '.');
+      format.read(in, factoid -> {
+        if(factoid.aliases.isEmpty() || factoid.responses.isEmpty() || reserved(factoid)) {
+          state.skipped++;
+          return;
+        }
+        batch.add(scope == null ? factoid : factoid.withScope(scope));
+        if(batch.size() == BATCH) {
+          this.apply(batch, actor, path, state);
+          if(state.due()) {
+            progress.accept("Imported " + state.done + " factoids, " + counting.getCount() * 100 / size + "% of " + path.getFileName() + '.');
+          }
+        }
+      });
+      this.apply(batch, actor, path, state);
+      progress.accept("Imported " + state.done + " factoids from " + path.getFileName() + " in " + seconds(start) + "s" + (state.skipped == 0 ? "." : ", skipping " + state.skipped + " without names, values or with reserved names."));
+    } catch(final IOException | JsonParseException | IllegalStateException e) {
+      LOGGER.warn("Could not import {}", path, e);
+      this.apply(batch, actor, path, state);
+      progress.accept("The import of " + path.getFileName() + " stopped after " + state.done + " factoids: " + e.getMessage());
+    } finally {
+      if(state.done > 0) {
+        this.cc.requestWrite();
+      }
+    }
+  }
+
+  private void apply(final List<PhysicalCommand> batch, final String actor, final Path path, final Progress state) {
+    if(batch.isEmpty()) {
+      return;
+    }
+    state.version = this.cc.amend(state.version, actor + ": import " + path.getFileName() + " #1-" + (state.done + batch.size()), transaction -> {
+      for(final PhysicalCommand factoid : batch) {
+        transaction.put(factoid);
+      }
+    });
+    state.done += batch.size();
+    batch.clear();
+  }
+
+  private static boolean reserved(final PhysicalCommand factoid) {
+    for(final String alias : factoid.aliases) {
+      if(CommandConfiguration.RESERVED_COMMAND_NAMES.contains(alias)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void exportDump(final Path path, final FactoidFormat format, final Consumer<String> progress) {
+    final long start = System.nanoTime();
+    final CommandSnapshot snapshot = this.cc.snapshot();
+    final Progress state = new Progress(start);
+    final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(DIRECTORY);
+      try(final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8); final JsonWriter out = new JsonWriter(writer)) {
+        final int total = snapshot.all().size();
+        progress.accept("Exporting " + total + " factoids of version #" + snapshot.version + " as " + format.name() + '.');
+        format.write(out, Iterables.transform(snapshot.all(), factoid -> {
+          state.done++;
+          if(state.due()) {
+            progress.accept("Exported " + state.done + " of " + total + " factoids.");
+          }
+          return factoid;
+        }));
+      }
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      progress.accept("Exported version #" + snapshot.version + " to " + path.getFileName() + " in " + seconds(start) + "s.");
+    } catch(final IOException e) {
+      LOGGER.warn("Could not export to {}", path, e);
+      try {
+        Files.deleteIfExists(temporary);
+      } catch(final IOException ignored) {
+      }
+      progress.accept("The export to " + path.getFileName() + " failed: " + e.getMessage());
+    }
+  }
+
+  private static String seconds(final long start) {
+    return String.format("%.1f", (System.nanoTime() - start) / 1e9);
+  }
+
+  private static final class Progress {
+    int done;
+    int skipped;
+    // the version the last batch made, replaced in history by the next
+    @Nullable CommandSnapshot version;
+    private long reported;
+
+    Progress(final long start) {
+      this.reported = start;
+    }
+
+    // Whether a progress report is due, at most every PROGRESS_INTERVAL.
+    boolean due() {
+      final long now = System.nanoTime();
+      if(now - this.reported < PROGRESS_INTERVAL) {
+        return false;
+      }
+      this.reported = now;
+      return true;
+    }
+  }
+}
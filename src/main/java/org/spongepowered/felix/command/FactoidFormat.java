@@ -0,0 +1,63 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Maps a factoid dump to and from {@link PhysicalCommand}s, one factoid at a time.
+ *
+ * <p>Formats other than those in {@link FactoidFormats} are found with {@link java.util.ServiceLoader}.</p>
+ */
+public interface FactoidFormat {
+  /**
+   * Gets the name the format is chosen by.
+   *
+   * @return the name
+   */
+  String name();
+
+  /**
+   * Reads a dump, passing each factoid on as soon as it has been read.
+   *
+   * @param in the reader
+   * @param factoids the consumer of factoids
+   * @throws IOException if the dump cannot be read
+   */
+  void read(JsonReader in, Consumer<PhysicalCommand> factoids) throws IOException;
+
+  /**
+   * Writes a dump.
+   *
+   * @param out the writer
+   * @param factoids the factoids
+   * @throws IOException if the dump cannot be written
+   */
+  void write(JsonWriter out, Iterable<PhysicalCommand> factoids) throws IOException;
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * The known {@link FactoidFormat}s.
+ */
+public final class FactoidFormats {
+  /**
+   * The format of {@code commands.json}: an array of objects with an optional {@code scope}, and {@code aliases}
+   * and {@code responses} arrays.
+   */
+  public static final FactoidFormat FELIX = new Felix();
+  /**
+   * A single object mapping each name to a response, or to an array of responses, as many bots dump their factoids.
+   * It has no notion of scope or aliases: every name becomes its own global factoid, and scoped factoids are not exported.
+   */
+  public static final FactoidFormat MAP = new MapFormat();
+  private static final Map<String, FactoidFormat> FORMATS = new TreeMap<>();
+
+  static {
+    register(FELIX);
+    register(MAP);
+    for(final FactoidFormat format : ServiceLoader.load(FactoidFormat.class)) {
+      register(format);
+    }
+  }
+
+  private FactoidFormats() {
+  }
+
+  private static void register(final FactoidFormat format) {
+    FORMATS.putIfAbsent(format.name().toLowerCase(Locale.ENGLISH), format);
+  }
+
+  @Nullable
+  public static FactoidFormat get(final String name) {
+    return FORMATS.get(name.toLowerCase(Locale.ENGLISH));
+  }
+
+  public static Iterable<String> names() {
+    return Collections.unmodifiableSet(FORMATS.keySet());
+  }
+
+  private static final class Felix implements FactoidFormat {
+    private final PhysicalCommand.Adapter adapter = new PhysicalCommand.Adapter();
+
+    @Override
+    public String name() {
+      return "felix";
+    }
+
+    @Override
+    public void read(final JsonReader in, final Consumer<PhysicalCommand> factoids) throws IOException {
+      in.beginArray();
+      while(in.hasNext()) {
+        factoids.accept(this.adapter.read(in));
+      }
+      in.endArray();
+    }
+
+    @Override
+    public void write(final JsonWriter out, final Iterable<PhysicalCommand> factoids) throws IOException {
+      out.beginArray();
+      for(final PhysicalCommand factoid : factoids) {
+        this.adapter.write(out, factoid);
+      }
+      out.endArray();
+    }
+  }
+
+  private static final class MapFormat implements FactoidFormat {
+    @Override
+    public String name() {
+      return "map";
+    }
+
+    @Override
+    public void read(final JsonReader in, final Consumer<PhysicalCommand> factoids) throws IOException {
+      in.beginObject();
+      while(in.hasNext()) {
+        final String name = in.nextName().toLowerCase(Locale.ENGLISH);
+        final List<String> responses = new ArrayList<>(1);
+        if(in.peek() == JsonToken.BEGIN_ARRAY) {
+          in.beginArray();
+          while(in.hasNext()) {
+            responses.add(in.nextString());
+          }
+          in.endArray();
+        } else {
+          responses.add(in.nextString());
+        }
+        factoids.accept(new PhysicalCommand(null, Collections.singleton(name), responses));
+      }
+      in.endObject();
+    }
+
+    @Override
+    public void write(final JsonWriter out, final Iterable<PhysicalCommand> factoids) throws IOException {
+      out.beginObject();
+      for(final PhysicalCommand factoid : factoids) {
+        if(factoid.scope != null) {
+          continue;
+        }
+        final List<String> responses = ResponseStore.uncached(factoid.responses);
+        for(final String alias : factoid.aliases) {
+          out.name(alias);
+          if(responses.size() == 1) {
+            out.value(responses.get(0));
+          } else {
+            out.beginArray();
+            for(final String response : responses) {
+              out.value(response);
+            }
+            out.endArray();
+          }
+        }
+      }
+      out.endObject();
+    }
+  }
+}
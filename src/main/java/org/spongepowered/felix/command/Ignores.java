@@ -0,0 +1,569 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decides whose messages Felix ignores.
+ *
+ * <p>A mask is one of:</p>
+ * <ul>
+ *   <li>a nick or Discord user id, such as {@code spammer} or {@code 1234};</li>
+ *   <li>an IRC hostmask, {@code nick!user@host}, where {@code *} matches anything and {@code ?} any one character;</li>
+ *   <li>{@code $a:<account>}, an IRC services account;</li>
+ *   <li>{@code $r:<role id>}, a Discord role.</li>
+ * </ul>
+ *
+ * <p>Masks are compiled into a {@link Matcher}: names, accounts and roles into hash tables, and hostmasks into a trie
+ * of the literal their host ends with - read backwards, so {@code *.example.com} is found from a user's host in one
+ * walk - or else starts with. Only the hostmasks found along the way are matched in full, so a message costs the same
+ * however many masks there are, and nothing is allocated in looking it up. The matcher is rebuilt on a background
+ * thread whenever the masks change, and swapped in atomically.</p>
+ */
+public final class Ignores {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final String ACCOUNT = "$a:";
+  private static final String ROLE = "$r:";
+  private final Path path;
+  // mask -> how many messages it has ignored, kept across rebuilds
+  private final Map<String, LongAdder> masks = new ConcurrentSkipListMap<>();
+  private final ExecutorService compiler = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Felix ignores").setDaemon(true).build());
+  private final AtomicBoolean rebuildPending = new AtomicBoolean();
+  private final LongAdder hits = new LongAdder();
+  private volatile Matcher matcher;
+
+  /**
+   * Creates the ignore list, read from a file, or else from the masks given, until the first edit writes the file.
+   *
+   * @param path the file
+   * @param initial the masks to start with when there is no file
+   * @throws IOException if the file could not be read
+   */
+  Ignores(final Path path, final Collection<String> initial) throws IOException {
+    this.path = path;
+    if(Files.exists(path)) {
+      try(final JsonReader in = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+        in.beginArray();
+        while(in.hasNext()) {
+          this.masks.put(normalize(in.nextString()), new LongAdder());
+        }
+        in.endArray();
+      }
+    } else {
+      for(final String mask : initial) {
+        this.masks.put(normalize(mask), new LongAdder());
+      }
+    }
+    this.matcher = Matcher.compile(this.masks);
+  }
+
+  /**
+   * Puts a mask into the form it is kept in: lower case, with a hostmask's missing parts filled in with {@code *}.
+   *
+   * @param mask the mask
+   * @return the mask, normalized
+   */
+  public static String normalize(final String mask) {
+    final String lower = mask.trim().toLowerCase(Locale.ENGLISH);
+    if(lower.startsWith(ACCOUNT) || lower.startsWith(ROLE)) {
+      return lower;
+    }
+    final int bang = lower.indexOf('!');
+    final int at = lower.indexOf('@', bang + 1);
+    if(at == -1 && bang == -1) {
+      return lower;
+    }
+    final String nick = bang != -1 ? lower.substring(0, bang) : "*";
+    final String user = bang != -1 ? lower.substring(bang + 1, at == -1 ? lower.length() : at) : lower.substring(0, at);
+    final String host = at == -1 ? "*" : lower.substring(at + 1);
+    return (nick.isEmpty() ? "*" : nick) + '!' + (user.isEmpty() ? "*" : user) + '@' + (host.isEmpty() ? "*" : host);
+  }
+
+  /**
+   * Tests if a mask would match everyone on IRC, as a hostmask with nothing but wildcards does.
+   *
+   * @param mask the mask, normalized
+   * @return {@code true} if it would
+   */
+  public static boolean matchesEveryone(final String mask) {
+    @Nullable final String[] parts = hostmask(mask);
+    if(parts == null) {
+      return false;
+    }
+    for(final String part : parts) {
+      for(int i = 0; i < part.length(); i++) {
+        if(!wild(part.charAt(i))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Tests if a single mask matches someone on IRC.
+   *
+   * @param mask the mask, normalized
+   * @param nick their nick
+   * @param user their user name
+   * @param host their host
+   * @param account their services account, or {@code null}
+   * @return {@code true} if it does
+   */
+  public static boolean matchesIrc(final String mask, final String nick, final String user, final String host, @Nullable final String account) {
+    if(mask.startsWith(ACCOUNT)) {
+      return account != null && mask.regionMatches(true, ACCOUNT.length(), account, 0, account.length()) && mask.length() == ACCOUNT.length() + account.length();
+    } else if(mask.startsWith(ROLE)) {
+      return false;
+    }
+    @Nullable final String[] parts = hostmask(mask);
+    if(parts == null) {
+      return mask.equalsIgnoreCase(nick);
+    }
+    return glob(parts[0], nick) && glob(parts[1], user) && glob(parts[2], host);
+  }
+
+  /**
+   * Tests if a single mask matches someone on Discord.
+   *
+   * @param mask the mask, normalized
+   * @param id their id
+   * @param roles the ids of their roles in the guild they are in
+   * @return {@code true} if it does
+   */
+  public static boolean matchesDiscord(final String mask, final String id, final Collection<String> roles) {
+    if(mask.startsWith(ROLE)) {
+      return roles.contains(mask.substring(ROLE.length()));
+    }
+    return !mask.startsWith(ACCOUNT) && hostmask(mask) == null && mask.equals(id);
+  }
+
+  // Splits a normalized hostmask into its nick, user and host, or returns null if the mask is not a hostmask.
+  @Nullable
+  static String[] hostmask(final String mask) {
+    if(mask.startsWith(ACCOUNT) || mask.startsWith(ROLE)) {
+      return null;
+    }
+    final int bang = mask.indexOf('!');
+    if(bang == -1) {
+      return null;
+    }
+    final int at = mask.indexOf('@', bang);
+    return new String[]{mask.substring(0, bang), mask.substring(bang + 1, at), mask.substring(at + 1)};
+  }
+
+  public Collection<String> all() {
+    return Collections.unmodifiableCollection(this.masks.keySet());
+  }
+
+  /**
+   * Gets how many messages a mask has ignored since Felix started.
+   *
+   * @param mask the mask
+   * @return the count, or {@code -1} if the mask is not in the list
+   */
+  public long hits(final String mask) {
+    @Nullable final LongAdder hits = this.masks.get(normalize(mask));
+    return hits == null ? -1 : hits.sum();
+  }
+
+  /**
+   * Gets how many messages have been ignored since Felix started.
+   *
+   * @return the count
+   */
+  public long hits() {
+    return this.hits.sum();
+  }
+
+  public boolean add(final String mask) {
+    if(this.masks.putIfAbsent(normalize(mask), new LongAdder()) != null) {
+      return false;
+    }
+    this.requestRebuild();
+    return true;
+  }
+
+  public boolean remove(final String mask) {
+    if(this.masks.remove(normalize(mask)) == null) {
+      return false;
+    }
+    this.requestRebuild();
+    return true;
+  }
+
+  private void requestRebuild() {
+    // Coalesce changes made while a rebuild is waiting - it will pick up the latest masks anyway.
+    if(this.rebuildPending.compareAndSet(false, true)) {
+      this.compiler.execute(() -> {
+        this.rebuildPending.set(false);
+        this.matcher = Matcher.compile(this.masks);
+        try {
+          this.write(new ArrayList<>(this.masks.keySet()));
+        } catch(final IOException e) {
+          LOGGER.error("Could not write ignores", e);
+        }
+      });
+    }
+  }
+
+  private void write(final List<String> masks) throws IOException {
+    final Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+    try(final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8); final JsonWriter out = new JsonWriter(writer)) {
+      out.setIndent("  ");
+      out.beginArray();
+      for(final String mask : masks) {
+        out.value(mask);
+      }
+      out.endArray();
+    }
+    Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Tests if a message from IRC is ignored.
+   *
+   * @param nick the sender's nick
+   * @param user the sender's user name
+   * @param host the sender's host
+   * @param account the sender's services account, or {@code null} if they are not logged in or it is not known
+   * @return {@code true} if it is
+   */
+  public boolean ignoredIrc(final String nick, final String user, final String host, @Nullable final String account) {
+    final Matcher matcher = this.matcher;
+    @Nullable Mask mask = matcher.names.get(nick);
+    if(mask == null && account != null) {
+      mask = matcher.accounts.get(account);
+    }
+    if(mask == null) {
+      mask = matcher.nicks.get(nick);
+    }
+    if(mask == null) {
+      mask = matcher.hostmask(nick, user, host);
+    }
+    return this.hit(mask);
+  }
+
+  /**
+   * Tests if a message from Discord is ignored, by its sender alone.
+   *
+   * @param id the sender's id
+   * @return {@code true} if it is
+   * @see #ignoresRoles()
+   */
+  public boolean ignoredDiscord(final String id) {
+    return this.hit(this.matcher.names.get(id));
+  }
+
+  /**
+   * Tests if any role is ignored, so that the platform can skip looking up a sender's roles.
+   *
+   * @return {@code true} if one is
+   */
+  public boolean ignoresRoles() {
+    return this.matcher.roles.size > 0;
+  }
+
+  /**
+   * Tests if a message from Discord is ignored, by one of its sender's roles.
+   *
+   * @param id the role's id
+   * @return {@code true} if it is
+   */
+  public boolean ignoredRole(final String id) {
+    return this.hit(this.matcher.roles.get(id));
+  }
+
+  private boolean hit(@Nullable final Mask mask) {
+    if(mask == null) {
+      return false;
+    }
+    mask.hits.increment();
+    this.hits.increment();
+    return true;
+  }
+
+  // Matches a glob, with '*' for any run of characters and '?' for any one, ignoring case.
+  static boolean glob(final String glob, final String text) {
+    int g = 0;
+    int t = 0;
+    int star = -1;
+    int resume = 0;
+    while(t < text.length()) {
+      if(g < glob.length() && (glob.charAt(g) == '?' || Character.toLowerCase(glob.charAt(g)) == Character.toLowerCase(text.charAt(t)))) {
+        g++;
+        t++;
+      } else if(g < glob.length() && glob.charAt(g) == '*') {
+        star = g++;
+        resume = t;
+      } else if(star != -1) {
+        // let the last star take one more character, and try again from there
+        g = star + 1;
+        t = ++resume;
+      } else {
+        return false;
+      }
+    }
+    while(g < glob.length() && glob.charAt(g) == '*') {
+      g++;
+    }
+    return g == glob.length();
+  }
+
+  private static boolean wild(final char c) {
+    return c == '*' || c == '?';
+  }
+
+  private static final class Mask {
+    final String nick;
+    final String user;
+    final String host;
+    final LongAdder hits;
+
+    Mask(final String nick, final String user, final String host, final LongAdder hits) {
+      this.nick = nick;
+      this.user = user;
+      this.host = host;
+      this.hits = hits;
+    }
+
+    boolean matches(final String nick, final String user, final String host) {
+      return glob(this.host, host) && glob(this.nick, nick) && glob(this.user, user);
+    }
+  }
+
+  private static final class Matcher {
+    final Table names = new Table();
+    // hostmasks naming only a nick, as in nick!*@*
+    final Table nicks = new Table();
+    final Table accounts = new Table();
+    final Table roles = new Table();
+    // hostmasks by the literal their host ends with, reversed, and those without by the literal it starts with
+    final Trie suffixes = new Trie();
+    final Trie prefixes = new Trie();
+    // hostmasks whose host is no help, which are tried against every message
+    final List<Mask> rest = new ArrayList<>();
+
+    static Matcher compile(final Map<String, LongAdder> masks) {
+      final Matcher matcher = new Matcher();
+      for(final Map.Entry<String, LongAdder> entry : masks.entrySet()) {
+        final String text = entry.getKey();
+        if(text.startsWith(ACCOUNT)) {
+          matcher.accounts.put(text.substring(ACCOUNT.length()), new Mask(text, "", "", entry.getValue()));
+          continue;
+        } else if(text.startsWith(ROLE)) {
+          matcher.roles.put(text.substring(ROLE.length()), new Mask(text, "", "", entry.getValue()));
+          continue;
+        }
+        final int bang = text.indexOf('!');
+        if(bang == -1) {
+          matcher.names.put(text, new Mask(text, "", "", entry.getValue()));
+          continue;
+        }
+        final int at = text.indexOf('@', bang);
+        final Mask mask = new Mask(text.substring(0, bang), text.substring(bang + 1, at), text.substring(at + 1), entry.getValue());
+        if(mask.user.equals("*") && mask.host.equals("*") && mask.nick.chars().noneMatch(c -> wild((char) c))) {
+          matcher.nicks.put(mask.nick, mask);
+          continue;
+        }
+        int suffix = mask.host.length();
+        while(suffix > 0 && !wild(mask.host.charAt(suffix - 1))) {
+          suffix--;
+        }
+        int prefix = 0;
+        while(prefix < mask.host.length() && !wild(mask.host.charAt(prefix))) {
+          prefix++;
+        }
+        if(suffix < mask.host.length()) {
+          matcher.suffixes.put(mask.host, suffix, mask.host.length(), true, mask);
+        } else if(prefix > 0) {
+          matcher.prefixes.put(mask.host, 0, prefix, false, mask);
+        } else {
+          matcher.rest.add(mask);
+        }
+      }
+      return matcher;
+    }
+
+    @Nullable
+    Mask hostmask(final String nick, final String user, final String host) {
+      @Nullable Mask mask = this.suffixes.find(host, true, nick, user);
+      if(mask == null) {
+        mask = this.prefixes.find(host, false, nick, user);
+      }
+      for(int i = 0; mask == null && i < this.rest.size(); i++) {
+        if(this.rest.get(i).matches(nick, user, host)) {
+          mask = this.rest.get(i);
+        }
+      }
+      return mask;
+    }
+  }
+
+  // An open-addressed table of masks by a name, looked up ignoring case.
+  private static final class Table {
+    private String[] keys = new String[8];
+    private Mask[] values = new Mask[8];
+    int size;
+
+    void put(final String key, final Mask value) {
+      if((this.size + 1) * 2 > this.keys.length) {
+        final String[] keys = this.keys;
+        final Mask[] values = this.values;
+        this.keys = new String[keys.length * 2];
+        this.values = new Mask[keys.length * 2];
+        this.size = 0;
+        for(int i = 0; i < keys.length; i++) {
+          if(keys[i] != null) {
+            this.put(keys[i], values[i]);
+          }
+        }
+      }
+      final int mask = this.keys.length - 1;
+      for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+        if(this.keys[slot] == null) {
+          this.keys[slot] = key;
+          this.values[slot] = value;
+          this.size++;
+          return;
+        } else if(this.keys[slot].equalsIgnoreCase(key)) {
+          return;
+        }
+      }
+    }
+
+    @Nullable
+    Mask get(final String key) {
+      if(this.size == 0) {
+        return null;
+      }
+      final int mask = this.keys.length - 1;
+      for(int slot = hash(key) & mask; this.keys[slot] != null; slot = (slot + 1) & mask) {
+        if(this.keys[slot].equalsIgnoreCase(key)) {
+          return this.values[slot];
+        }
+      }
+      return null;
+    }
+
+    private static int hash(final String key) {
+      int hash = 0;
+      for(int i = 0; i < key.length(); i++) {
+        hash = 31 * hash + Character.toLowerCase(key.charAt(i));
+      }
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+  // A trie of hostmasks by a literal part of their host, walked ignoring case from one end of a host.
+  private static final class Trie {
+    private static final char[] NO_KEYS = {};
+    private static final Node[] NO_CHILDREN = {};
+    private static final Mask[] NO_MASKS = {};
+    private final Node root = new Node();
+
+    void put(final String host, final int start, final int end, final boolean reversed, final Mask mask) {
+      Node node = this.root;
+      for(int i = 0; i < end - start; i++) {
+        node = node.child(Character.toLowerCase(host.charAt(reversed ? end - 1 - i : start + i)));
+      }
+      node.masks = Arrays.copyOf(node.masks, node.masks.length + 1);
+      node.masks[node.masks.length - 1] = mask;
+    }
+
+    // Tries the hostmasks of every node along the host, as each of their literals is a part of it.
+    @Nullable
+    Mask find(final String host, final boolean reversed, final String nick, final String user) {
+      @Nullable Node node = this.root;
+      for(int i = 0; node != null; i++) {
+        for(final Mask mask : node.masks) {
+          if(mask.matches(nick, user, host)) {
+            return mask;
+          }
+        }
+        node = i == host.length() ? null : node.get(Character.toLowerCase(host.charAt(reversed ? host.length() - 1 - i : i)));
+      }
+      return null;
+    }
+
+    private static final class Node {
+      // sorted, for a binary search
+      char[] keys = NO_KEYS;
+      Node[] children = NO_CHILDREN;
+      Mask[] masks = NO_MASKS;
+
+      @Nullable
+      Node get(final char key) {
+        final int index = Arrays.binarySearch(this.keys, key);
+        return index < 0 ? null : this.children[index];
+      }
+
+      Node child(final char key) {
+        int index = Arrays.binarySearch(this.keys, key);
+        if(index < 0) {
+          index = -index - 1;
+          final char[] keys = new char[this.keys.length + 1];
+          final Node[] children = new Node[this.children.length + 1];
+          System.arraycopy(this.keys, 0, keys, 0, index);
+          System.arraycopy(this.children, 0, children, 0, index);
+          System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+          System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+          keys[index] = key;
+          children[index] = new Node();
+          this.keys = keys;
+          this.children = children;
+        }
+        return this.children[index];
+      }
+    }
+  }
+}
@@ -24,12 +24,204 @@
  */
 package org.spongepowered.felix.command;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.spongepowered.felix.util.ArraySet;
+import org.spongepowered.felix.util.Cron;
+
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
+/**
+ * A command and its values. Commands are immutable - changes are made by replacing them through a {@link Transaction}.
+ *
+ * <p>There are a great many commands, most with one alias and one response, and many responses
+ * repeat each other - so every string is interned, and both collections are backed by exact-size arrays.</p>
+ *
+ * <p>When the responses are tiered, they are kept in a {@link ResponseStore} instead.</p>
+ */
+@JsonAdapter(PhysicalCommand.Adapter.class)
 public final class PhysicalCommand {
-  public Set<String> aliases = new HashSet<>();
-  public List<String> responses = new ArrayList<>();
+  private static final Interner<String> STRINGS = Interners.newWeakInterner();
+  // where responses are kept when they are tiered, set before any command is made
+  @Nullable static volatile ResponseStore store;
+  /**
+   * The {@link Scope} this command is visible in, or {@code null} if it is global.
+   */
+  @Nullable public final String scope;
+  public final Set<String> aliases;
+  public final List<String> responses;
+  /**
+   * When the command announces itself, or {@code null} if it does not.
+   */
+  @Nullable public final Schedule schedule;
+  /**
+   * When the command removes itself, in milliseconds since the epoch, or {@code 0} if it does not.
+   */
+  public final long expires;
+
+  public PhysicalCommand(@Nullable final String scope, final Collection<String> aliases, final Collection<String> responses) {
+    this(scope == null ? null : STRINGS.intern(scope), ArraySet.copyOf(intern(aliases)), responses(responses), null, 0);
+  }
+
+  private PhysicalCommand(@Nullable final String scope, final Set<String> aliases, final List<String> responses, @Nullable final Schedule schedule, final long expires) {
+    this.scope = scope;
+    this.aliases = aliases;
+    this.responses = responses;
+    this.schedule = schedule;
+    this.expires = expires;
+  }
+
+  public PhysicalCommand withScope(@Nullable final String scope) {
+    return new PhysicalCommand(scope == null ? null : STRINGS.intern(scope), this.aliases, this.responses, this.schedule, this.expires);
+  }
+
+  public PhysicalCommand withAliases(final Collection<String> aliases) {
+    return new PhysicalCommand(this.scope, ArraySet.copyOf(intern(aliases)), this.responses, this.schedule, this.expires);
+  }
+
+  public PhysicalCommand withResponses(final Collection<String> responses) {
+    return new PhysicalCommand(this.scope, this.aliases, responses(responses), this.schedule, this.expires);
+  }
+
+  public PhysicalCommand withSchedule(@Nullable final Schedule schedule) {
+    return new PhysicalCommand(this.scope, this.aliases, this.responses, schedule, this.expires);
+  }
+
+  public PhysicalCommand withExpiry(final long expires) {
+    return new PhysicalCommand(this.scope, this.aliases, this.responses, this.schedule, expires);
+  }
+
+  private static List<String> responses(final Collection<String> responses) {
+    @Nullable final ResponseStore store = PhysicalCommand.store;
+    return store == null ? intern(responses) : store.tier(responses);
+  }
+
+  private static List<String> intern(final Collection<String> strings) {
+    final String[] interned = new String[strings.size()];
+    int i = 0;
+    for(final String string : strings) {
+      interned[i++] = STRINGS.intern(string);
+    }
+    return ImmutableList.copyOf(interned);
+  }
+
+  static final class Adapter extends TypeAdapter<PhysicalCommand> {
+    @Override
+    public void write(final JsonWriter out, final PhysicalCommand command) throws IOException {
+      out.beginObject();
+      if(command.scope != null) {
+        out.name("scope").value(command.scope);
+      }
+      out.name("aliases");
+      writeStrings(out, command.aliases);
+      out.name("responses");
+      writeStrings(out, ResponseStore.uncached(command.responses));
+      if(command.schedule != null) {
+        out.name("schedule").beginObject()
+          .name("channel").value(command.schedule.channel)
+          .name("cron").value(command.schedule.cron.spec)
+          .endObject();
+      }
+      if(command.expires != 0) {
+        out.name("expires").value(command.expires);
+      }
+      out.endObject();
+    }
+
+    @Override
+    public PhysicalCommand read(final JsonReader in) throws IOException {
+      @Nullable String scope = null;
+      List<String> aliases = ImmutableList.of();
+      List<String> responses = ImmutableList.of();
+      @Nullable Schedule schedule = null;
+      long expires = 0;
+      in.beginObject();
+      while(in.hasNext()) {
+        switch(in.nextName()) {
+          case "scope":
+            if(in.peek() == JsonToken.NULL) {
+              in.nextNull();
+            } else {
+              scope = in.nextString();
+            }
+            break;
+          case "aliases":
+            aliases = readStrings(in);
+            break;
+          case "responses":
+            responses = readStrings(in);
+            break;
+          case "schedule":
+            schedule = readSchedule(in);
+            break;
+          case "expires":
+            expires = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return new PhysicalCommand(scope == null ? null : STRINGS.intern(scope), ArraySet.copyOf(intern(aliases)), responses(responses), schedule, expires);
+    }
+
+    private static Schedule readSchedule(final JsonReader in) throws IOException {
+      @Nullable String channel = null;
+      @Nullable String cron = null;
+      in.beginObject();
+      while(in.hasNext()) {
+        switch(in.nextName()) {
+          case "channel":
+            channel = in.nextString();
+            break;
+          case "cron":
+            cron = in.nextString();
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      if(channel == null || cron == null) {
+        throw new IOException("A schedule needs a channel and a cron expression");
+      }
+      try {
+        return new Schedule(STRINGS.intern(channel), Cron.parse(cron));
+      } catch(final IllegalArgumentException e) {
+        throw new IOException("Invalid schedule '" + cron + "': " + e.getMessage(), e);
+      }
+    }
+
+    private static void writeStrings(final JsonWriter out, final Collection<String> strings) throws IOException {
+      out.beginArray();
+      for(final String string : strings) {
+        out.value(string);
+      }
+      out.endArray();
+    }
+
+    private static List<String> readStrings(final JsonReader in) throws IOException {
+      final List<String> strings = new ArrayList<>();
+      in.beginArray();
+      while(in.hasNext()) {
+        strings.add(in.nextString());
+      }
+      in.endArray();
+      return strings;
+    }
+  }
 }
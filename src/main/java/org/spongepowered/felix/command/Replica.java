@@ -0,0 +1,250 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps a hot standby's command set in step with the primary's {@link Replicator}, and takes over once the primary
+ * has not been heard from for {@code timeout} milliseconds.
+ *
+ * <p>While following, the {@link CommandConfiguration} is marked as such: platforms may connect, but answer nothing,
+ * and timers are left to the primary. Replicated versions are written to {@code commands.json} as usual, so a
+ * restarted standby starts out warm. One that only lost its connection is sent just the versions it missed.</p>
+ */
+public final class Replica {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final long DEFAULT_TIMEOUT = 5000;
+  private static final long RETRY_INTERVAL = 250;
+  private final CommandConfiguration cc;
+  private final ConfigurationNode config;
+  private final InetSocketAddress primary;
+  private final int timeout;
+  // the epoch of the primary the current version came from, or 0 if none
+  private long epoch;
+  private volatile long heard = System.currentTimeMillis();
+
+  public Replica(final CommandConfiguration cc, final ConfigurationNode config) {
+    this.cc = cc;
+    this.config = config;
+    this.primary = new InetSocketAddress(config.getNode("host").getString("127.0.0.1"), config.getNode("port").getInt(Replicator.DEFAULT_PORT));
+    this.timeout = (int) config.getNode("timeout").getLong(DEFAULT_TIMEOUT);
+    cc.follow(true);
+  }
+
+  /**
+   * Starts following the primary.
+   *
+   * @param takeover run once this instance has taken over from the primary
+   */
+  public void start(final Runnable takeover) {
+    final Thread thread = new Thread(() -> this.run(takeover), "Felix standby");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void run(final Runnable takeover) {
+    LOGGER.info("Standing by for the primary at {}", this.primary);
+    while(true) {
+      if(!this.standBy()) {
+        return;
+      }
+      try {
+        // Standbys of this instance continue from the versions replicated to it.
+        new Replicator(this.cc, this.config, this.epoch);
+        break;
+      } catch(final IOException e) {
+        if(!isLocal(this.primary)) {
+          // The primary is on another host, so the port says nothing about it.
+          LOGGER.error("Could not serve standbys", e);
+          break;
+        }
+        // The port is still held, most likely by a primary which is alive but stalled: taking over would make two.
+        LOGGER.warn("The primary has not been heard from for {}ms, but still holds its port, so standing by: {}", this.timeout, e.toString());
+        this.heard = System.currentTimeMillis();
+      }
+    }
+
+    LOGGER.warn("The primary has not been heard from for {}ms: taking over at version {}", this.timeout, this.cc.snapshot().version);
+    this.cc.follow(false);
+    takeover.run();
+  }
+
+  // Follows the primary until it has not been heard from for the timeout, returning false if interrupted.
+  private boolean standBy() {
+    boolean connected = false;
+    while(true) {
+      try(final Socket socket = new Socket()) {
+        socket.connect(this.primary, this.timeout);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(this.timeout);
+        connected = true;
+        this.follow(socket);
+      } catch(final IOException e) {
+        if(connected) {
+          LOGGER.warn("Lost the primary at {}: {}", this.primary, e.toString());
+          connected = false;
+        }
+      } catch(final RuntimeException e) {
+        // Keep standing by: the primary may still fail, and this instance must still take over.
+        LOGGER.error("Could not follow the primary at {}", this.primary, e);
+        connected = false;
+      }
+
+      if(System.currentTimeMillis() - this.heard >= this.timeout) {
+        return true;
+      }
+      try {
+        Thread.sleep(RETRY_INTERVAL);
+      } catch(final InterruptedException e) {
+        return false;
+      }
+    }
+  }
+
+  private void follow(final Socket socket) throws IOException {
+    final JsonWriter out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+    out.beginObject().name("epoch").value(this.epoch).name("version").value(this.cc.snapshot().version).endObject();
+    out.flush();
+
+    final JsonReader in = new JsonReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    in.setLenient(true);
+    final PhysicalCommand.Adapter adapter = new PhysicalCommand.Adapter();
+    while(true) {
+      long epoch = 0;
+      long version = 0;
+      long time = 0;
+      @Nullable String description = null;
+      boolean reset = false;
+      final List<PhysicalCommand> commands = new ArrayList<>();
+      @Nullable List<Replicator.Change> changes = null;
+
+      if(in.peek() == JsonToken.END_DOCUMENT) {
+        throw new EOFException("The primary closed the connection");
+      }
+      in.beginObject();
+      while(in.hasNext()) {
+        switch(in.nextName()) {
+          case "epoch":
+            epoch = in.nextLong();
+            break;
+          case "version":
+            version = in.nextLong();
+            break;
+          case "time":
+            time = in.nextLong();
+            break;
+          case "description":
+            description = nextNullableString(in);
+            break;
+          case "reset":
+            reset = in.nextBoolean();
+            break;
+          case "commands":
+            in.beginArray();
+            while(in.hasNext()) {
+              commands.add(adapter.read(in));
+            }
+            in.endArray();
+            break;
+          case "changes":
+            changes = new ArrayList<>();
+            in.beginArray();
+            while(in.hasNext()) {
+              in.beginArray();
+              @Nullable final String scope = nextNullableString(in);
+              final String alias = in.nextString();
+              final int index = in.nextInt();
+              in.endArray();
+              changes.add(new Replicator.Change(scope, alias, index == -1 ? null : commands.get(index)));
+            }
+            in.endArray();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      this.heard = System.currentTimeMillis();
+
+      if(changes != null) {
+        final List<Replicator.Change> batch = changes;
+        final boolean replace = reset;
+        this.cc.replicate(version, time, description, transaction -> {
+          if(replace) {
+            transaction.reset(CommandSnapshot.EMPTY);
+          }
+          for(final Replicator.Change change : batch) {
+            transaction.set(change.scope, change.alias, change.command);
+          }
+        });
+        this.epoch = epoch;
+        if(reset) {
+          LOGGER.info("Caught up with the primary at version {}, with {} commands", version, commands.size());
+        }
+      }
+    }
+  }
+
+  private static boolean isLocal(final InetSocketAddress address) {
+    if(address.getAddress() == null) {
+      return false;
+    }
+    try {
+      return address.getAddress().isAnyLocalAddress() || address.getAddress().isLoopbackAddress() || NetworkInterface.getByInetAddress(address.getAddress()) != null;
+    } catch(final SocketException e) {
+      return false;
+    }
+  }
+
+  @Nullable
+  private static String nextNullableString(final JsonReader in) throws IOException {
+    if(in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nullable;
+
+/**
+ * Streams the command set to hot standbys, each of which follows it with a {@link Replica}.
+ *
+ * <p>A standby is first sent the difference between the version it already has and the current one, or the whole
+ * command set if its version is no longer retained. After that, it is sent the difference between the last version it
+ * was sent and the current one whenever they differ, so versions published while a batch is being sent are coalesced
+ * into the next. A heartbeat is sent whenever nothing else has been for {@code heartbeat} milliseconds.</p>
+ *
+ * <p>Each batch is a JSON object carrying the version, the commands it maps and the aliases it changes, in order.</p>
+ */
+public final class Replicator {
+  private static final Logger LOGGER = LogManager.getLogger();
+  static final int DEFAULT_PORT = 7780;
+  static final long DEFAULT_HEARTBEAT = 1000;
+  private static final int HELLO_TIMEOUT = 10000;
+  private final CommandConfiguration cc;
+  // identifies the lineage of the versions, which restart from 1 with every new primary
+  private final long epoch;
+  private final long heartbeat;
+  private final ServerSocket server;
+  private final Object published = new Object();
+
+  public Replicator(final CommandConfiguration cc, final ConfigurationNode config) throws IOException {
+    this(cc, config, newEpoch());
+  }
+
+  Replicator(final CommandConfiguration cc, final ConfigurationNode config, final long epoch) throws IOException {
+    this.cc = cc;
+    this.epoch = epoch;
+    this.heartbeat = config.getNode("heartbeat").getLong(DEFAULT_HEARTBEAT);
+    this.server = new ServerSocket(config.getNode("port").getInt(DEFAULT_PORT), 4, InetAddress.getByName(config.getNode("host").getString("127.0.0.1")));
+    cc.addListener(snapshot -> {
+      synchronized(this.published) {
+        this.published.notifyAll();
+      }
+    });
+    final Thread thread = new Thread(this::accept, "Felix replication");
+    thread.setDaemon(true);
+    thread.start();
+    LOGGER.info("Serving standbys on {}", this.server.getLocalSocketAddress());
+  }
+
+  private static long newEpoch() {
+    long epoch;
+    do {
+      epoch = ThreadLocalRandom.current().nextLong();
+    } while(epoch == 0);
+    return epoch;
+  }
+
+  private void accept() {
+    while(!this.server.isClosed()) {
+      try {
+        final Socket socket = this.server.accept();
+        final Thread thread = new Thread(() -> this.serve(socket), "Felix replication to " + socket.getRemoteSocketAddress());
+        thread.setDaemon(true);
+        thread.start();
+      } catch(final IOException e) {
+        LOGGER.error("Could not accept a standby", e);
+      }
+    }
+  }
+
+  private void serve(final Socket socket) {
+    final SocketAddress address = socket.getRemoteSocketAddress();
+    try(
+      final Socket closing = socket;
+      final JsonReader in = new JsonReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      final JsonWriter out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))
+    ) {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(HELLO_TIMEOUT);
+      out.setLenient(true);
+
+      long epoch = 0;
+      long version = 0;
+      in.beginObject();
+      while(in.hasNext()) {
+        switch(in.nextName()) {
+          case "epoch":
+            epoch = in.nextLong();
+            break;
+          case "version":
+            version = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      @Nullable CommandSnapshot sent = epoch == this.epoch ? this.cc.version(version) : null;
+      boolean reset = sent == null;
+      if(reset) {
+        LOGGER.info("Standby {} connected at version {}, which is not retained: sending every command", address, version);
+        sent = CommandSnapshot.EMPTY;
+      } else {
+        LOGGER.info("Standby {} connected at version {}", address, version);
+      }
+
+      while(true) {
+        final CommandSnapshot current = this.cc.snapshot();
+        if(current != sent || reset) {
+          this.writeBatch(out, sent, current, reset);
+          sent = current;
+          reset = false;
+        } else {
+          out.beginObject().name("epoch").value(this.epoch).name("version").value(current.version).endObject();
+        }
+        out.flush();
+        synchronized(this.published) {
+          if(this.cc.snapshot() == sent) {
+            this.published.wait(this.heartbeat);
+          }
+        }
+      }
+    } catch(final IOException e) {
+      LOGGER.warn("Lost standby {}: {}", address, e.toString());
+    } catch(final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeBatch(final JsonWriter out, final CommandSnapshot from, final CommandSnapshot to, final boolean reset) throws IOException {
+    // Each command is written once, however many of its aliases changed, and referred to by index.
+    final Map<PhysicalCommand, Integer> commands = new IdentityHashMap<>();
+    final List<Change> changes = new ArrayList<>();
+    CommandSnapshot.diff(from, to, (scope, alias, previous, command) -> {
+      if(command != null) {
+        commands.putIfAbsent(command, commands.size());
+      }
+      changes.add(new Change(scope, alias, command));
+    });
+
+    final PhysicalCommand[] ordered = new PhysicalCommand[commands.size()];
+    commands.forEach((command, index) -> ordered[index] = command);
+    final PhysicalCommand.Adapter adapter = new PhysicalCommand.Adapter();
+    out.beginObject();
+    out.name("epoch").value(this.epoch);
+    out.name("version").value(to.version);
+    out.name("time").value(to.time);
+    out.name("description").value(to.description);
+    out.name("reset").value(reset);
+    out.name("commands").beginArray();
+    for(final PhysicalCommand command : ordered) {
+      adapter.write(out, command);
+    }
+    out.endArray();
+    out.name("changes").beginArray();
+    for(final Change change : changes) {
+      out.beginArray().value(change.scope).value(change.alias).value(change.command == null ? -1 : commands.get(change.command)).endArray();
+    }
+    out.endArray();
+    out.endObject();
+  }
+
+  static final class Change {
+    @Nullable final String scope;
+    final String alias;
+    @Nullable final PhysicalCommand command;
+
+    Change(@Nullable final String scope, final String alias, @Nullable final PhysicalCommand command) {
+      this.scope = scope;
+      this.alias = alias;
+      this.command = command;
+    }
+  }
+}
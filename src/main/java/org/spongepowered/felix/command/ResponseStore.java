@@ -0,0 +1,253 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the responses of commands on disk, and the most recently used of them on the heap.
+ *
+ * <p>Each list of responses is appended to the store once, as one record, and the command holds a small
+ * {@link Cold} list naming where the record is. Reading a response that is not cached costs one positioned read of
+ * the record. The store is rebuilt from {@code commands.json} on every start, so records replaced in the meantime
+ * are only reclaimed then.</p>
+ *
+ * <p>A record is dead once nothing refers to its list any more, neither the commands nor the versions kept for
+ * history. The store notices through a weak reference to each list, and reports how much of it is dead.</p>
+ */
+public final class ResponseStore {
+  // a rough per-entry and per-string overhead, so that the cache is bounded by heap rather than by characters
+  private static final int ENTRY_OVERHEAD = 64;
+  private static final int STRING_OVERHEAD = 40;
+  private final FileChannel channel;
+  private final Cache<Long, List<String>> cache;
+  // a weak reference to each list, strongly held here until it is enqueued
+  private final Set<Record> records = ConcurrentHashMap.newKeySet();
+  private final ReferenceQueue<Cold> released = new ReferenceQueue<>();
+  private long end;
+  private long live;
+
+  ResponseStore(final Path path, final long maximumWeight) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maximumWeight)
+      .weigher((Long offset, List<String> responses) -> weigh(responses))
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Appends a list of responses to the store.
+   *
+   * @param responses the responses
+   * @return a list reading the responses back from the store
+   */
+  List<String> tier(final Collection<String> responses) {
+    if(responses.isEmpty()) {
+      return ImmutableList.of();
+    }
+    int length = 0;
+    final byte[][] encoded = new byte[responses.size()][];
+    int i = 0;
+    for(final String response : responses) {
+      encoded[i] = response.getBytes(StandardCharsets.UTF_8);
+      length += Integer.BYTES + encoded[i++].length;
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(length);
+    for(final byte[] bytes : encoded) {
+      buffer.putInt(bytes.length).put(bytes);
+    }
+    buffer.flip();
+
+    final long offset;
+    synchronized(this) {
+      offset = this.end;
+      this.end += length;
+      this.live += length;
+    }
+    try {
+      while(buffer.hasRemaining()) {
+        this.channel.write(buffer, offset + buffer.position());
+      }
+    } catch(final IOException e) {
+      throw new UncheckedIOException("Could not store responses", e);
+    }
+    final Cold cold = new Cold(this, offset, length, encoded.length);
+    this.records.add(new Record(cold, length, this.released));
+    this.release();
+    return cold;
+  }
+
+  // Counts the records whose lists have been collected as dead.
+  private void release() {
+    for(Record record = (Record) this.released.poll(); record != null; record = (Record) this.released.poll()) {
+      this.records.remove(record);
+      synchronized(this) {
+        this.live -= record.length;
+      }
+    }
+  }
+
+  /**
+   * Gets the responses of a list without caching them, for reading every command without evicting the ones in use.
+   *
+   * @param responses the responses
+   * @return the responses, read from the store if they are stored and not cached
+   */
+  static List<String> uncached(final List<String> responses) {
+    if(responses instanceof Cold) {
+      final Cold cold = (Cold) responses;
+      final List<String> cached = cold.store.cache.asMap().get(cold.offset);
+      return cached != null ? cached : cold.store.read(cold);
+    }
+    return responses;
+  }
+
+  private List<String> load(final Cold cold) {
+    List<String> responses = this.cache.getIfPresent(cold.offset);
+    if(responses == null) {
+      responses = this.read(cold);
+      this.cache.put(cold.offset, responses);
+    }
+    return responses;
+  }
+
+  private List<String> read(final Cold cold) {
+    final ByteBuffer buffer = ByteBuffer.allocate(cold.length);
+    try {
+      while(buffer.hasRemaining()) {
+        if(this.channel.read(buffer, cold.offset + buffer.position()) < 0) {
+          throw new EOFException("Responses at " + cold.offset + " are truncated");
+        }
+      }
+    } catch(final IOException e) {
+      throw new UncheckedIOException("Could not read responses", e);
+    }
+    buffer.flip();
+    final String[] responses = new String[cold.size];
+    for(int i = 0; i < responses.length; i++) {
+      final int length = buffer.getInt();
+      responses[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+    }
+    return ImmutableList.copyOf(responses);
+  }
+
+  private static int weigh(final List<String> responses) {
+    int weight = ENTRY_OVERHEAD;
+    for(final String response : responses) {
+      weight += STRING_OVERHEAD + 2 * response.length();
+    }
+    return weight;
+  }
+
+  /**
+   * Gets a summary of the store and its cache, for the health report.
+   *
+   * @return the summary
+   */
+  public String summary() {
+    this.release();
+    final CacheStats stats = this.cache.stats();
+    final long end;
+    final long live;
+    synchronized(this) {
+      end = this.end;
+      live = this.live;
+    }
+    return String.format(
+      "Responses: %d KiB stored, %d KiB of it dead until restart, %d lists cached, %.1f%% hit rate (%d hits, %d misses), %d evictions",
+      end / 1024,
+      (end - live) / 1024,
+      this.cache.size(),
+      stats.hitRate() * 100,
+      stats.hitCount(),
+      stats.missCount(),
+      stats.evictionCount()
+    );
+  }
+
+  private static final class Record extends WeakReference<Cold> {
+    final int length;
+
+    Record(final Cold cold, final int length, final ReferenceQueue<Cold> queue) {
+      super(cold, queue);
+      this.length = length;
+    }
+  }
+
+  /**
+   * A list of responses held in the store.
+   */
+  private static final class Cold extends AbstractList<String> implements RandomAccess {
+    final ResponseStore store;
+    final long offset;
+    final int length;
+    final int size;
+
+    Cold(final ResponseStore store, final long offset, final int length, final int size) {
+      this.store = store;
+      this.offset = offset;
+      this.length = length;
+      this.size = size;
+    }
+
+    @Override
+    public String get(final int index) {
+      return this.store.load(this).get(index);
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return this.store.load(this).iterator();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.jfr.ManagementCommandEvent;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Routes management commands to their handlers.
+ *
+ * <p>Routes are registered once, at startup, with their handler as a method reference, so dispatching is a map
+ * lookup and a direct call over the tokens the platform already split the message into.</p>
+ */
+public final class Router {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private final String prefix;
+  private final Map<String, Route> routes = new HashMap<>();
+
+  public Router(final String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * Registers a command.
+   *
+   * @param aliases the names of the command
+   * @param usage the usage, without the name
+   * @param valueFlags the flags which take a value
+   * @param booleanFlags the flags which do not
+   * @param handler the handler
+   * @return this router
+   */
+  public Router register(final String[] aliases, final String usage, final String valueFlags, final String booleanFlags, final Handler handler) {
+    final Route route = new Route(usage, valueFlags, booleanFlags, handler);
+    for(final String alias : aliases) {
+      this.routes.put(alias.toLowerCase(Locale.ENGLISH), route);
+    }
+    return this;
+  }
+
+  public boolean contains(final String alias) {
+    return this.routes.containsKey(alias.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Runs a command, if one is registered under the first token.
+   *
+   * @param actor who ran the command
+   * @param input the message, without the prefix
+   * @param tokens the message split by {@link CommandUtil#split(String)}
+   * @return {@code true} if a command was found
+   */
+  public boolean dispatch(final Actor actor, final String input, final String[] tokens) {
+    final String alias = tokens[0].toLowerCase(Locale.ENGLISH);
+    @Nullable final Route route = this.routes.get(alias);
+    if(route == null) {
+      return false;
+    }
+
+    final ManagementCommandEvent event = new ManagementCommandEvent();
+    event.begin();
+    try {
+      final Arguments args = Arguments.parse(input, tokens, route.valueFlags);
+      final char unknown = args.unknownFlag(route.flags);
+      if(unknown != 0) {
+        throw new UsageException("Unknown flag '" + unknown + "'.");
+      }
+      route.handler.execute(actor, args);
+      LOGGER.info("Processed command '{}' from user '{}'", input, actor.name());
+    } catch(final UsageException e) {
+      actor.reply("error: " + e.getMessage());
+      actor.reply("Usage: " + CommandUtil.prefix(this.prefix, alias) + ' ' + route.usage);
+    } catch(final RuntimeException e) {
+      LOGGER.warn("Failed to execute a command", e);
+      actor.reply("An unexpected error occurred while executing the command.");
+    }
+    if(event.shouldCommit()) {
+      event.commit(actor.here(), alias, actor.name());
+    }
+    return true;
+  }
+
+  @FunctionalInterface
+  public interface Handler {
+    void execute(Actor actor, Arguments args);
+  }
+
+  private static final class Route {
+    final String usage;
+    final String valueFlags;
+    // every known flag, with a value or without
+    final String flags;
+    final Handler handler;
+
+    Route(final String usage, final String valueFlags, final String booleanFlags, final Handler handler) {
+      this.usage = usage;
+      this.valueFlags = valueFlags;
+      this.flags = valueFlags + booleanFlags;
+      this.handler = handler;
+    }
+  }
+}
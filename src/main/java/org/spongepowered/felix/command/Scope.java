@@ -0,0 +1,119 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keys for the command overlays that sit on top of the global command set.
+ */
+public final class Scope {
+  private static final String IRC = "irc:";
+  private static final String DISCORD_CHANNEL = "discord:";
+  private static final String DISCORD_GUILD = "guild:";
+
+  public static String irc(final String channel) {
+    return IRC + channel.toLowerCase(Locale.ENGLISH);
+  }
+
+  public static String discordChannel(final String id) {
+    return DISCORD_CHANNEL + id;
+  }
+
+  public static String discordGuild(final String id) {
+    return DISCORD_GUILD + id;
+  }
+
+  /**
+   * Gets the platform a scope key belongs to.
+   *
+   * @param scope the scope key
+   * @return the platform, {@code irc} or {@code discord}
+   */
+  public static String platform(final String scope) {
+    return scope.startsWith(IRC) ? "irc" : "discord";
+  }
+
+  /**
+   * Gets the IRC channel a scope key names.
+   *
+   * @param scope the scope key
+   * @return the channel, or {@code null} if the scope is not an IRC channel
+   */
+  @Nullable
+  public static String ircChannel(final String scope) {
+    return scope.startsWith(IRC) ? scope.substring(IRC.length()) : null;
+  }
+
+  /**
+   * Gets the id of the Discord channel a scope key names.
+   *
+   * @param scope the scope key
+   * @return the channel id, or {@code null} if the scope is not a Discord channel
+   */
+  @Nullable
+  public static String discordChannelId(final String scope) {
+    return scope.startsWith(DISCORD_CHANNEL) ? scope.substring(DISCORD_CHANNEL.length()) : null;
+  }
+
+  /**
+   * Parses a user-supplied scope.
+   *
+   * @param scope the scope, as given by the user
+   * @param here the scope key of where the scope was given, or {@code null} if there is none
+   * @return the scope key, or {@code null} for the global scope
+   * @throws IllegalArgumentException if the scope is not recognised
+   */
+  @Nullable
+  public static String parse(@Nullable final String scope, @Nullable final String here) {
+    if(scope == null || scope.equalsIgnoreCase("global")) {
+      return null;
+    } else if(scope.equalsIgnoreCase("here") || scope.equalsIgnoreCase("channel")) {
+      if(here == null) {
+        throw new IllegalArgumentException(scope);
+      }
+      return here;
+    } else if(scope.charAt(0) == '#') {
+      return irc(scope);
+    } else if(isId(scope, DISCORD_CHANNEL) || isId(scope, DISCORD_GUILD)) {
+      return scope.toLowerCase(Locale.ENGLISH);
+    }
+    throw new IllegalArgumentException(scope);
+  }
+
+  private static boolean isId(final String scope, final String type) {
+    if(scope.length() <= type.length() || !scope.regionMatches(true, 0, type, 0, type.length())) {
+      return false;
+    }
+    for(int i = type.length(); i < scope.length(); i++) {
+      if(!Character.isDigit(scope.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
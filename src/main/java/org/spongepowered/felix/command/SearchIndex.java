@@ -0,0 +1,185 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inverted index over the aliases and responses of every {@link PhysicalCommand}.
+ *
+ * <p>The index is maintained incrementally from the commands each {@link Transaction} adds and removes,
+ * so a query only ever touches the postings of its own terms.</p>
+ */
+public final class SearchIndex {
+  private static final int ALIAS_WEIGHT = 3;
+  private static final int MIN_TOKEN_LENGTH = 2;
+  private static final Comparator<Result> ORDER = Comparator.<Result>comparingDouble(result -> result.score).reversed().thenComparing(result -> result.name);
+  // token -> (command -> weight)
+  private final Map<String, Map<PhysicalCommand, Integer>> postings = new ConcurrentHashMap<>();
+  // command -> (token -> weight), kept so that a command can be unindexed without tokenizing it again
+  private final Map<PhysicalCommand, Map<String, Integer>> documents = new ConcurrentHashMap<>();
+
+  void add(final PhysicalCommand command) {
+    this.remove(command);
+
+    final Map<String, Integer> weights = new HashMap<>();
+    for(final String alias : command.aliases) {
+      tokenize(alias, ALIAS_WEIGHT, weights);
+    }
+    for(final String response : ResponseStore.uncached(command.responses)) {
+      tokenize(response, 1, weights);
+    }
+
+    this.documents.put(command, weights);
+    for(final Map.Entry<String, Integer> entry : weights.entrySet()) {
+      this.postings.computeIfAbsent(entry.getKey(), key -> new ConcurrentHashMap<>()).put(command, entry.getValue());
+    }
+  }
+
+  void remove(final PhysicalCommand command) {
+    final Map<String, Integer> weights = this.documents.remove(command);
+    if(weights == null) {
+      return;
+    }
+
+    for(final String token : weights.keySet()) {
+      this.postings.computeIfPresent(token, (key, commands) -> {
+        commands.remove(command);
+        return commands.isEmpty() ? null : commands;
+      });
+    }
+  }
+
+  /**
+   * Finds the commands matching every term of a query, ranked by relevance.
+   *
+   * @param query the query
+   * @param page the page, starting at 0
+   * @param pageSize the number of results per page
+   * @return the results
+   */
+  public Results search(final String query, final int page, final int pageSize) {
+    final Map<String, Integer> terms = new HashMap<>();
+    tokenize(query, 1, terms);
+    if(terms.isEmpty()) {
+      return Results.EMPTY;
+    }
+
+    // Walk the rarest term's postings, and probe the others.
+    final List<Map<PhysicalCommand, Integer>> matches = new ArrayList<>(terms.size());
+    for(final String term : terms.keySet()) {
+      final Map<PhysicalCommand, Integer> commands = this.postings.get(term);
+      if(commands == null) {
+        return Results.EMPTY;
+      }
+      matches.add(commands);
+    }
+    matches.sort(Comparator.comparingInt(Map::size));
+
+    final int documents = Math.max(1, this.documents.size());
+    final double[] idf = new double[matches.size()];
+    for(int i = 0; i < idf.length; i++) {
+      idf[i] = Math.log(1 + (double) documents / matches.get(i).size());
+    }
+
+    // The page comes from the user, so never keep more than there are candidates.
+    final int limit = (int) Math.min((page + 1L) * pageSize, matches.get(0).size());
+    final PriorityQueue<Result> top = new PriorityQueue<>(limit + 1, ORDER.reversed());
+    int total = 0;
+    candidates:
+    for(final Map.Entry<PhysicalCommand, Integer> candidate : matches.get(0).entrySet()) {
+      double score = candidate.getValue() * idf[0];
+      for(int i = 1; i < idf.length; i++) {
+        final Integer weight = matches.get(i).get(candidate.getKey());
+        if(weight == null) {
+          continue candidates;
+        }
+        score += weight * idf[i];
+      }
+
+      total++;
+      if(top.size() == limit && score < top.peek().score) {
+        continue;
+      }
+      top.add(new Result(candidate.getKey(), score));
+      if(top.size() > limit) {
+        top.poll();
+      }
+    }
+
+    final List<Result> results = new ArrayList<>(top);
+    results.sort(ORDER);
+    final int from = (int) Math.min((long) page * pageSize, results.size());
+    return new Results(Collections.unmodifiableList(results.subList(from, results.size())), total);
+  }
+
+  private static void tokenize(final String string, final int weight, final Map<String, Integer> weights) {
+    final String lower = string.toLowerCase(Locale.ENGLISH);
+    int start = -1;
+    for(int i = 0; i <= lower.length(); i++) {
+      if(i < lower.length() && Character.isLetterOrDigit(lower.charAt(i))) {
+        if(start == -1) {
+          start = i;
+        }
+      } else if(start != -1) {
+        if(i - start >= MIN_TOKEN_LENGTH) {
+          weights.merge(lower.substring(start, i), weight, Integer::sum);
+        }
+        start = -1;
+      }
+    }
+  }
+
+  public static final class Results {
+    static final Results EMPTY = new Results(Collections.emptyList(), 0);
+    public final List<Result> results;
+    public final int total;
+
+    Results(final List<Result> results, final int total) {
+      this.results = results;
+      this.total = total;
+    }
+  }
+
+  public static final class Result {
+    public final PhysicalCommand command;
+    public final String name;
+    final double score;
+
+    Result(final PhysicalCommand command, final double score) {
+      this.command = command;
+      this.name = command.aliases.isEmpty() ? "" : Collections.min(command.aliases);
+      this.score = score;
+    }
+  }
+}
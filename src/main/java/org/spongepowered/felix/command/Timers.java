@@ -0,0 +1,157 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.util.TimerWheel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Expires commands with a time to live, and announces commands with a {@link Schedule}.
+ *
+ * <p>Like the {@link SearchIndex}, timers are maintained from the commands each {@link Transaction} adds and removes,
+ * so they always match the current version of the command set, and are restored with it on startup.</p>
+ */
+public final class Timers {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final int WHEEL_BUCKETS = 512;
+  private final CommandConfiguration cc;
+  private final TimerWheel wheel = new TimerWheel("Felix timers", 1, TimeUnit.SECONDS, WHEEL_BUCKETS);
+  private final Map<PhysicalCommand, TimerWheel.Timeout> expiries = new ConcurrentHashMap<>();
+  private final Map<PhysicalCommand, TimerWheel.Timeout> announcements = new ConcurrentHashMap<>();
+  private final List<Announcer> announcers = new CopyOnWriteArrayList<>();
+
+  Timers(final CommandConfiguration cc) {
+    this.cc = cc;
+  }
+
+  /**
+   * Adds a platform which can announce commands.
+   *
+   * @param announcer the announcer
+   */
+  public void addAnnouncer(final Announcer announcer) {
+    this.announcers.add(announcer);
+  }
+
+  /**
+   * Gets the number of pending expiries and announcements.
+   *
+   * @return the number of timers
+   */
+  public int pending() {
+    return this.wheel.pending();
+  }
+
+  void add(final PhysicalCommand command) {
+    this.remove(command);
+
+    if(command.expires != 0) {
+      this.expiries.put(command, this.wheel.schedule(() -> this.expire(command), command.expires - System.currentTimeMillis(), TimeUnit.MILLISECONDS));
+    }
+    if(command.schedule != null) {
+      this.announcements.put(command, this.announceAt(command, command.schedule.cron.next(System.currentTimeMillis())));
+    }
+  }
+
+  void remove(final PhysicalCommand command) {
+    cancel(this.expiries.remove(command));
+    cancel(this.announcements.remove(command));
+  }
+
+  private static void cancel(@Nullable final TimerWheel.Timeout timeout) {
+    if(timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  private void expire(final PhysicalCommand command) {
+    if(this.cc.following()) {
+      // The primary expires the command, and the removal is replicated - unless this instance takes over first.
+      this.expiries.computeIfPresent(command, (key, timeout) -> this.wheel.schedule(() -> this.expire(command), 1, TimeUnit.SECONDS));
+      return;
+    }
+    this.expiries.remove(command);
+    this.cc.transaction("expired " + name(command) + (command.scope == null ? "" : " (" + command.scope + ')'), transaction -> {
+      // The command may have lost some of its aliases since - only remove it if it is still reachable.
+      for(final String alias : command.aliases) {
+        if(transaction.get(command.scope, alias.toLowerCase(Locale.ENGLISH)) == command) {
+          transaction.remove(command);
+          break;
+        }
+      }
+      return null;
+    });
+  }
+
+  private TimerWheel.Timeout announceAt(final PhysicalCommand command, final long time) {
+    return this.wheel.schedule(() -> this.announce(command, time), time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void announce(final PhysicalCommand command, final long time) {
+    final Schedule schedule = command.schedule;
+    // Schedule the next announcement first - unless the command has been removed in the meantime.
+    if(this.announcements.computeIfPresent(command, (key, timeout) -> this.announceAt(command, schedule.cron.next(time))) == null) {
+      return;
+    }
+    if(this.cc.following()) {
+      return;
+    }
+
+    for(final Announcer announcer : this.announcers) {
+      if(announcer.announce(schedule.channel, name(command), command)) {
+        return;
+      }
+    }
+    LOGGER.warn("Could not announce {} in {}: no platform serves that channel", name(command), schedule.channel);
+  }
+
+  static String name(final PhysicalCommand command) {
+    return command.aliases.isEmpty() ? "" : Collections.min(command.aliases);
+  }
+
+  @FunctionalInterface
+  public interface Announcer {
+    /**
+     * Sends the responses of a command to a channel, through the platform's usual rate limits.
+     *
+     * @param channel the {@link Scope} key of the channel
+     * @param name the name to announce the command under
+     * @param command the command
+     * @return {@code true} if the channel belongs to this platform
+     */
+    boolean announce(String channel, String name, PhysicalCommand command);
+  }
+}
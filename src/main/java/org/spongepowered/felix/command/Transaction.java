@@ -0,0 +1,208 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import org.spongepowered.felix.util.PersistentMap;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * A batch of changes to the command set, applied atomically by {@link CommandConfiguration#transaction(String, java.util.function.Function)}.
+ *
+ * <p>Reads made through a transaction see its own writes.</p>
+ */
+public final class Transaction {
+  private final CommandSnapshot base;
+  private PersistentMap<String, PhysicalCommand> commands;
+  private PersistentMap<String, PersistentMap<String, PhysicalCommand>> overlays;
+  private boolean changed;
+  final Set<PhysicalCommand> added = Collections.newSetFromMap(new IdentityHashMap<>());
+  final Set<PhysicalCommand> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+  // commands which lost an alias to another command, and may no longer be reachable
+  final Set<PhysicalCommand> displaced = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  Transaction(final CommandSnapshot base) {
+    this.base = base;
+    this.commands = base.commands;
+    this.overlays = base.overlays;
+  }
+
+  @Nullable
+  public PhysicalCommand get(@Nullable final String scope, final String alias) {
+    return this.layer(scope).get(alias);
+  }
+
+  /**
+   * Maps every alias of a command to it, in its scope.
+   *
+   * @param command the command
+   */
+  public void put(final PhysicalCommand command) {
+    PersistentMap<String, PhysicalCommand> layer = this.layer(command.scope);
+    for(final String alias : command.aliases) {
+      final String key = alias.toLowerCase(Locale.ENGLISH);
+      @Nullable final PhysicalCommand previous = layer.get(key);
+      if(previous != null && previous != command) {
+        this.displaced.add(previous);
+      }
+      layer = layer.plus(key, command);
+    }
+    this.setLayer(command.scope, layer);
+    if(!this.removed.remove(command)) {
+      this.added.add(command);
+    }
+  }
+
+  /**
+   * Unmaps every alias of a command, in its scope.
+   *
+   * @param command the command
+   */
+  public void remove(final PhysicalCommand command) {
+    PersistentMap<String, PhysicalCommand> layer = this.layer(command.scope);
+    for(final String alias : command.aliases) {
+      layer = layer.minus(alias.toLowerCase(Locale.ENGLISH));
+    }
+    this.setLayer(command.scope, layer);
+    if(!this.added.remove(command)) {
+      this.removed.add(command);
+    }
+  }
+
+  /**
+   * Replaces a command with another.
+   *
+   * @param command the command to replace, or {@code null} if there is none
+   * @param replacement the replacement
+   */
+  public void replace(@Nullable final PhysicalCommand command, final PhysicalCommand replacement) {
+    if(command != null) {
+      this.remove(command);
+    }
+    this.put(replacement);
+  }
+
+  /**
+   * Replaces the entire command set with that of another version.
+   *
+   * @param snapshot the version
+   */
+  public void reset(final CommandSnapshot snapshot) {
+    final CommandSnapshot current = new CommandSnapshot(this.commands, this.overlays, 0, 0, null);
+    CommandSnapshot.diff(current, snapshot, (scope, alias, from, to) -> {
+      if(from != null) {
+        this.displaced.add(from);
+      }
+      if(to != null) {
+        this.added.add(to);
+      }
+    });
+    this.commands = snapshot.commands;
+    this.overlays = snapshot.overlays;
+    this.changed = true;
+  }
+
+  /**
+   * Replaces a single layer of the command set with that of another version, leaving the others as they are.
+   *
+   * @param snapshot the version
+   * @param scope the scope, or {@code null} for the global layer
+   */
+  public void reset(final CommandSnapshot snapshot, @Nullable final String scope) {
+    final PersistentMap<String, PhysicalCommand> layer = snapshot.layer(scope);
+    PersistentMap.diff(this.layer(scope), layer, (alias, from, to) -> {
+      if(from != null) {
+        this.displaced.add(from);
+      }
+      if(to != null) {
+        this.added.add(to);
+      }
+    });
+    this.setLayer(scope, layer);
+  }
+
+  /**
+   * Maps a single alias to a command, or unmaps it, in a scope - as replicated from the primary by a {@link Replica}.
+   *
+   * @param scope the scope, or {@code null} for the global layer
+   * @param alias the lower-cased alias
+   * @param command the command, or {@code null} to unmap the alias
+   */
+  void set(@Nullable final String scope, final String alias, @Nullable final PhysicalCommand command) {
+    final PersistentMap<String, PhysicalCommand> layer = this.layer(scope);
+    @Nullable final PhysicalCommand previous = layer.get(alias);
+    if(previous == command) {
+      return;
+    }
+    if(previous != null) {
+      this.displaced.add(previous);
+    }
+    if(command == null) {
+      this.setLayer(scope, layer.minus(alias));
+    } else {
+      this.setLayer(scope, layer.plus(alias, command));
+      this.added.add(command);
+    }
+  }
+
+  boolean changed() {
+    return this.changed;
+  }
+
+  CommandSnapshot commit(final long time, @Nullable final String description) {
+    return this.commit(this.base.version + 1, time, description);
+  }
+
+  CommandSnapshot commit(final long version, final long time, @Nullable final String description) {
+    if(!this.changed) {
+      return this.base;
+    }
+    return new CommandSnapshot(this.commands, this.overlays, version, time, description);
+  }
+
+  private PersistentMap<String, PhysicalCommand> layer(@Nullable final String scope) {
+    if(scope == null) {
+      return this.commands;
+    }
+    @Nullable final PersistentMap<String, PhysicalCommand> overlay = this.overlays.get(scope);
+    return overlay == null ? PersistentMap.empty() : overlay;
+  }
+
+  private void setLayer(@Nullable final String scope, final PersistentMap<String, PhysicalCommand> layer) {
+    if(scope == null) {
+      this.commands = layer;
+    } else if(layer.isEmpty()) {
+      this.overlays = this.overlays.minus(scope);
+    } else {
+      this.overlays = this.overlays.plus(scope, layer);
+    }
+    this.changed = true;
+  }
+}
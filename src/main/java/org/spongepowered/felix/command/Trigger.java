@@ -0,0 +1,286 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * An automatic response to a literal or a regular expression found anywhere in a message.
+ */
+@JsonAdapter(Trigger.Adapter.class)
+public final class Trigger {
+  public static final int MAX_PATTERN_LENGTH = 300;
+  public static final long DEFAULT_COOLDOWN = TimeUnit.MINUTES.toMillis(1);
+  private static final Pattern COMMENTS = Pattern.compile("\\(\\?[a-zA-Z-]*x");
+  // escapes which are a single letter, and stand for a class, a boundary or a control character
+  private static final String SIMPLE_ESCAPES = "dDsSwWbBAzZGRhHvVXtnrfae";
+  public final String name;
+  /**
+   * The {@link Scope} this trigger listens in, or {@code null} if it listens everywhere.
+   */
+  @Nullable public final String scope;
+  public final boolean regex;
+  public final String pattern;
+  /**
+   * The response, in which {@code $0} is replaced by what matched, and {@code $1} to {@code $9} by the groups of a
+   * regular expression.
+   */
+  public final String response;
+  /**
+   * How long the trigger stays quiet in a channel after firing there, in milliseconds.
+   */
+  public final long cooldown;
+  @Nullable final Pattern compiled;
+
+  /**
+   * Creates a trigger.
+   *
+   * @throws IllegalArgumentException if the pattern is empty, too long, or not a valid regular expression
+   */
+  public Trigger(final String name, @Nullable final String scope, final boolean regex, final String pattern, final String response, final long cooldown) {
+    if(pattern.isEmpty() || pattern.length() > MAX_PATTERN_LENGTH) {
+      throw new IllegalArgumentException("Patterns must be between 1 and " + MAX_PATTERN_LENGTH + " characters long.");
+    }
+    this.name = name;
+    this.scope = scope;
+    this.regex = regex;
+    this.pattern = pattern;
+    this.response = response;
+    this.cooldown = cooldown;
+    this.compiled = regex ? Pattern.compile(pattern) : null;
+  }
+
+  boolean listensIn(final String channel, @Nullable final String guild) {
+    return this.scope == null || this.scope.equals(channel) || this.scope.equals(guild);
+  }
+
+  String respond(final String match, @Nullable final Matcher matcher) {
+    final StringBuilder result = new StringBuilder(this.response.length());
+    for(int i = 0; i < this.response.length(); i++) {
+      final char c = this.response.charAt(i);
+      if(c == '$' && i + 1 < this.response.length() && Character.isDigit(this.response.charAt(i + 1))) {
+        final int group = this.response.charAt(++i) - '0';
+        if(group == 0) {
+          result.append(match);
+        } else if(matcher != null && group <= matcher.groupCount() && matcher.group(group) != null) {
+          result.append(matcher.group(group));
+        }
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Finds the longest run of plain characters which every match of a regular expression must contain.
+   *
+   * <p>Conservative: anything out of the ordinary ends a run, groups and character classes are skipped, and an
+   * alternation outside a group means there is no such run.</p>
+   *
+   * @param regex the regular expression
+   * @return the run, or {@code null} if there is none of at least two characters
+   */
+  @Nullable
+  static String requiredLiteral(final String regex) {
+    if(COMMENTS.matcher(regex).find()) {
+      // whitespace means nothing in comments mode
+      return null;
+    }
+    String best = "";
+    final StringBuilder run = new StringBuilder();
+    for(int i = 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      switch(c) {
+        case '\\':
+          if(i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+            run.append(regex.charAt(++i));
+            continue;
+          }
+          if(i + 1 < regex.length() && SIMPLE_ESCAPES.indexOf(regex.charAt(i + 1)) == -1) {
+            // quoting, code points, back references or properties, which run on: give up on anything after them
+            return literal(run.length() > best.length() ? run.toString() : best);
+          }
+          i++;
+          break;
+        case '[':
+          i = skipClass(regex, i);
+          break;
+        case '(':
+          i = skipGroup(regex, i);
+          break;
+        case '|':
+          return null;
+        case '?':
+        case '*':
+        case '{':
+          // the previous character is optional
+          if(run.length() > 0) {
+            run.setLength(run.length() - 1);
+          }
+          if(c == '{') {
+            final int close = regex.indexOf('}', i);
+            i = close == -1 ? regex.length() : close;
+          }
+          break;
+        case '+':
+        case '.':
+        case '^':
+        case '$':
+          break;
+        default:
+          run.append(c);
+          continue;
+      }
+      if(run.length() > best.length()) {
+        best = run.toString();
+      }
+      run.setLength(0);
+    }
+    return literal(run.length() > best.length() ? run.toString() : best);
+  }
+
+  @Nullable
+  private static String literal(final String run) {
+    return run.length() >= 2 ? run : null;
+  }
+
+  // Returns the index of the ']' closing the class opened at the given index.
+  private static int skipClass(final String regex, int i) {
+    i++;
+    if(i < regex.length() && regex.charAt(i) == '^') {
+      i++;
+    }
+    // a ']' first in the class is literal
+    if(i < regex.length() && regex.charAt(i) == ']') {
+      i++;
+    }
+    for(int depth = 1; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if(c == '\\') {
+        i++;
+      } else if(c == '[') {
+        depth++;
+      } else if(c == ']' && --depth == 0) {
+        return i;
+      }
+    }
+    return regex.length();
+  }
+
+  // Returns the index of the ')' closing the group opened at the given index.
+  private static int skipGroup(final String regex, int i) {
+    for(int depth = 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if(c == '\\') {
+        i++;
+      } else if(c == '[') {
+        i = skipClass(regex, i);
+      } else if(c == '(') {
+        depth++;
+      } else if(c == ')' && --depth == 0) {
+        return i;
+      }
+    }
+    return regex.length();
+  }
+
+  static final class Adapter extends TypeAdapter<Trigger> {
+    @Override
+    public void write(final JsonWriter out, final Trigger trigger) throws IOException {
+      out.beginObject();
+      out.name("name").value(trigger.name);
+      if(trigger.scope != null) {
+        out.name("scope").value(trigger.scope);
+      }
+      out.name(trigger.regex ? "regex" : "literal").value(trigger.pattern);
+      out.name("response").value(trigger.response);
+      out.name("cooldown").value(trigger.cooldown);
+      out.endObject();
+    }
+
+    @Override
+    public Trigger read(final JsonReader in) throws IOException {
+      @Nullable String name = null;
+      @Nullable String scope = null;
+      boolean regex = false;
+      @Nullable String pattern = null;
+      @Nullable String response = null;
+      long cooldown = DEFAULT_COOLDOWN;
+      in.beginObject();
+      while(in.hasNext()) {
+        switch(in.nextName()) {
+          case "name":
+            name = in.nextString();
+            break;
+          case "scope":
+            if(in.peek() == JsonToken.NULL) {
+              in.nextNull();
+            } else {
+              scope = in.nextString();
+            }
+            break;
+          case "literal":
+            regex = false;
+            pattern = in.nextString();
+            break;
+          case "regex":
+            regex = true;
+            pattern = in.nextString();
+            break;
+          case "response":
+            response = in.nextString();
+            break;
+          case "cooldown":
+            cooldown = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      if(name == null || pattern == null || response == null) {
+        throw new IOException("A trigger needs a name, a literal or regex, and a response");
+      }
+      try {
+        return new Trigger(name, scope, regex, pattern, response, cooldown);
+      } catch(final IllegalArgumentException e) {
+        throw new IOException("Invalid trigger " + name + ": " + e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.command;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.util.AhoCorasick;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+
+import javax.annotation.Nullable;
+
+/**
+ * Finds the {@link Trigger}s in messages.
+ *
+ * <p>Literal triggers, and the longest literal every match of each regular expression trigger must contain, are
+ * compiled into a single {@link AhoCorasick} automaton, so a message is scanned once however many triggers there are.
+ * Only the regular expressions whose literal was found - or which have none - are then run.</p>
+ *
+ * <p>The automaton is rebuilt on a background thread whenever the triggers change, and swapped in atomically.</p>
+ */
+public final class Triggers {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final int MAX_RESPONSES = 2;
+  // how long the regular expressions together may spend on one message, so that pathological ones cannot hang a platform's thread
+  private static final long REGEX_BUDGET = TimeUnit.MILLISECONDS.toNanos(20);
+  private final Path path;
+  private final Map<String, Trigger> triggers = new ConcurrentSkipListMap<>();
+  private final ExecutorService compiler = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Felix triggers").setDaemon(true).build());
+  private final AtomicBoolean rebuildPending = new AtomicBoolean();
+  private volatile Engine engine = Engine.EMPTY;
+  // trigger name and channel -> when the trigger last fired there
+  private final Map<String, Long> fired = new ConcurrentHashMap<>();
+
+  Triggers(final Path path) throws IOException {
+    this.path = path;
+    if(Files.exists(path)) {
+      try(final JsonReader in = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+        final Trigger.Adapter adapter = new Trigger.Adapter();
+        in.beginArray();
+        while(in.hasNext()) {
+          final Trigger trigger = adapter.read(in);
+          this.triggers.put(trigger.name.toLowerCase(Locale.ENGLISH), trigger);
+        }
+        in.endArray();
+      }
+    }
+    this.engine = Engine.compile(this.triggers.values());
+  }
+
+  public Collection<Trigger> all() {
+    return Collections.unmodifiableCollection(this.triggers.values());
+  }
+
+  @Nullable
+  public Trigger get(final String name) {
+    return this.triggers.get(name.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Adds a trigger, replacing any by the same name.
+   *
+   * @param trigger the trigger
+   * @return the trigger replaced, or {@code null}
+   */
+  @Nullable
+  public Trigger put(final Trigger trigger) {
+    @Nullable final Trigger previous = this.triggers.put(trigger.name.toLowerCase(Locale.ENGLISH), trigger);
+    this.requestRebuild();
+    return previous;
+  }
+
+  @Nullable
+  public Trigger remove(final String name) {
+    @Nullable final Trigger previous = this.triggers.remove(name.toLowerCase(Locale.ENGLISH));
+    if(previous != null) {
+      this.requestRebuild();
+    }
+    return previous;
+  }
+
+  private void requestRebuild() {
+    // Coalesce changes made while a rebuild is waiting - it will pick up the latest triggers anyway.
+    if(this.rebuildPending.compareAndSet(false, true)) {
+      this.compiler.execute(() -> {
+        this.rebuildPending.set(false);
+        final List<Trigger> triggers = new ArrayList<>(this.triggers.values());
+        this.engine = Engine.compile(triggers);
+        try {
+          this.write(triggers);
+        } catch(final IOException e) {
+          LOGGER.error("Could not write triggers", e);
+        }
+      });
+    }
+  }
+
+  private void write(final List<Trigger> triggers) throws IOException {
+    final Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+    try(final Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8); final JsonWriter out = new JsonWriter(writer)) {
+      final Trigger.Adapter adapter = new Trigger.Adapter();
+      out.setIndent("  ");
+      out.beginArray();
+      for(final Trigger trigger : triggers) {
+        adapter.write(out, trigger);
+      }
+      out.endArray();
+    }
+    Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Finds the triggers in a message, and fires those not cooling down in the channel.
+   *
+   * @param channel the channel scope
+   * @param guild the guild scope, or {@code null}
+   * @param message the message
+   * @return the responses of the triggers fired, at most two
+   */
+  public List<String> fire(final String channel, @Nullable final String guild, final String message) {
+    final Engine engine = this.engine;
+    final List<String> responses = new ArrayList<>(MAX_RESPONSES);
+    final Set<Trigger> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    final List<Trigger> candidates = new ArrayList<>(engine.unfiltered);
+    engine.automaton.search(message, (start, end, trigger) -> {
+      if(responses.size() == MAX_RESPONSES || !trigger.listensIn(channel, guild)) {
+        return;
+      }
+      if(trigger.regex) {
+        if(seen.add(trigger)) {
+          candidates.add(trigger);
+        }
+      } else if(!seen.contains(trigger) && isWord(message, start, end)) {
+        seen.add(trigger);
+        if(this.tryFire(trigger, channel)) {
+          responses.add(trigger.respond(message.substring(start, end), null));
+        }
+      }
+    });
+
+    // One deadline for every candidate, or each could take the whole budget in turn.
+    @Nullable Bounded bounded = null;
+    for(final Trigger trigger : candidates) {
+      if(responses.size() == MAX_RESPONSES) {
+        break;
+      }
+      if(!trigger.listensIn(channel, guild) || this.cooling(trigger, channel)) {
+        continue;
+      }
+      if(bounded == null) {
+        bounded = new Bounded(message, System.nanoTime() + REGEX_BUDGET);
+      }
+      final Matcher matcher = trigger.compiled.matcher(bounded);
+      try {
+        if(!matcher.find()) {
+          continue;
+        }
+      } catch(final Bounded.Exhausted e) {
+        LOGGER.warn("Trigger {} took too long to match a message, and was skipped", trigger.name);
+        continue;
+      }
+      if(this.tryFire(trigger, channel)) {
+        responses.add(trigger.respond(matcher.group(), matcher));
+      }
+    }
+    return responses;
+  }
+
+  // A literal starting or ending with a letter or digit only matches whole words, so that 'npe' does not fire on 'snipe'.
+  private static boolean isWord(final String message, final int start, final int end) {
+    return (start == 0 || !Character.isLetterOrDigit(message.charAt(start)) || !Character.isLetterOrDigit(message.charAt(start - 1)))
+      && (end == message.length() || !Character.isLetterOrDigit(message.charAt(end - 1)) || !Character.isLetterOrDigit(message.charAt(end)));
+  }
+
+  private boolean cooling(final Trigger trigger, final String channel) {
+    @Nullable final Long last = this.fired.get(trigger.name + ' ' + channel);
+    return last != null && System.currentTimeMillis() - last < trigger.cooldown;
+  }
+
+  private boolean tryFire(final Trigger trigger, final String channel) {
+    final long now = System.currentTimeMillis();
+    final long last = this.fired.merge(trigger.name + ' ' + channel, now, (previous, current) -> current - previous < trigger.cooldown ? previous : current);
+    return last == now;
+  }
+
+  private static final class Engine {
+    static final Engine EMPTY = new Engine(AhoCorasick.empty(), Collections.emptyList());
+    final AhoCorasick<Trigger> automaton;
+    // regular expressions without a literal to filter on, which run against every message
+    final List<Trigger> unfiltered;
+
+    private Engine(final AhoCorasick<Trigger> automaton, final List<Trigger> unfiltered) {
+      this.automaton = automaton;
+      this.unfiltered = unfiltered;
+    }
+
+    static Engine compile(final Collection<Trigger> triggers) {
+      final AhoCorasick.Builder<Trigger> automaton = AhoCorasick.builder();
+      final List<Trigger> unfiltered = new ArrayList<>();
+      for(final Trigger trigger : triggers) {
+        if(!trigger.regex) {
+          automaton.add(trigger.pattern, trigger);
+        } else {
+          @Nullable final String literal = Trigger.requiredLiteral(trigger.pattern);
+          if(literal == null) {
+            unfiltered.add(trigger);
+          } else {
+            automaton.add(literal, trigger);
+          }
+        }
+      }
+      return new Engine(automaton.build(), unfiltered);
+    }
+  }
+
+  // Reads a message for a regular expression, giving up once the time budget is spent.
+  private static final class Bounded implements CharSequence {
+    private final CharSequence text;
+    private final long deadline;
+    private int reads;
+
+    Bounded(final CharSequence text, final long deadline) {
+      this.text = text;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if((++this.reads & 0xfff) == 0 && System.nanoTime() > this.deadline) {
+        throw new Exhausted();
+      }
+      return this.text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return this.text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      return new Bounded(this.text.subSequence(start, end), this.deadline);
+    }
+
+    @Override
+    public String toString() {
+      return this.text.toString();
+    }
+
+    static final class Exhausted extends RuntimeException {
+      Exhausted() {
+        super(null, null, false, false);
+      }
+    }
+  }
+}
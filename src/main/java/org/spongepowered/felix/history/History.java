@@ -0,0 +1,436 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.history;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * The most recent messages of each channel, and where each nick was last seen.
+ *
+ * <p>History lives in one arena, allocated up front off the heap or mapped from a file, and split evenly between a
+ * fixed number of channels. Each channel's share is a ring of records, each framed by its length at both ends so that
+ * the ring can be walked from either end. Recording a message encodes it straight into the ring, and allocates
+ * nothing. When every share is taken, the channel which has been quiet longest gives its share up.</p>
+ */
+public final class History {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final int MAGIC = 0x46484953;
+  private static final int FORMAT = 1;
+  // magic, format, channels, ring size
+  private static final int FILE_HEADER = 16;
+  private static final int MAX_NAME_BYTES = 120;
+  // name length, name, head, tail
+  private static final int CHANNEL_HEADER = 4 + MAX_NAME_BYTES + 8 + 8;
+  private static final int MAX_NICK_BYTES = 64;
+  private static final int MAX_MESSAGE_BYTES = 1024;
+  // length, time, nick length, then the nick and the message, and the length again
+  private static final int RECORD_OVERHEAD = 4 + 8 + 1 + 4;
+  private static final int MIN_RING_SIZE = RECORD_OVERHEAD + MAX_NICK_BYTES + MAX_MESSAGE_BYTES;
+  // in MiB
+  private static final long DEFAULT_MEMORY = 8;
+  private static final int DEFAULT_CHANNELS = 64;
+  private static final int DEFAULT_NICKS = 16384;
+  private final ByteBuffer arena;
+  private final int ringSize;
+  private final Ring[] rings;
+  private final Map<String, Ring> channels = new ConcurrentHashMap<>();
+  private final Seen seen;
+
+  public History(final ConfigurationNode config) throws IOException {
+    final int count = Math.max(1, config.getNode("channels").getInt(DEFAULT_CHANNELS));
+    final long memory = config.getNode("memory").getLong(DEFAULT_MEMORY) * 1024 * 1024;
+    this.ringSize = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_RING_SIZE, memory / count - CHANNEL_HEADER));
+    final long size = FILE_HEADER + (long) count * (CHANNEL_HEADER + this.ringSize);
+    if(size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("history.memory must be less than 2 GiB");
+    }
+
+    final String file = config.getNode("file").getString("");
+    if(file.isEmpty()) {
+      this.arena = ByteBuffer.allocateDirect((int) size);
+    } else {
+      try(final FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        this.arena = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+    this.seen = new Seen(config.getNode("nicks").getInt(DEFAULT_NICKS));
+    this.rings = new Ring[count];
+    for(int i = 0; i < count; i++) {
+      this.rings[i] = new Ring(i, FILE_HEADER + i * (CHANNEL_HEADER + this.ringSize));
+    }
+
+    if(this.arena.getInt(0) == MAGIC && this.arena.getInt(4) == FORMAT && this.arena.getInt(8) == count && this.arena.getInt(12) == this.ringSize) {
+      this.restore();
+    } else {
+      for(final Ring ring : this.rings) {
+        ring.clear(null);
+      }
+      this.arena.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, count).putInt(12, this.ringSize);
+    }
+  }
+
+  // Picks the rings back up from the file, and finds where everyone in them was last seen.
+  private void restore() {
+    int restored = 0;
+    for(final Ring ring : this.rings) {
+      final int length = this.arena.getInt(ring.header);
+      if(length <= 0 || length > MAX_NAME_BYTES) {
+        continue;
+      }
+      final byte[] name = new byte[length];
+      for(int i = 0; i < length; i++) {
+        name[i] = this.arena.get(ring.header + 4 + i);
+      }
+      ring.name = new String(name, StandardCharsets.UTF_8);
+      ring.head = this.arena.getLong(ring.header + 4 + MAX_NAME_BYTES);
+      ring.tail = this.arena.getLong(ring.header + 4 + MAX_NAME_BYTES + 8);
+      if(!ring.restore()) {
+        LOGGER.warn("Discarding the history of {}, which is damaged", ring.name);
+        ring.head = 0;
+        ring.clear(null);
+        continue;
+      }
+      this.channels.put(ring.name, ring);
+      restored++;
+    }
+    LOGGER.info("Restored the history of {} channels", restored);
+  }
+
+  /**
+   * Records a message.
+   *
+   * @param channel the scope key of the channel the message was sent in
+   * @param nick who sent the message
+   * @param message the message
+   */
+  public void record(final String channel, final String nick, final String message) {
+    final long time = System.currentTimeMillis();
+    while(true) {
+      @Nullable Ring ring = this.channels.get(channel);
+      if(ring == null) {
+        ring = this.claim(channel);
+      }
+      final long offset;
+      synchronized(ring) {
+        if(!channel.equals(ring.name)) {
+          continue; // given up to another channel in the meantime
+        }
+        offset = ring.append(time, nick, message);
+      }
+      this.seen.put(nick, ring.index, offset, time);
+      return;
+    }
+  }
+
+  // Gives a channel a ring of its own: a free one, or else the one whose channel has been quiet longest.
+  private synchronized Ring claim(final String channel) {
+    @Nullable final Ring existing = this.channels.get(channel);
+    if(existing != null) {
+      return existing;
+    }
+    Ring claimed = this.rings[0];
+    for(final Ring ring : this.rings) {
+      if(ring.name == null) {
+        claimed = ring;
+        break;
+      }
+      if(ring.active < claimed.active) {
+        claimed = ring;
+      }
+    }
+    synchronized(claimed) {
+      if(claimed.name != null) {
+        this.channels.remove(claimed.name);
+      }
+      claimed.clear(channel);
+    }
+    this.channels.put(channel, claimed);
+    return claimed;
+  }
+
+  /**
+   * Finds the most recent message in a channel which matches a filter.
+   *
+   * @param channel the scope key of the channel
+   * @param filter the filter
+   * @return the message, or {@code null} if none of the messages remembered matches
+   */
+  @Nullable
+  public Entry find(final String channel, final Predicate<Entry> filter) {
+    @Nullable final Ring ring = this.channels.get(channel);
+    if(ring == null) {
+      return null;
+    }
+    // Copy the records out, so that searching them does not hold up recording.
+    final ByteBuffer records;
+    synchronized(ring) {
+      if(!channel.equals(ring.name)) {
+        return null;
+      }
+      records = ring.copy(ring.tail, ring.head);
+    }
+    for(int end = records.capacity(); end > 0; ) {
+      final int start = end - records.getInt(end - 4);
+      final Entry entry = decode(channel, records, start);
+      if(filter.test(entry)) {
+        return entry;
+      }
+      end = start;
+    }
+    return null;
+  }
+
+  /**
+   * Finds when and where a nick was last seen.
+   *
+   * @param nick the nick
+   * @return what the nick last said, without the channel and message if they are no longer remembered, or
+   *     {@code null} if the nick has not been seen
+   */
+  @Nullable
+  public Entry seen(final String nick) {
+    @Nullable final Seen.Sighting sighting = this.seen.get(nick);
+    if(sighting == null) {
+      return null;
+    }
+    final Ring ring = this.rings[sighting.ring];
+    synchronized(ring) {
+      if(ring.name != null && sighting.offset >= ring.tail && sighting.offset < ring.head) {
+        return decode(ring.name, ring.copy(sighting.offset, sighting.offset + ring.getInt(sighting.offset)), 0);
+      }
+    }
+    return new Entry(null, nick, null, sighting.time);
+  }
+
+  private static Entry decode(final String channel, final ByteBuffer records, final int start) {
+    final int length = records.getInt(start);
+    final long time = records.getLong(start + 4);
+    final int nickLength = records.get(start + 12) & 0xff;
+    final String nick = new String(records.array(), start + 13, nickLength, StandardCharsets.UTF_8);
+    final String message = new String(records.array(), start + 13 + nickLength, length - RECORD_OVERHEAD - nickLength, StandardCharsets.UTF_8);
+    return new Entry(channel, nick, message, time);
+  }
+
+  // Encodes as much of a string as fits in a number of bytes as UTF-8, writing it to the ring if there is one.
+  private static int encode(final String string, final int limit, @Nullable final Ring ring, final long offset) {
+    int length = 0;
+    for(int i = 0; i < string.length(); i++) {
+      int c = string.charAt(i);
+      if(Character.isHighSurrogate((char) c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+        c = Character.toCodePoint((char) c, string.charAt(++i));
+      } else if(Character.isSurrogate((char) c)) {
+        c = '?';
+      }
+      final int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+      if(length + bytes > limit) {
+        break;
+      }
+      if(ring != null) {
+        final long at = offset + length;
+        switch(bytes) {
+          case 1:
+            ring.put(at, c);
+            break;
+          case 2:
+            ring.put(at, 0xc0 | c >> 6);
+            ring.put(at + 1, 0x80 | c & 0x3f);
+            break;
+          case 3:
+            ring.put(at, 0xe0 | c >> 12);
+            ring.put(at + 1, 0x80 | c >> 6 & 0x3f);
+            ring.put(at + 2, 0x80 | c & 0x3f);
+            break;
+          default:
+            ring.put(at, 0xf0 | c >> 18);
+            ring.put(at + 1, 0x80 | c >> 12 & 0x3f);
+            ring.put(at + 2, 0x80 | c >> 6 & 0x3f);
+            ring.put(at + 3, 0x80 | c & 0x3f);
+            break;
+        }
+      }
+      length += bytes;
+    }
+    return length;
+  }
+
+  /**
+   * A message remembered.
+   */
+  public static final class Entry {
+    /**
+     * The scope key of the channel the message was sent in, or {@code null} if it is no longer remembered.
+     */
+    @Nullable public final String channel;
+    public final String nick;
+    /**
+     * The message, or {@code null} if it is no longer remembered.
+     */
+    @Nullable public final String message;
+    public final long time;
+
+    Entry(@Nullable final String channel, final String nick, @Nullable final String message, final long time) {
+      this.channel = channel;
+      this.nick = nick;
+      this.message = message;
+      this.time = time;
+    }
+  }
+
+  /**
+   * One channel's share of the arena.
+   *
+   * <p>Positions in the ring only ever grow, and wrap around the share, so a position names one record for good:
+   * once the tail has passed it, the record is gone.</p>
+   */
+  private final class Ring {
+    final int index;
+    final int header;
+    final int data;
+    @Nullable String name;
+    // the position the next record goes at, and of the oldest record
+    long head;
+    long tail;
+    // when the last message was recorded
+    long active;
+
+    Ring(final int index, final int header) {
+      this.index = index;
+      this.header = header;
+      this.data = header + CHANNEL_HEADER;
+    }
+
+    void clear(@Nullable final String name) {
+      this.name = name;
+      this.tail = this.head;
+      this.active = 0;
+      @Nullable final byte[] bytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+      // a name too long to keep is not restored
+      if(bytes == null || bytes.length > MAX_NAME_BYTES) {
+        History.this.arena.putInt(this.header, 0);
+      } else {
+        for(int i = 0; i < bytes.length; i++) {
+          History.this.arena.put(this.header + 4 + i, bytes[i]);
+        }
+        History.this.arena.putInt(this.header, bytes.length);
+      }
+      this.store();
+    }
+
+    // Checks that the records restored are sound, and then notes who sent them.
+    boolean restore() {
+      if(this.tail < 0 || this.tail > this.head || this.head - this.tail > History.this.ringSize) {
+        return false;
+      }
+      for(long offset = this.tail; offset < this.head; offset += this.getInt(offset)) {
+        final int length = this.getInt(offset);
+        if(length < RECORD_OVERHEAD || length > this.head - offset || this.getInt(offset + length - 4) != length) {
+          return false;
+        }
+      }
+      for(long offset = this.tail; offset < this.head; offset += this.getInt(offset)) {
+        final Entry entry = decode(this.name, this.copy(offset, offset + this.getInt(offset)), 0);
+        History.this.seen.put(entry.nick, this.index, offset, entry.time);
+        this.active = entry.time;
+      }
+      return true;
+    }
+
+    long append(final long time, final String nick, final String message) {
+      final int nickLength = encode(nick, MAX_NICK_BYTES, null, 0);
+      final int length = RECORD_OVERHEAD + nickLength + encode(message, MAX_MESSAGE_BYTES, null, 0);
+      while(this.head + length - this.tail > History.this.ringSize) {
+        this.tail += this.getInt(this.tail);
+      }
+      // The tail is stored first, so that a record half written when the process dies is never restored.
+      this.store();
+      final long offset = this.head;
+      this.putInt(offset, length);
+      this.putLong(offset + 4, time);
+      this.put(offset + 12, nickLength);
+      encode(nick, MAX_NICK_BYTES, this, offset + 13);
+      encode(message, MAX_MESSAGE_BYTES, this, offset + 13 + nickLength);
+      this.putInt(offset + length - 4, length);
+      this.head = offset + length;
+      this.active = time;
+      this.store();
+      return offset;
+    }
+
+    private void store() {
+      History.this.arena.putLong(this.header + 4 + MAX_NAME_BYTES, this.head);
+      History.this.arena.putLong(this.header + 4 + MAX_NAME_BYTES + 8, this.tail);
+    }
+
+    ByteBuffer copy(final long from, final long to) {
+      final byte[] bytes = new byte[(int) (to - from)];
+      for(int i = 0; i < bytes.length; i++) {
+        bytes[i] = this.get(from + i);
+      }
+      return ByteBuffer.wrap(bytes);
+    }
+
+    private int index(final long offset) {
+      return this.data + (int) (offset % History.this.ringSize);
+    }
+
+    byte get(final long offset) {
+      return History.this.arena.get(this.index(offset));
+    }
+
+    void put(final long offset, final int b) {
+      History.this.arena.put(this.index(offset), (byte) b);
+    }
+
+    int getInt(final long offset) {
+      return (this.get(offset) & 0xff) << 24 | (this.get(offset + 1) & 0xff) << 16 | (this.get(offset + 2) & 0xff) << 8 | this.get(offset + 3) & 0xff;
+    }
+
+    void putInt(final long offset, final int value) {
+      this.put(offset, value >>> 24);
+      this.put(offset + 1, value >>> 16);
+      this.put(offset + 2, value >>> 8);
+      this.put(offset + 3, value);
+    }
+
+    void putLong(final long offset, final long value) {
+      this.putInt(offset, (int) (value >>> 32));
+      this.putInt(offset + 4, (int) value);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.history;
+
+import javax.annotation.Nullable;
+
+/**
+ * Where each nick was last seen, in a fixed-size table.
+ *
+ * <p>Nicks are kept as 64-bit hashes, in an open-addressed table probed a few slots at a time. When every slot a nick
+ * could go in is taken, the nick seen longest ago makes way, so the table forgets the least active nicks first.</p>
+ */
+final class Seen {
+  private static final int PROBES = 8;
+  private final int mask;
+  private final int shift;
+  // 0 is no nick's hash, and marks a free slot
+  private final long[] keys;
+  private final long[] times;
+  private final int[] rings;
+  private final long[] offsets;
+
+  Seen(final int capacity) {
+    final int size = Integer.highestOneBit(Math.max(PROBES, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.shift = Long.numberOfLeadingZeros(size) + 1;
+    this.keys = new long[size];
+    this.times = new long[size];
+    this.rings = new int[size];
+    this.offsets = new long[size];
+  }
+
+  synchronized void put(final String nick, final int ring, final long offset, final long time) {
+    final long key = hash(nick);
+    int slot = this.slot(key);
+    int victim = slot;
+    for(int probe = 0; probe < PROBES; probe++, slot = slot + 1 & this.mask) {
+      if(this.keys[slot] == key || this.keys[slot] == 0) {
+        victim = slot;
+        break;
+      }
+      if(this.times[slot] < this.times[victim]) {
+        victim = slot;
+      }
+    }
+    if(this.keys[victim] == key && this.times[victim] > time) {
+      return;
+    }
+    this.keys[victim] = key;
+    this.times[victim] = time;
+    this.rings[victim] = ring;
+    this.offsets[victim] = offset;
+  }
+
+  @Nullable
+  synchronized Sighting get(final String nick) {
+    final long key = hash(nick);
+    int slot = this.slot(key);
+    for(int probe = 0; probe < PROBES && this.keys[slot] != 0; probe++, slot = slot + 1 & this.mask) {
+      if(this.keys[slot] == key) {
+        return new Sighting(this.rings[slot], this.offsets[slot], this.times[slot]);
+      }
+    }
+    return null;
+  }
+
+  private int slot(final long key) {
+    return (int) (key * 0x9e3779b97f4a7c15L >>> this.shift);
+  }
+
+  // FNV-1a over the nick, ignoring case
+  private static long hash(final String nick) {
+    long hash = 0xcbf29ce484222325L;
+    for(int i = 0; i < nick.length(); i++) {
+      hash ^= Character.toLowerCase(nick.charAt(i));
+      hash *= 0x100000001b3L;
+    }
+    return hash == 0 ? 1 : hash;
+  }
+
+  static final class Sighting {
+    final int ring;
+    final long offset;
+    final long time;
+
+    Sighting(final int ring, final long offset, final long time) {
+      this.ring = ring;
+      this.offset = offset;
+      this.time = time;
+    }
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.http;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.command.CommandSnapshot;
+import org.spongepowered.felix.command.FactoidFormats;
+import org.spongepowered.felix.command.PhysicalCommand;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * A local HTTP API over the command set, for dashboards and tooling.
+ *
+ * <p>{@code GET /commands} serves every command, in the format of {@code commands.json}. Its strong ETag names the
+ * version, so a poller sending {@code If-None-Match} gets a {@code 304} for the price of comparing two strings until
+ * something changes. The body is encoded once per version, and kept both as is and gzipped, the latter tagged with a
+ * {@code -gz} suffix.</p>
+ *
+ * <p>{@code POST /commands} applies a batch of edits as one transaction, so they make one version and one write of
+ * {@code commands.json}. With {@code If-Match}, the batch only applies to the version it names. Editing needs
+ * {@code http.token}, sent as a bearer token, and a JSON body.</p>
+ */
+public final class HttpApi {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final String JSON = "application/json; charset=utf-8";
+  private static final int MAX_BODY = 16 * 1024 * 1024;
+  private final CommandConfiguration cc;
+  @Nullable private final String token;
+  // versions restart from 1 with every process, so tags carry an epoch as well
+  private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+  private volatile Body body = new Body(null, new byte[0], new byte[0]);
+
+  public HttpApi(final CommandConfiguration cc, final ConfigurationNode config) throws IOException {
+    this.cc = cc;
+    final String token = config.getNode("token").getString("");
+    this.token = token.isEmpty() ? null : token;
+    final HttpServer server = HttpServer.create(new InetSocketAddress(config.getNode("host").getString("127.0.0.1"), config.getNode("port").getInt()), 0);
+    server.setExecutor(Executors.newFixedThreadPool(config.getNode("threads").getInt(2), new ThreadFactoryBuilder().setNameFormat("Felix HTTP %d").setDaemon(true).build()));
+    server.createContext("/commands", this::commands);
+    server.start();
+    LOGGER.info("Serving the HTTP API on {}", server.getAddress());
+  }
+
+  private void commands(final HttpExchange exchange) throws IOException {
+    try {
+      if(!exchange.getRequestURI().getPath().equals("/commands")) {
+        respond(exchange, 404, "No such resource.");
+        return;
+      }
+      switch(exchange.getRequestMethod()) {
+        case "GET":
+        case "HEAD":
+          this.read(exchange);
+          break;
+        case "POST":
+          this.edit(exchange);
+          break;
+        default:
+          exchange.getResponseHeaders().set("Allow", "GET, HEAD, POST");
+          respond(exchange, 405, "Use GET, HEAD or POST.");
+      }
+    } catch(final RuntimeException e) {
+      LOGGER.warn("Failed to serve {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+      respond(exchange, 500, "An unexpected error occurred.");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void read(final HttpExchange exchange) throws IOException {
+    final CommandSnapshot snapshot = this.cc.snapshot();
+    final String tag = this.tag(snapshot);
+    final boolean gzip = accepts(exchange.getRequestHeaders().getFirst("Accept-Encoding"), "gzip");
+    final Headers headers = exchange.getResponseHeaders();
+    // each representation needs its own strong tag
+    headers.set("ETag", gzip ? gzipped(tag) : tag);
+    headers.set("Cache-Control", "no-cache");
+    headers.set("Vary", "Accept-Encoding");
+    if(matches(exchange.getRequestHeaders().getFirst("If-None-Match"), tag)) {
+      exchange.sendResponseHeaders(304, -1);
+      return;
+    }
+
+    final Body body = this.body(snapshot);
+    final byte[] bytes = gzip ? body.gzip : body.identity;
+    headers.set("Content-Type", JSON);
+    if(gzip) {
+      headers.set("Content-Encoding", "gzip");
+    }
+    if(exchange.getRequestMethod().equals("HEAD")) {
+      headers.set("Content-Length", String.valueOf(bytes.length));
+      exchange.sendResponseHeaders(200, -1);
+      return;
+    }
+    exchange.sendResponseHeaders(200, bytes.length);
+    try(final OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  // Encodes a version once, however many requests for it arrive together.
+  private Body body(final CommandSnapshot snapshot) throws IOException {
+    Body body = this.body;
+    if(body.snapshot == snapshot) {
+      return body;
+    }
+    synchronized(this) {
+      body = this.body;
+      if(body.snapshot != snapshot) {
+        final ByteArrayOutputStream identity = new ByteArrayOutputStream();
+        try(final JsonWriter out = new JsonWriter(new OutputStreamWriter(identity, StandardCharsets.UTF_8))) {
+          FactoidFormats.FELIX.write(out, snapshot.all());
+        }
+        final ByteArrayOutputStream gzip = new ByteArrayOutputStream(identity.size() / 4);
+        try(final GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+          identity.writeTo(out);
+        }
+        body = new Body(snapshot, identity.toByteArray(), gzip.toByteArray());
+        this.body = body;
+      }
+      return body;
+    }
+  }
+
+  private void edit(final HttpExchange exchange) throws IOException {
+    // Without a token, anything that can reach the port could edit, so editing is off.
+    if(this.token == null) {
+      respond(exchange, 403, "Editing is disabled until http.token is set.");
+      return;
+    }
+    @Nullable final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    if(authorization == null || !MessageDigest.isEqual(("Bearer " + this.token).getBytes(StandardCharsets.UTF_8), authorization.getBytes(StandardCharsets.UTF_8))) {
+      exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+      respond(exchange, 401, "Editing needs the configured token.");
+      return;
+    }
+    // Browsers send forms and plain text across origins without asking first, but never JSON.
+    if(!isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+      respond(exchange, 415, "Edits must be sent as application/json.");
+      return;
+    }
+    if(this.cc.following()) {
+      respond(exchange, 503, "This instance is a standby: edit the primary.");
+      return;
+    }
+
+    final Edit edit;
+    try(final JsonReader in = new JsonReader(new InputStreamReader(ByteStreams.limit(exchange.getRequestBody(), MAX_BODY), StandardCharsets.UTF_8))) {
+      edit = Edit.read(in);
+    } catch(final IOException | IllegalStateException | NumberFormatException e) {
+      respond(exchange, 400, "Malformed edit: " + e.getMessage());
+      return;
+    }
+    @Nullable final String problem = edit.validate();
+    if(problem != null) {
+      respond(exchange, 422, problem);
+      return;
+    }
+
+    @Nullable final String expected = exchange.getRequestHeaders().getFirst("If-Match");
+    final CommandSnapshot applied;
+    try {
+      applied = this.cc.apply(edit.describe(), transaction -> {
+        // Nothing else can publish a version while the transaction runs, so this is the version it applies to.
+        if(expected != null && !matches(expected, this.tag(this.cc.snapshot()))) {
+          throw new PreconditionFailed();
+        }
+        for(final Removal removal : edit.removals) {
+          @Nullable final PhysicalCommand command = transaction.get(removal.scope, removal.alias);
+          if(command != null) {
+            transaction.remove(command);
+          }
+        }
+        for(final PhysicalCommand command : edit.puts) {
+          transaction.put(command);
+        }
+      });
+    } catch(final PreconditionFailed e) {
+      exchange.getResponseHeaders().set("ETag", this.tag(this.cc.snapshot()));
+      respond(exchange, 412, "The command set has changed since that version.");
+      return;
+    }
+
+    LOGGER.info("Applied an HTTP edit of {} removals and {} commands, now at version {}", edit.removals.size(), edit.puts.size(), applied.version);
+    exchange.getResponseHeaders().set("ETag", this.tag(applied));
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(final JsonWriter out = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+      out.beginObject().name("version").value(applied.version).endObject();
+    }
+    exchange.getResponseHeaders().set("Content-Type", JSON);
+    exchange.sendResponseHeaders(200, bytes.size());
+    try(final OutputStream out = exchange.getResponseBody()) {
+      bytes.writeTo(out);
+    }
+  }
+
+  private String tag(final CommandSnapshot snapshot) {
+    return '"' + this.epoch + '-' + snapshot.version + '"';
+  }
+
+  private static String gzipped(final String tag) {
+    return tag.substring(0, tag.length() - 1) + "-gz\"";
+  }
+
+  // Compares entity tags from If-None-Match or If-Match, ignoring weakness and which representation they name.
+  private static boolean matches(@Nullable final String header, final String tag) {
+    if(header == null) {
+      return false;
+    }
+    for(String candidate : header.split(",")) {
+      candidate = candidate.trim();
+      if(candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if(candidate.equals("*") || candidate.equals(tag) || candidate.equals(gzipped(tag))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isJson(@Nullable final String header) {
+    if(header == null) {
+      return false;
+    }
+    final int parameters = header.indexOf(';');
+    return (parameters == -1 ? header : header.substring(0, parameters)).trim().equalsIgnoreCase("application/json");
+  }
+
+  private static boolean accepts(@Nullable final String header, final String coding) {
+    if(header == null) {
+      return false;
+    }
+    for(final String candidate : header.toLowerCase(Locale.ENGLISH).split(",")) {
+      final String[] parts = candidate.trim().split(";");
+      if(parts[0].trim().equals(coding)) {
+        return !(parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"));
+      }
+    }
+    return false;
+  }
+
+  private static void respond(final HttpExchange exchange, final int status, final String message) throws IOException {
+    final byte[] bytes = (message + '\n').getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try(final OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static final class Body {
+    @Nullable final CommandSnapshot snapshot;
+    final byte[] identity;
+    final byte[] gzip;
+
+    Body(@Nullable final CommandSnapshot snapshot, final byte[] identity, final byte[] gzip) {
+      this.snapshot = snapshot;
+      this.identity = identity;
+      this.gzip = gzip;
+    }
+  }
+
+  /**
+   * A batch of edits: {@code {"user": ..., "description": ..., "remove": [{"scope": ..., "alias": ...}], "put": [...]}},
+   * where {@code put} holds commands in the format of {@code commands.json}. Removals are applied first.
+   */
+  private static final class Edit {
+    @Nullable String user;
+    @Nullable String description;
+    final List<Removal> removals = new ArrayList<>();
+    final List<PhysicalCommand> puts = new ArrayList<>();
+
+    static Edit read(final JsonReader in) throws IOException {
+      final Edit edit = new Edit();
+      in.beginObject();
+      while(in.hasNext()) {
+        switch(in.nextName()) {
+          case "user":
+            edit.user = nextNullableString(in);
+            break;
+          case "description":
+            edit.description = nextNullableString(in);
+            break;
+          case "remove":
+            in.beginArray();
+            while(in.hasNext()) {
+              @Nullable String scope = null;
+              @Nullable String alias = null;
+              in.beginObject();
+              while(in.hasNext()) {
+                switch(in.nextName()) {
+                  case "scope":
+                    scope = nextNullableString(in);
+                    break;
+                  case "alias":
+                    alias = in.nextString();
+                    break;
+                  default:
+                    in.skipValue();
+                }
+              }
+              in.endObject();
+              if(alias == null) {
+                throw new IOException("A removal needs an alias");
+              }
+              edit.removals.add(new Removal(scope, alias.toLowerCase(Locale.ENGLISH)));
+            }
+            in.endArray();
+            break;
+          case "put":
+            FactoidFormats.FELIX.read(in, edit.puts::add);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return edit;
+    }
+
+    @Nullable
+    String validate() {
+      for(final PhysicalCommand command : this.puts) {
+        if(command.aliases.isEmpty() || command.responses.isEmpty()) {
+          return "Every command needs an alias and a response.";
+        }
+        for(final String alias : command.aliases) {
+          if(CommandConfiguration.RESERVED_COMMAND_NAMES.contains(alias.toLowerCase(Locale.ENGLISH))) {
+            return "'" + alias + "' is a reserved command name.";
+          }
+        }
+      }
+      return null;
+    }
+
+    String describe() {
+      return (this.user == null ? "http" : this.user + " (http)") + ": "
+        + (this.description == null ? "edit, " + this.removals.size() + " removed and " + this.puts.size() + " put" : this.description);
+    }
+
+    @Nullable
+    private static String nextNullableString(final JsonReader in) throws IOException {
+      if(in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return in.nextString();
+    }
+  }
+
+  private static final class Removal {
+    @Nullable final String scope;
+    final String alias;
+
+    Removal(@Nullable final String scope, final String alias) {
+      this.scope = scope;
+      this.alias = alias;
+    }
+  }
+
+  private static final class PreconditionFailed extends RuntimeException {
+    PreconditionFailed() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import sx.blah.discord.api.IDiscordClient;
+import sx.blah.discord.api.IShard;
+import sx.blah.discord.api.events.EventSubscriber;
+import sx.blah.discord.handle.impl.events.ReadyEvent;
+import sx.blah.discord.handle.impl.events.shard.DisconnectedEvent;
+import sx.blah.discord.handle.impl.events.shard.ReconnectFailureEvent;
+import sx.blah.discord.handle.impl.events.shard.ReconnectSuccessEvent;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the gateway heartbeat round-trip time of every shard, and logs in again when Discord4J gives up on
+ * reconnecting.
+ *
+ * <p>Discord4J reconnects dropped shards itself; only once it abandons a shard does the link's backoff decide when to
+ * try again.</p>
+ */
+final class DiscordHealthMonitor {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private final IDiscordClient client;
+  private final Health health;
+  private final Health.Link link;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "Felix Discord health");
+    thread.setDaemon(true);
+    return thread;
+  });
+  // the last heartbeat time sampled from each shard, as the client only keeps the latest
+  private long[] sampled = new long[0];
+
+  DiscordHealthMonitor(final IDiscordClient client, final Health health) {
+    this.client = client;
+    this.health = health;
+    this.link = health.link("Discord");
+    this.scheduler.scheduleWithFixedDelay(this::sample, health.interval, health.interval, TimeUnit.MILLISECONDS);
+  }
+
+  private void sample() {
+    final List<IShard> shards = this.client.getShards();
+    if(this.sampled.length != shards.size()) {
+      this.sampled = new long[shards.size()];
+    }
+    for(int i = 0; i < shards.size(); i++) {
+      final long millis = shards.get(i).getResponseTime();
+      // The same heartbeat can be sampled twice when it is slower than the interval; skip repeats.
+      if(millis > 0 && millis != this.sampled[i]) {
+        this.sampled[i] = millis;
+        this.link.rtt(TimeUnit.MILLISECONDS.toMicros(millis));
+        if(millis > this.health.timeout) {
+          LOGGER.warn("Discord heartbeat took {}ms", millis);
+        }
+      }
+    }
+  }
+
+  @EventSubscriber
+  public void onReady(final ReadyEvent event) {
+    this.link.connected = true;
+    this.link.backoff.reset();
+  }
+
+  @EventSubscriber
+  public void onDisconnected(final DisconnectedEvent event) {
+    this.link.connected = false;
+    this.link.stalls.incrementAndGet();
+  }
+
+  @EventSubscriber
+  public void onReconnected(final ReconnectSuccessEvent event) {
+    this.link.connected = true;
+    this.link.reconnects.incrementAndGet();
+    this.link.backoff.reset();
+  }
+
+  @EventSubscriber
+  public void onReconnectFailed(final ReconnectFailureEvent event) {
+    if(!event.isShardAbandoned()) {
+      return;
+    }
+    final long delay = this.link.backoff.next();
+    LOGGER.warn("Discord gave up reconnecting after {} attempts, logging in again in {}ms", event.getCurrentAttempt(), delay);
+    this.scheduler.schedule(this::login, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void login() {
+    if(this.client.isLoggedIn()) {
+      return;
+    }
+    this.link.reconnects.incrementAndGet();
+    try {
+      this.client.login();
+    } catch(final RuntimeException e) {
+      final long delay = this.link.backoff.next();
+      LOGGER.warn("Could not log in to Discord, trying again in {}ms", delay, e);
+      this.scheduler.schedule(this::login, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+}
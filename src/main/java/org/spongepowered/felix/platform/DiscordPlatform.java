@@ -24,70 +24,309 @@
  */
 package org.spongepowered.felix.platform;
 
-import com.sk89q.intake.context.CommandContext;
+import org.spongepowered.felix.capture.Capture;
+import org.spongepowered.felix.command.Actor;
+import org.spongepowered.felix.command.Addressing;
+import org.spongepowered.felix.command.Admins;
 import org.spongepowered.felix.command.CommandConfiguration;
 import org.spongepowered.felix.command.CommandUtil;
+import org.spongepowered.felix.command.Ignores;
 import org.spongepowered.felix.command.PhysicalCommand;
+import org.spongepowered.felix.command.Router;
+import org.spongepowered.felix.command.Scope;
 import org.spongepowered.felix.command.Target;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.jfr.FactoidResolvedEvent;
+import org.spongepowered.felix.jfr.InboundMessageEvent;
+import org.spongepowered.felix.jfr.OutboundEnqueuedEvent;
+import org.spongepowered.felix.jfr.OutboundFlushedEvent;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
 import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import sx.blah.discord.api.ClientBuilder;
 import sx.blah.discord.api.IDiscordClient;
 import sx.blah.discord.api.events.EventSubscriber;
+import sx.blah.discord.handle.impl.events.ReadyEvent;
 import sx.blah.discord.handle.impl.events.guild.channel.message.MessageReceivedEvent;
+import sx.blah.discord.handle.obj.IChannel;
+import sx.blah.discord.handle.obj.IGuild;
+import sx.blah.discord.handle.obj.IRole;
+import sx.blah.discord.handle.obj.IUser;
+import sx.blah.discord.handle.obj.Permissions;
 import sx.blah.discord.util.RequestBuffer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
 public final class DiscordPlatform {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final int TRACE_DUMP_LINES = 200;
+  private static final long TRACE_DUMP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
   private final IDiscordClient client;
   private final CommandConfiguration cc;
+  private final WireTrace trace;
+  private final Router router;
+  private final Plugins plugins;
+  private final History history;
+  private final Addressing addressing;
+  private final Capture capture;
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
 
-  public DiscordPlatform(final ConfigurationNode config, final CommandConfiguration cc) {
-    this.cc = cc;
-    this.client = new ClientBuilder()
+  public DiscordPlatform(final ConfigurationNode config, final CommandConfiguration cc, final WireTrace trace, final Health health, final Plugins plugins, final History history, final Capture capture) {
+    this(new ClientBuilder()
       .withToken(config.getNode("token").getString())
-      .build();
-    this.client.getDispatcher().registerListener(this);
+      .build(), cc, trace, health, plugins, history, capture);
     this.client.login();
   }
 
+  DiscordPlatform(final IDiscordClient client, final CommandConfiguration cc, final WireTrace trace, final Health health, final Plugins plugins, final History history, final Capture capture) {
+    this.cc = cc;
+    this.client = client;
+    this.trace = trace;
+    this.router = new ManagementCommands(cc, trace, health, plugins, history).router();
+    this.plugins = plugins;
+    this.history = history;
+    this.addressing = new Addressing(cc);
+    this.capture = capture;
+    this.client.getDispatcher().registerListener(this);
+    this.client.getDispatcher().registerListener(new DiscordHealthMonitor(client, health));
+    cc.timers.addAnnouncer((scope, name, command) -> {
+      @Nullable final String id = Scope.discordChannelId(scope);
+      if(id == null) {
+        return false;
+      }
+      @Nullable final IChannel channel = this.client.getChannelByID(Long.parseLong(id));
+      if(channel != null) {
+        this.send(channel, name, command.responses);
+      }
+      return true;
+    });
+  }
+
+  /**
+   * Gets a future completed once the client has logged in and received its guilds.
+   *
+   * @return the future
+   */
+  public CompletableFuture<Void> ready() {
+    return this.ready;
+  }
+
+  @EventSubscriber
+  public void onReady(final ReadyEvent event) {
+    final IUser self = this.client.getOurUser();
+    this.addressing.names(Collections.singleton(self.getName()), Arrays.asList("<@" + self.getStringID() + '>', "<@!" + self.getStringID() + '>'));
+    this.ready.complete(null);
+  }
+
   @EventSubscriber
   public void messageReceiver(final MessageReceivedEvent event) {
-    if(this.cc.ignored(event.getAuthor().getStringID())) {
+    if(this.cc.following()) {
       return;
     }
+    final InboundMessageEvent inbound = new InboundMessageEvent();
+    inbound.begin();
+    final String scope = Scope.discordChannel(event.getChannel().getStringID());
+    try {
+      if(!this.ignored(event)) {
+        this.process(event, scope);
+        // after answering, so that the message does not come up in its own answer, and never from a private channel
+        if(!event.getChannel().isPrivate()) {
+          this.history.record(scope, event.getAuthor().getName(), event.getMessage().getContent());
+        }
+      }
+      inbound.commit(scope, event.getAuthor().getStringID(), event.getMessage().getContent().length());
+    } catch(final RuntimeException e) {
+      LOGGER.error("Could not process Discord message", e);
+      if(this.trace.dumpAtMostEvery(TRACE_DUMP_LINES, TRACE_DUMP_INTERVAL, line -> LOGGER.error("trace: {}", line))) {
+        LOGGER.error("End of the wire trace leading up to the exception above");
+      }
+      throw e;
+    }
+  }
+
+  // Admins are never ignored, so that they can always undo an ignore.
+  private boolean ignored(final MessageReceivedEvent event) {
+    final IUser author = event.getAuthor();
+    if(this.cc.ignores.ignoredDiscord(author.getStringID())) {
+      return !this.admin(event);
+    }
+    @Nullable final IGuild guild = event.getGuild();
+    if(guild != null && this.cc.ignores.ignoresRoles()) {
+      for(final IRole role : author.getRolesForGuild(guild)) {
+        if(this.cc.ignores.ignoredRole(role.getStringID())) {
+          return !this.admin(event);
+        }
+      }
+    }
+    return false;
+  }
 
+  private boolean admin(final MessageReceivedEvent event) {
+    return new DiscordActor(event.getChannel(), event.getAuthor(), this.trace, this.cc.admins).isAdmin();
+  }
+
+  private void process(final MessageReceivedEvent event, final String scope) {
     final String message = event.getMessage().getContent();
-    if(message.length() < 2) {
-      return;
+    final long channelId = event.getChannel().getLongID();
+    this.trace.record(WireTrace.Source.DISCORD_IN, channelId, message);
+
+    int start = this.addressing.match(scope, message);
+    if(this.capture.enabled()) {
+      final boolean command = start != -1 || event.getChannel().isPrivate();
+      @Nullable final IGuild guild = event.getGuild();
+      this.capture.record(
+        event.getChannel().isPrivate() ? Capture.Source.DISCORD_PRIVATE : Capture.Source.DISCORD,
+        event.getChannel().isPrivate() ? null : event.getChannel().getStringID(),
+        guild == null ? null : guild.getStringID(),
+        event.getAuthor().getStringID(),
+        event.getAuthor().getName(),
+        command,
+        command && DiscordActor.isOperator(event.getChannel(), event.getAuthor()),
+        message
+      );
+    }
+    if(start == -1) {
+      if(!event.getChannel().isPrivate()) {
+        @Nullable final IGuild guild = event.getGuild();
+        for(final String response : this.cc.triggers.fire(scope, guild == null ? null : Scope.discordGuild(guild.getStringID()), message)) {
+          this.say(event.getChannel(), response);
+        }
+        return;
+      }
+      // Everything said in a direct message is a command, prefixed or not.
+      start = 0;
     }
 
-    if(message.charAt(0) != this.cc.prefix) {
+    final String arguments = message.substring(start);
+    final String[] split = CommandUtil.split(arguments);
+    if(split[0].isEmpty()) {
+      return;
+    }
+    final DiscordActor actor = new DiscordActor(event.getChannel(), event.getAuthor(), this.trace, this.cc.admins);
+    if(this.router.dispatch(actor, arguments, split)) {
+      return;
+    }
+    if(this.plugins.dispatch(actor, split[0].toLowerCase(), arguments.substring(split[0].length()), lines -> actor.reply(String.join("\n", lines)))) {
       return;
     }
 
-    final String arguments = message.substring(1);
-    final String[] split = CommandContext.split(arguments);
     final String tempName = split[0].toLowerCase();
     final Target targetType = Target.of(tempName);
     final String name = tempName.substring(targetType.substring);
 
     // Let's get physical.
-    @Nullable final PhysicalCommand command = this.cc.commands.get(name);
+    @Nullable final IGuild guild = event.getGuild();
+    final FactoidResolvedEvent resolution = new FactoidResolvedEvent();
+    resolution.begin();
+    @Nullable final PhysicalCommand command = this.cc.resolve(scope, guild == null ? null : Scope.discordGuild(guild.getStringID()), name);
+    resolution.commit(scope, name, targetType.name(), command != null);
     if(command == null) {
       return;
     }
 
+    this.send(event.getChannel(), name, command.responses);
+  }
+
+  private void send(final IChannel channel, final String name, final List<String> responses) {
     final StringBuilder sb = new StringBuilder();
-    for(final Iterator<String> iterator = command.responses.iterator(); iterator.hasNext(); ) {
+    for(final Iterator<String> iterator = responses.iterator(); iterator.hasNext(); ) {
       final String value = iterator.next();
       sb.append(CommandUtil.wrapPrefix(this.cc.prefix, name, value));
       if(iterator.hasNext()) {
         sb.append('\n');
       }
     }
-    RequestBuffer.request(() -> event.getChannel().sendMessage(sb.toString()));
+    this.say(channel, sb.toString());
+  }
+
+  private void say(final IChannel channel, final String message) {
+    this.trace.record(WireTrace.Source.DISCORD_OUT, channel.getLongID(), message);
+    request(channel, message);
+  }
+
+  // Through the request buffer, which holds requests back while Discord rate limits them.
+  private static void request(final IChannel channel, final String message) {
+    final String scope = Scope.discordChannel(channel.getStringID());
+    OutboundEnqueuedEvent.emit(scope, message.length());
+    final long enqueued = System.nanoTime();
+    RequestBuffer.request(() -> {
+      final OutboundFlushedEvent event = new OutboundFlushedEvent();
+      event.begin();
+      final long queued = System.nanoTime() - enqueued;
+      channel.sendMessage(message);
+      event.commit(scope, message.length(), queued);
+    });
+  }
+
+  private static final class DiscordActor implements Actor {
+    private final IChannel channel;
+    private final IUser user;
+    private final WireTrace trace;
+    private final Admins admins;
+
+    DiscordActor(final IChannel channel, final IUser user, final WireTrace trace, final Admins admins) {
+      this.channel = channel;
+      this.user = user;
+      this.trace = trace;
+      this.admins = admins;
+    }
+
+    @Override
+    public String name() {
+      return this.user.getName();
+    }
+
+    @Override
+    public boolean isOperator() {
+      return isOperator(this.channel, this.user);
+    }
+
+    static boolean isOperator(final IChannel channel, final IUser user) {
+      return !channel.isPrivate() && channel.getModifiedPermissions(user).contains(Permissions.MANAGE_MESSAGES);
+    }
+
+    @Override
+    public boolean isAdmin() {
+      return this.admins.discord(this.user.getStringID(), this.roles());
+    }
+
+    @Override
+    public boolean matches(final String mask) {
+      return Ignores.matchesDiscord(mask, this.user.getStringID(), this.roles());
+    }
+
+    private List<String> roles() {
+      @Nullable final IGuild guild = this.channel.isPrivate() ? null : this.channel.getGuild();
+      if(guild == null) {
+        return Collections.emptyList();
+      }
+      final List<String> roles = new ArrayList<>();
+      for(final IRole role : this.user.getRolesForGuild(guild)) {
+        roles.add(role.getStringID());
+      }
+      return roles;
+    }
+
+    @Override
+    public String here() {
+      return Scope.discordChannel(this.channel.getStringID());
+    }
+
+    @Override
+    public void reply(final String message) {
+      final String content = CommandUtil.stripFormatting(message);
+      this.trace.record(WireTrace.Source.DISCORD_OUT, this.channel.getLongID(), content);
+      request(this.channel, content);
+    }
   }
 }
@@ -0,0 +1,119 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.spongepowered.felix.util.Backoff;
+import org.spongepowered.felix.util.Histogram;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Connection health settings, and the health of every platform's link.
+ */
+public final class Health {
+  // how often to measure round-trip time, and how long a measurement may take before the link is considered stalled
+  final long interval;
+  final long timeout;
+  private final long backoffBase;
+  private final long backoffMax;
+  private final List<Link> links = new CopyOnWriteArrayList<>();
+  private final List<Supplier<String>> reports = new CopyOnWriteArrayList<>();
+
+  public Health(final ConfigurationNode config) {
+    this.interval = TimeUnit.SECONDS.toMillis(config.getNode("interval").getLong(30));
+    this.timeout = TimeUnit.SECONDS.toMillis(config.getNode("timeout").getLong(20));
+    this.backoffBase = config.getNode("backoff", "base").getLong(1000);
+    this.backoffMax = config.getNode("backoff", "max").getLong(TimeUnit.MINUTES.toMillis(5));
+  }
+
+  Link link(final String name) {
+    final Link link = new Link(name, new Backoff(this.backoffBase, this.backoffMax));
+    this.links.add(link);
+    return link;
+  }
+
+  List<Link> links() {
+    return this.links;
+  }
+
+  /**
+   * Adds a line to the health report, after the links.
+   *
+   * @param report the line
+   */
+  void report(final Supplier<String> report) {
+    this.reports.add(report);
+  }
+
+  List<Supplier<String>> reports() {
+    return this.reports;
+  }
+
+  /**
+   * The health of a connection to a platform.
+   */
+  static final class Link {
+    final String name;
+    final Backoff backoff;
+    // round-trip times, in microseconds
+    final Histogram rtt = new Histogram();
+    volatile boolean connected;
+    volatile long lastRtt = -1;
+    final AtomicInteger stalls = new AtomicInteger();
+    final AtomicInteger reconnects = new AtomicInteger();
+
+    Link(final String name, final Backoff backoff) {
+      this.name = name;
+      this.backoff = backoff;
+    }
+
+    void rtt(final long micros) {
+      this.rtt.record(micros);
+      this.lastRtt = micros;
+    }
+
+    String summary() {
+      final StringBuilder summary = new StringBuilder(this.name).append(": ").append(this.connected ? "connected" : "disconnected");
+      if(this.rtt.count() > 0) {
+        summary.append(", RTT last ").append(millis(this.lastRtt))
+          .append(" p50 ").append(millis(this.rtt.percentile(50)))
+          .append(" p90 ").append(millis(this.rtt.percentile(90)))
+          .append(" p99 ").append(millis(this.rtt.percentile(99)))
+          .append(" max ").append(millis(this.rtt.max()))
+          .append(" over ").append(this.rtt.count()).append(" samples");
+      }
+      return summary.append(", ").append(this.stalls.get()).append(" stalls, ").append(this.reconnects.get()).append(" reconnects").toString();
+    }
+
+    private static String millis(final long micros) {
+      return String.format("%.1fms", micros / 1000.0);
+    }
+  }
+}
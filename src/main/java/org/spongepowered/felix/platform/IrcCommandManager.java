@@ -24,28 +24,32 @@
  */
 package org.spongepowered.felix.platform;
 
-import com.sk89q.intake.CommandException;
-import com.sk89q.intake.InvalidUsageException;
-import com.sk89q.intake.InvocationCommandException;
-import com.sk89q.intake.context.CommandContext;
-import com.sk89q.intake.context.CommandLocals;
-import com.sk89q.intake.dispatcher.Dispatcher;
-import com.sk89q.intake.fluent.CommandGraph;
-import com.sk89q.intake.parametric.ParametricBuilder;
-import com.sk89q.intake.util.auth.AuthorizationException;
+import org.spongepowered.felix.capture.Capture;
+import org.spongepowered.felix.command.Actor;
+import org.spongepowered.felix.command.Addressing;
+import org.spongepowered.felix.command.Admins;
 import org.spongepowered.felix.command.CommandConfiguration;
 import org.spongepowered.felix.command.CommandUtil;
+import org.spongepowered.felix.command.Ignores;
 import org.spongepowered.felix.command.PhysicalCommand;
-import org.spongepowered.felix.command.ProviderBinding;
+import org.spongepowered.felix.command.Router;
+import org.spongepowered.felix.command.Scope;
 import org.spongepowered.felix.command.Target;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.jfr.FactoidResolvedEvent;
+import org.spongepowered.felix.jfr.InboundMessageEvent;
+import org.spongepowered.felix.jfr.OutboundEnqueuedEvent;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
 import net.engio.mbassy.listener.Handler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.kitteh.irc.client.library.Client;
 import org.kitteh.irc.client.library.element.Channel;
 import org.kitteh.irc.client.library.element.User;
 import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
+import org.kitteh.irc.client.library.event.user.PrivateMessageEvent;
 
+import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -53,68 +57,120 @@ import javax.annotation.Nullable;
 public final class IrcCommandManager {
   private static final Logger LOGGER = LogManager.getLogger();
   private final CommandConfiguration cc;
-  private final Dispatcher dispatcher;
+  private final Router router;
+  private final Plugins plugins;
+  private final History history;
+  private final Addressing addressing;
+  private final Capture capture;
+  // the nick Felix is addressed by, as of the last message
+  @Nullable private String nick;
 
-  public IrcCommandManager(final CommandConfiguration cc) {
+  public IrcCommandManager(final CommandConfiguration cc, final WireTrace trace, final Health health, final Plugins plugins, final History history, final Capture capture) {
     this.cc = cc;
-
-    final ParametricBuilder builder = new ParametricBuilder();
-    builder.addBinding(new ProviderBinding());
-    this.dispatcher = new CommandGraph().builder(builder).getDispatcher();
-    builder.registerMethodsAsCommands(this.dispatcher, new IrcManagementCommands(this.cc));
+    this.router = new ManagementCommands(this.cc, trace, health, plugins, history).router();
+    this.plugins = plugins;
+    this.history = history;
+    this.addressing = new Addressing(cc);
+    this.capture = capture;
   }
 
   @Handler
   public void channelMessage(final ChannelMessageEvent event) {
-    final String message = event.getMessage();
-    if(message.length() < 2) {
-      return;
-    }
+    this.channelMessage(event.getChannel(), event.getActor(), event.getMessage());
+  }
 
-    if(message.charAt(0) != this.cc.prefix) {
-      return;
+  // Also called directly by the replay driver, which has no events to hand.
+  void channelMessage(final Channel channel, final User user, final String message) {
+    final InboundMessageEvent inbound = new InboundMessageEvent();
+    inbound.begin();
+    final String scope = Scope.irc(channel.getName());
+    if(!this.ignored(user)) {
+      this.process(channel, user, scope, message);
+      // after answering, so that the message does not come up in its own answer
+      this.history.record(scope, user.getNick(), message);
     }
+    inbound.commit(scope, user.getNick(), message.length());
+  }
 
-    final Channel channel = event.getChannel();
-    final User user = event.getActor();
-
-    if(this.cc.ignored(user.getNick())) {
+  @Handler
+  public void privateMessage(final PrivateMessageEvent event) {
+    if(!event.isToClient() || this.cc.following()) {
       return;
     }
+    this.privateMessage(event.getActor(), event.getMessage());
+  }
 
-    final String arguments = message.substring(1);
-    final String[] split = CommandContext.split(arguments);
-    if(split.length < 1) {
-      return;
+  void privateMessage(final User user, final String message) {
+    final InboundMessageEvent inbound = new InboundMessageEvent();
+    inbound.begin();
+    if(!this.ignored(user)) {
+      this.process(null, user, null, message);
     }
+    inbound.commit(null, user.getNick(), message.length());
+  }
+
+  // Answers a message in a channel, or sent privately when there is no channel.
+  // Admins are never ignored, so that they can always undo an ignore.
+  private boolean ignored(final User user) {
+    return this.cc.ignores.ignoredIrc(user.getNick(), user.getUserString(), user.getHost(), user.getAccount().orElse(null)) && !isAdmin(this.cc.admins, user);
+  }
 
-    if(this.dispatcher.contains(split[0])) {
-      final CommandLocals namespace = new CommandLocals();
-      namespace.put(Client.class, user.getClient());
-      namespace.put(Channel.class, channel);
-      namespace.put(User.class, user);
-
-      try {
-        this.dispatcher.call(arguments, namespace, new String[0]);
-        LOGGER.info("Processed command '{}' from user '{}'", arguments, user.getName());
-      } catch(final AuthorizationException ignored) {
-        LOGGER.info("User was not permitted to run " + arguments);
-      } catch(final InvocationCommandException e) {
-        LOGGER.warn("Failed to execute a command", e);
-        user.sendNotice("An unexpected error occurred while executing the command.");
-      } catch(final InvalidUsageException e) {
-        if(e.isFullHelpSuggested()) {
-          user.sendNotice(e.getSimpleUsageString(String.valueOf(this.cc.prefix)));
+  private void process(@Nullable final Channel channel, final User user, @Nullable final String scope, final String message) {
+    final String nick = user.getClient().getNick();
+    if(!nick.equals(this.nick)) {
+      this.nick = nick;
+      this.addressing.names(Collections.singleton(nick), Collections.emptySet());
+    }
+    int start = this.addressing.match(scope, message);
+    if(this.capture.enabled()) {
+      final boolean command = start != -1 || channel == null;
+      this.capture.record(
+        channel == null ? Capture.Source.IRC_PRIVATE : Capture.Source.IRC,
+        channel == null ? null : channel.getName(),
+        null,
+        user.getNick(),
+        user.getNick(),
+        command,
+        command && channel != null && IrcActor.isOperator(channel, user),
+        message
+      );
+    }
+    if(start == -1) {
+      if(channel != null) {
+        for(final String response : this.cc.triggers.fire(scope, null, message)) {
+          send(channel, scope, response);
         }
-      } catch(final CommandException e) {
-        user.sendNotice("error: " + e.getMessage());
+        return;
       }
+      // Everything said privately is a command, prefixed or not.
+      start = 0;
+    }
+
+    final String arguments = message.substring(start);
+    final String[] split = CommandUtil.split(arguments);
+    if(split[0].isEmpty()) {
+      return;
+    }
+    final Actor actor = channel == null ? new PrivateActor(user, this.cc.admins) : new IrcActor(channel, user, this.cc.admins);
+    if(this.router.dispatch(actor, arguments, split)) {
       return;
     }
 
     final java.util.Optional<User> clientUser = user.getClient().getUser();
     if(clientUser.isPresent() && clientUser.get().equals(user)) {
-      LOGGER.warn("Skipping dynamic command for '" + split[0] + "' - " + user.getName() + " is an instance of Felix");
+      LOGGER.warn("Skipping dynamic command for '{}' - {} is an instance of Felix", split[0], user.getName());
+      return;
+    }
+
+    if(this.plugins.dispatch(actor, split[0].toLowerCase(), arguments.substring(split[0].length()), lines -> {
+      for(final String line : lines) {
+        if(channel == null) {
+          user.sendMessage(line);
+        } else {
+          send(channel, scope, line);
+        }
+      }
+    })) {
       return;
     }
 
@@ -124,7 +180,10 @@ public final class IrcCommandManager {
     final String name = tempName.substring(targetType.substring);
     final String target = split.length > 1 ? CommandUtil.arrayToString(split, 1) : user.getNick();
 
-    @Nullable final PhysicalCommand command = this.cc.get(name);
+    final FactoidResolvedEvent resolution = new FactoidResolvedEvent();
+    resolution.begin();
+    @Nullable final PhysicalCommand command = scope == null ? this.cc.get(name) : this.cc.resolve(scope, null, name);
+    resolution.commit(scope, name, targetType.name(), command != null);
 
     // Verify that we have a command that we can process.
     if(command == null) {
@@ -133,12 +192,20 @@ public final class IrcCommandManager {
 
     final List<String> values = command.responses;
 
+    // Privately, every target is the requestor.
+    if(channel == null) {
+      for(final String value : values) {
+        user.sendMessage(CommandUtil.wrapPrefix(this.cc.prefix, name, value));
+      }
+      return;
+    }
+
     // Determine which method we should use to send the value to the user(s).
     switch(targetType) {
       // Send a message to the channel, without a specific target.
       case DEFAULT:
         for(final String value : values) {
-          channel.sendMessage(CommandUtil.wrapPrefix(this.cc.prefix, name, value));
+          send(channel, scope, CommandUtil.wrapPrefix(this.cc.prefix, name, value));
         }
         break;
       // Send a message to the channel, prefixed with the target's name.
@@ -154,7 +221,7 @@ public final class IrcCommandManager {
           victim = victim.trim();
 
           for(final String value : values) {
-            channel.sendMessage(victim + ": " + CommandUtil.wrapPrefix(this.cc.prefix, name, value));
+            send(channel, scope, victim + ": " + CommandUtil.wrapPrefix(this.cc.prefix, name, value));
           }
         }
         break;
@@ -173,7 +240,9 @@ public final class IrcCommandManager {
           // Ensure that we actually have a target with this name.
           channel.getUser(victim).ifPresent(victimObj -> {
             for(final String value : values) {
-              victimObj.sendNotice(CommandUtil.wrapPrefix(this.cc.prefix, name, value));
+              final String notice = CommandUtil.wrapPrefix(this.cc.prefix, name, value);
+              OutboundEnqueuedEvent.emit(scope, notice.length());
+              victimObj.sendNotice(notice);
             }
           });
         }
@@ -181,9 +250,113 @@ public final class IrcCommandManager {
       // Send a notice to the requestor.
       case SELF:
         for(final String value : values) {
-          user.sendMultiLineNotice(CommandUtil.wrapPrefix(this.cc.prefix, name, value));
+          final String notice = CommandUtil.wrapPrefix(this.cc.prefix, name, value);
+          OutboundEnqueuedEvent.emit(scope, notice.length());
+          user.sendMultiLineNotice(notice);
         }
         break;
     }
   }
+
+  // Queues a message for the channel, which the client sends as its rate limit allows.
+  private static void send(final Channel channel, final String scope, final String message) {
+    OutboundEnqueuedEvent.emit(scope, message.length());
+    channel.sendMessage(message);
+  }
+
+  private static boolean isAdmin(final Admins admins, final User user) {
+    return admins.irc(user.getNick(), user.getUserString(), user.getHost(), user.getAccount().orElse(null));
+  }
+
+  private static boolean matches(final String mask, final User user) {
+    return Ignores.matchesIrc(mask, user.getNick(), user.getUserString(), user.getHost(), user.getAccount().orElse(null));
+  }
+
+  private static final class PrivateActor implements Actor {
+    private final User user;
+    private final Admins admins;
+
+    PrivateActor(final User user, final Admins admins) {
+      this.user = user;
+      this.admins = admins;
+    }
+
+    @Override
+    public String name() {
+      return this.user.getNick();
+    }
+
+    @Override
+    public boolean isOperator() {
+      return false;
+    }
+
+    @Override
+    public boolean isAdmin() {
+      return IrcCommandManager.isAdmin(this.admins, this.user);
+    }
+
+    @Override
+    public boolean matches(final String mask) {
+      return IrcCommandManager.matches(mask, this.user);
+    }
+
+    @Nullable
+    @Override
+    public String here() {
+      return null;
+    }
+
+    @Override
+    public void reply(final String message) {
+      this.user.sendMultiLineMessage(message);
+    }
+  }
+
+  private static final class IrcActor implements Actor {
+    private final Channel channel;
+    private final User user;
+    private final Admins admins;
+
+    IrcActor(final Channel channel, final User user, final Admins admins) {
+      this.channel = channel;
+      this.user = user;
+      this.admins = admins;
+    }
+
+    @Override
+    public String name() {
+      return this.user.getNick();
+    }
+
+    @Override
+    public boolean isOperator() {
+      return isOperator(this.channel, this.user);
+    }
+
+    static boolean isOperator(final Channel channel, final User user) {
+      return channel.getUserModes(user).map(modes -> modes.stream().anyMatch(mode -> mode.getNickPrefix() == '@')).orElse(false);
+    }
+
+    @Override
+    public boolean isAdmin() {
+      return IrcCommandManager.isAdmin(this.admins, this.user);
+    }
+
+    @Override
+    public boolean matches(final String mask) {
+      return IrcCommandManager.matches(mask, this.user);
+    }
+
+    @Override
+    public String here() {
+      return Scope.irc(this.channel.getName());
+    }
+
+    @Override
+    public void reply(final String message) {
+      OutboundEnqueuedEvent.emit(Scope.irc(this.channel.getName()), message.length());
+      this.user.sendMultiLineNotice(message);
+    }
+  }
 }
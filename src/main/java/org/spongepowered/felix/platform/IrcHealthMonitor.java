@@ -0,0 +1,133 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import net.engio.mbassy.listener.Handler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.event.client.ClientConnectionClosedEvent;
+import org.kitteh.irc.client.library.event.client.ClientReceiveCommandEvent;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Measures round-trip time to the IRC server with periodic {@code PING}s, reconnects when one goes unanswered, and
+ * spaces out reconnection attempts with the link's backoff.
+ *
+ * <p>A half-open connection accepts writes and never answers, so an unanswered {@code PING} is the only sign of it.</p>
+ */
+final class IrcHealthMonitor {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final String TOKEN_PREFIX = "felix-health-";
+  // how often to check for a stall, which bounds how late one can be noticed
+  private static final long TICK = TimeUnit.SECONDS.toMillis(1);
+  private final Client client;
+  private final Health health;
+  private final Health.Link link;
+  // the token of the PING awaiting a reply, if any, and when it and the last PING were sent
+  @Nullable private volatile String token;
+  private volatile long sentAt;
+  private volatile long lastPing;
+  // whether a PONG has been received since the last registration
+  private volatile boolean healthy;
+
+  IrcHealthMonitor(final Client client, final Health health, final ScheduledExecutorService scheduler) {
+    this.client = client;
+    this.health = health;
+    this.link = health.link("IRC");
+    scheduler.scheduleWithFixedDelay(this::tick, TICK, TICK, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Called once the client has registered with the server.
+   */
+  void registered() {
+    this.token = null;
+    this.healthy = false;
+    this.lastPing = System.nanoTime();
+    this.link.connected = true;
+  }
+
+  private void tick() {
+    if(!this.link.connected) {
+      return;
+    }
+
+    final long now = System.nanoTime();
+    if(this.token != null) {
+      final long waited = TimeUnit.NANOSECONDS.toMillis(now - this.sentAt);
+      if(waited > this.health.timeout) {
+        LOGGER.warn("The IRC server has not answered a PING for {}ms, reconnecting", waited);
+        this.token = null;
+        this.link.connected = false;
+        this.link.stalls.incrementAndGet();
+        this.client.reconnect("Connection stalled");
+      }
+    } else if(TimeUnit.NANOSECONDS.toMillis(now - this.lastPing) >= this.health.interval) {
+      final String token = TOKEN_PREFIX + now;
+      this.sentAt = now;
+      this.lastPing = now;
+      this.token = token;
+      this.client.sendRawLineImmediately("PING :" + token);
+    }
+  }
+
+  @Handler
+  public void onCommand(final ClientReceiveCommandEvent event) {
+    if(!event.getCommand().equals("PONG")) {
+      return;
+    }
+    final List<String> parameters = event.getParameters();
+    @Nullable final String token = this.token;
+    if(token == null || parameters.isEmpty() || !parameters.get(parameters.size() - 1).equals(token)) {
+      return;
+    }
+
+    this.token = null;
+    this.link.rtt(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - this.sentAt));
+    if(!this.healthy) {
+      // Only a connection which has answered a PING resets the backoff, so one which keeps stalling backs off.
+      this.healthy = true;
+      this.link.backoff.reset();
+    }
+  }
+
+  @Handler
+  public void onClosed(final ClientConnectionClosedEvent event) {
+    this.token = null;
+    this.link.connected = false;
+    if(event.canAttemptReconnect()) {
+      final long delay = this.link.backoff.next();
+      this.link.reconnects.incrementAndGet();
+      event.setReconnectionDelay((int) Math.min(Integer.MAX_VALUE, delay));
+      LOGGER.info("Lost the IRC connection, reconnecting in {}ms (attempt {})", delay, this.link.backoff.attempts());
+    }
+  }
+}
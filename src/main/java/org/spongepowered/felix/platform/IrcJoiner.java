@@ -0,0 +1,377 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import net.engio.mbassy.listener.Handler;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.event.channel.ChannelJoinEvent;
+import org.kitteh.irc.client.library.event.client.ClientReceiveNumericEvent;
+import org.spongepowered.felix.util.Backoff;
+import org.spongepowered.felix.util.Histogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Joins the configured channels each time the client registers with the server, several to a {@code JOIN} line.
+ *
+ * <p>One line is outstanding at a time: the next is sent once every channel of the last has been joined or refused, or
+ * the line has timed out, and then only after the current interval. The interval doubles whenever the server signals
+ * throttling, and shrinks back towards {@code join.interval} with every line answered without it. A channel refused
+ * for a reason which may pass, such as a ban or a full channel, is retried with backoff.</p>
+ *
+ * <p>Every change of state happens on the scheduler's thread, so none of it needs locking.</p>
+ */
+final class IrcJoiner {
+  private static final Logger LOGGER = LogManager.getLogger();
+  // the longest line a server accepts, without its CRLF
+  private static final int LINE_LENGTH = 510;
+  private static final String JOIN = "JOIN ";
+  private static final int FAILURES_SHOWN = 5;
+  private final Client client;
+  private final ScheduledExecutorService scheduler;
+  // lower-cased name -> channel, in configured order
+  private final Map<String, Membership> channels = new LinkedHashMap<>();
+  private final int batch;
+  private final long baseInterval;
+  private final long maxInterval;
+  private final long timeout;
+  private final long retryBase;
+  private final long retryMax;
+  // join latencies, in microseconds
+  private final Histogram latency = new Histogram();
+  private final Deque<Membership> pending = new ArrayDeque<>();
+  // the channels of the outstanding line
+  private final List<Membership> sent = new ArrayList<>();
+  // bumped on every registration, so that timeouts and retries left over from a lost connection are dropped
+  private int generation;
+  private int line;
+  private boolean throttledLine;
+  @Nullable private ScheduledFuture<?> next;
+  private volatile long interval;
+  private volatile int throttles;
+
+  IrcJoiner(final Client client, final List<String> channels, final ScheduledExecutorService scheduler, final ConfigurationNode config) {
+    this.client = client;
+    this.scheduler = scheduler;
+    this.batch = Math.max(1, config.getNode("batch").getInt(10));
+    this.baseInterval = Math.max(0, config.getNode("interval").getLong(1000));
+    this.maxInterval = Math.max(this.baseInterval, config.getNode("maxInterval").getLong(TimeUnit.MINUTES.toMillis(1)));
+    this.timeout = config.getNode("timeout").getLong(TimeUnit.SECONDS.toMillis(15));
+    this.retryBase = config.getNode("retry", "base").getLong(TimeUnit.SECONDS.toMillis(30));
+    this.retryMax = config.getNode("retry", "max").getLong(TimeUnit.MINUTES.toMillis(30));
+    this.interval = this.baseInterval;
+    for(final String channel : channels) {
+      final String[] split = channel.trim().split(" ", 2);
+      this.channels.putIfAbsent(split[0].toLowerCase(Locale.ENGLISH), new Membership(split[0], split.length > 1 ? split[1].trim() : null));
+    }
+  }
+
+  /**
+   * Joins every channel, forgetting any joins in progress. Called on every registration.
+   */
+  void joinAll() {
+    this.scheduler.execute(() -> {
+      this.generation++;
+      this.pending.clear();
+      this.sent.clear();
+      if(this.next != null) {
+        this.next.cancel(false);
+        this.next = null;
+      }
+      this.interval = this.baseInterval;
+      for(final Membership channel : this.channels.values()) {
+        channel.state = State.PENDING;
+        channel.backoff.reset();
+        this.pending.add(channel);
+      }
+      this.pump();
+    });
+  }
+
+  // Sends the next line, unless one is outstanding or the interval since the last has not passed.
+  private void pump() {
+    if(!this.sent.isEmpty() || this.next != null || this.pending.isEmpty()) {
+      return;
+    }
+
+    // Keyed channels go first, as keys are matched to the channels in order.
+    final List<Membership> keyed = new ArrayList<>();
+    final List<Membership> open = new ArrayList<>();
+    int names = 0;
+    int keys = 0;
+    while(!this.pending.isEmpty() && keyed.size() + open.size() < this.batch) {
+      final Membership channel = this.pending.peekFirst();
+      final int namesAfter = names + (names == 0 ? 0 : 1) + channel.name.length();
+      final int keysAfter = channel.key == null ? keys : keys + (keys == 0 ? 0 : 1) + channel.key.length();
+      if(JOIN.length() + namesAfter + (keysAfter == 0 ? 0 : 1 + keysAfter) > LINE_LENGTH && names > 0) {
+        break;
+      }
+      this.pending.removeFirst();
+      names = namesAfter;
+      keys = keysAfter;
+      (channel.key == null ? open : keyed).add(channel);
+    }
+
+    keyed.addAll(open);
+    final StringBuilder nameList = new StringBuilder();
+    final StringBuilder keyList = new StringBuilder();
+    final long now = System.nanoTime();
+    for(final Membership channel : keyed) {
+      if(nameList.length() > 0) {
+        nameList.append(',');
+      }
+      nameList.append(channel.name);
+      if(channel.key != null) {
+        if(keyList.length() > 0) {
+          keyList.append(',');
+        }
+        keyList.append(channel.key);
+      }
+      channel.state = State.SENT;
+      channel.sentAt = now;
+      channel.attempts++;
+      this.sent.add(channel);
+    }
+    this.throttledLine = false;
+    this.client.sendRawLineImmediately(JOIN + nameList + (keyList.length() == 0 ? "" : " " + keyList));
+
+    final int generation = this.generation;
+    final int line = ++this.line;
+    this.scheduler.schedule(() -> {
+      if(this.generation == generation && this.line == line && !this.sent.isEmpty()) {
+        // A server which silently delays commands is throttling as surely as one which says so.
+        LOGGER.warn("No reply to joining {} channels within {}ms, slowing down", this.sent.size(), this.timeout);
+        this.throttled();
+      }
+    }, this.timeout, TimeUnit.MILLISECONDS);
+  }
+
+  // Requeues the channels of the outstanding line, and backs off.
+  private void throttled() {
+    for(int i = this.sent.size() - 1; i >= 0; i--) {
+      final Membership channel = this.sent.get(i);
+      channel.state = State.PENDING;
+      this.pending.addFirst(channel);
+    }
+    this.sent.clear();
+    this.throttles++;
+    this.throttledLine = true;
+    this.interval = Math.min(this.maxInterval, Math.max(1, this.interval) * 2);
+    this.answered();
+  }
+
+  private void answered() {
+    if(!this.sent.isEmpty()) {
+      return;
+    }
+    if(!this.throttledLine) {
+      this.interval = Math.max(this.baseInterval, this.interval * 3 / 4);
+    }
+    if(this.next != null) {
+      this.next.cancel(false);
+    }
+    final int generation = this.generation;
+    this.next = this.scheduler.schedule(() -> {
+      if(this.generation == generation) {
+        this.next = null;
+        this.pump();
+      }
+    }, this.interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Handler
+  public void onJoin(final ChannelJoinEvent event) {
+    if(!event.getActor().getNick().equals(event.getClient().getNick())) {
+      return;
+    }
+    final long now = System.nanoTime();
+    final String name = event.getChannel().getName().toLowerCase(Locale.ENGLISH);
+    this.scheduler.execute(() -> {
+      @Nullable final Membership channel = this.channels.get(name);
+      if(channel == null) {
+        return;
+      }
+      if(channel.state == State.SENT) {
+        this.latency.record(TimeUnit.NANOSECONDS.toMicros(now - channel.sentAt));
+      }
+      channel.state = State.JOINED;
+      channel.failure = null;
+      channel.backoff.reset();
+      this.pending.remove(channel);
+      if(this.sent.remove(channel)) {
+        this.answered();
+      }
+    });
+  }
+
+  @Handler
+  public void onNumeric(final ClientReceiveNumericEvent event) {
+    final int numeric = event.getNumeric();
+    @Nullable final Refusal refusal = Refusal.of(numeric);
+    if(refusal == null) {
+      return;
+    }
+    final List<String> parameters = event.getParameters();
+    // <our nick> <channel or command> [...] :<reason>
+    final String target = parameters.size() > 1 ? parameters.get(1).toLowerCase(Locale.ENGLISH) : "";
+    final String reason = parameters.isEmpty() ? String.valueOf(numeric) : parameters.get(parameters.size() - 1);
+    this.scheduler.execute(() -> {
+      @Nullable final Membership channel = this.channels.get(target);
+      if(refusal == Refusal.THROTTLED) {
+        if(channel != null || target.equals("join")) {
+          LOGGER.warn("The IRC server is throttling joins ({}), slowing down", reason);
+          this.throttled();
+        }
+        return;
+      }
+      if(channel == null || !this.sent.remove(channel)) {
+        return;
+      }
+      channel.failure = reason;
+      if(refusal == Refusal.PERMANENT) {
+        channel.state = State.REFUSED;
+        LOGGER.warn("Could not join {}, and will not retry: {}", channel.name, reason);
+      } else {
+        channel.state = State.FAILED;
+        final long delay = channel.backoff.next();
+        LOGGER.warn("Could not join {}, retrying in {}ms: {}", channel.name, delay, reason);
+        final int generation = this.generation;
+        this.scheduler.schedule(() -> {
+          if(this.generation == generation && channel.state == State.FAILED) {
+            channel.state = State.PENDING;
+            this.pending.add(channel);
+            this.pump();
+          }
+        }, delay, TimeUnit.MILLISECONDS);
+      }
+      this.answered();
+    });
+  }
+
+  String summary() {
+    int joined = 0;
+    int waiting = 0;
+    final List<String> failures = new ArrayList<>();
+    for(final Membership channel : this.channels.values()) {
+      final State state = channel.state;
+      if(state == State.JOINED) {
+        joined++;
+      } else if(state == State.PENDING || state == State.SENT) {
+        waiting++;
+      } else if(failures.size() < FAILURES_SHOWN) {
+        failures.add(channel.name + " (" + channel.failure + ", " + channel.attempts + (channel.attempts == 1 ? " attempt" : " attempts") + (state == State.REFUSED ? ", gave up)" : ")"));
+      }
+    }
+    final int failed = this.channels.size() - joined - waiting;
+    final StringBuilder summary = new StringBuilder("IRC joins: ").append(joined).append(" of ").append(this.channels.size()).append(" channels joined");
+    if(this.latency.count() > 0) {
+      summary.append(", latency p50 ").append(millis(this.latency.percentile(50)))
+        .append(" p90 ").append(millis(this.latency.percentile(90)))
+        .append(" max ").append(millis(this.latency.max()));
+    }
+    summary.append(", ").append(waiting).append(" waiting, ").append(failed).append(" failing, JOIN interval ").append(this.interval).append("ms, throttled ").append(this.throttles).append(" times");
+    if(!failures.isEmpty()) {
+      summary.append(". Failing: ").append(String.join(", ", failures)).append(failed > failures.size() ? ", ..." : "");
+    }
+    return summary.toString();
+  }
+
+  private static String millis(final long micros) {
+    return String.format("%.1fms", micros / 1000.0);
+  }
+
+  private enum State {
+    PENDING,
+    SENT,
+    JOINED,
+    // refused, to be retried
+    FAILED,
+    // refused for good
+    REFUSED
+  }
+
+  private enum Refusal {
+    // worth retrying later: the channel may be unbanned, uninvited, emptied or unlocked
+    TRANSIENT,
+    // joining again would be refused again
+    PERMANENT,
+    // the server wants us to slow down
+    THROTTLED;
+
+    @Nullable
+    static Refusal of(final int numeric) {
+      switch(numeric) {
+        case 263: // RPL_TRYAGAIN
+        case 439: // ERR_TARGETTOOFAST
+          return THROTTLED;
+        case 403: // ERR_NOSUCHCHANNEL
+        case 405: // ERR_TOOMANYCHANNELS
+        case 476: // ERR_BADCHANMASK
+        case 479: // ERR_BADCHANNAME
+          return PERMANENT;
+        case 437: // ERR_UNAVAILRESOURCE
+        case 470: // ERR_LINKCHANNEL
+        case 471: // ERR_CHANNELISFULL
+        case 473: // ERR_INVITEONLYCHAN
+        case 474: // ERR_BANNEDFROMCHAN
+        case 475: // ERR_BADCHANNELKEY
+        case 477: // ERR_NEEDREGGEDNICK
+        case 489: // ERR_SECUREONLYCHAN
+          return TRANSIENT;
+        default:
+          return null;
+      }
+    }
+  }
+
+  private final class Membership {
+    final String name;
+    @Nullable final String key;
+    final Backoff backoff = new Backoff(IrcJoiner.this.retryBase, IrcJoiner.this.retryMax);
+    volatile State state = State.PENDING;
+    volatile int attempts;
+    @Nullable volatile String failure;
+    long sentAt;
+
+    Membership(final String name, @Nullable final String key) {
+      this.name = name;
+      this.key = key;
+    }
+  }
+}
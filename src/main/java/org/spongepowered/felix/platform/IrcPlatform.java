@@ -24,24 +24,58 @@
  */
 package org.spongepowered.felix.platform;
 
+import org.spongepowered.felix.capture.Capture;
 import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.command.CommandUtil;
+import org.spongepowered.felix.command.Scope;
+import org.spongepowered.felix.history.History;
+import net.engio.mbassy.listener.Handler;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.Types;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.event.channel.ChannelJoinEvent;
+import org.kitteh.irc.client.library.event.client.ClientReceiveNumericEvent;
 import org.kitteh.irc.client.library.util.AcceptingTrustManagerFactory;
+import org.spongepowered.felix.jfr.OutboundEnqueuedEvent;
+import org.spongepowered.felix.jfr.OutboundFlushedEvent;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.WireTrace;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 public final class IrcPlatform {
   private static final Logger LOGGER = LogManager.getLogger();
+  // how many traced lines to log when the client reports an exception, and how often
+  private static final int TRACE_DUMP_LINES = 200;
+  private static final long TRACE_DUMP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
   private final Client client;
+  private final CommandConfiguration cc;
+  private final String nick;
+  private final IrcJoiner joiner;
+  private final IrcHealthMonitor health;
+  // lower-cased names of the configured channels not yet joined
+  private final Set<String> joining = ConcurrentHashMap.newKeySet();
+  private final CompletableFuture<Void> ready = new CompletableFuture<>();
+  private volatile boolean registered;
 
-  public IrcPlatform(final ConfigurationNode config, final CommandConfiguration dcm) {
+  public IrcPlatform(final ConfigurationNode config, final CommandConfiguration dcm, final WireTrace trace, final Health health, final Plugins plugins, final History history, final Capture capture) {
+    this.cc = dcm;
+    this.nick = config.getNode("nick").getString();
     this.client = Client.builder()
       .name("felix")
-      .nick(config.getNode("nick").getString())
+      .nick(this.nick)
       .serverHost(config.getNode("host").getString())
       .serverPort(config.getNode("port").getInt())
       .secure(config.getNode("ssl").getBoolean())
@@ -53,14 +87,110 @@ public final class IrcPlatform {
         } else {
           LOGGER.error("Client Exception", e);
         }
+        if(trace.dumpAtMostEvery(TRACE_DUMP_LINES, TRACE_DUMP_INTERVAL, line -> LOGGER.error("trace: {}", line))) {
+          LOGGER.error("End of the wire trace leading up to the exception above");
+        }
+      })
+      .outputListener(s -> {
+        trace.record(WireTrace.Source.IRC_OUT, 0, s);
+        flushed(s);
       })
-      .outputListener(s -> LOGGER.debug("> " + s))
-      .inputListener(s -> LOGGER.debug("< " + s))
+      .inputListener(s -> trace.record(WireTrace.Source.IRC_IN, 0, s))
       .build();
+    final List<String> channels = config.getNode("channels").getList(Types::asString);
+    for(final String channel : channels) {
+      // a channel may be followed by its key
+      this.joining.add(channel.trim().split(" ", 2)[0].toLowerCase(Locale.ENGLISH));
+    }
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "Felix IRC scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.joiner = new IrcJoiner(this.client, channels, scheduler, config.getNode("join"));
+    health.report(this.joiner::summary);
+    this.health = new IrcHealthMonitor(this.client, health, scheduler);
+    this.client.getEventManager().registerEventListener(new IrcCommandManager(dcm, trace, health, plugins, history, capture));
+    this.client.getEventManager().registerEventListener(this.health);
+    this.client.getEventManager().registerEventListener(this.joiner);
+    this.client.getEventManager().registerEventListener(this);
+    dcm.timers.addAnnouncer((scope, name, command) -> {
+      @Nullable final String channel = Scope.ircChannel(scope);
+      if(channel == null) {
+        return false;
+      }
+      // Through the client's message queue, which paces every line sent.
+      this.client.getChannel(channel).ifPresent(target -> {
+        for(final String response : command.responses) {
+          final String message = CommandUtil.wrapPrefix(dcm.prefix, name, response);
+          OutboundEnqueuedEvent.emit(scope, message.length());
+          target.sendMessage(message);
+        }
+      });
+      return true;
+    });
     this.client.connect();
-    this.client.getEventManager().registerEventListener(new IrcCommandManager(dcm));
-    for(final String channel : config.getNode("channels").getList(Types::asString)) {
-      this.client.addChannel(channel);
+    if(channels.isEmpty()) {
+      this.ready.complete(null);
+    }
+  }
+
+  /**
+   * Gets a future completed once every configured channel has been joined.
+   *
+   * @return the future
+   */
+  public CompletableFuture<Void> ready() {
+    return this.ready;
+  }
+
+  @Handler
+  public void onNumeric(final ClientReceiveNumericEvent event) {
+    // RPL_WELCOME: registered, on the first connection and on every reconnection
+    if(event.getNumeric() == 1) {
+      this.registered = true;
+      this.health.registered();
+      // A hot standby stays connected, but only joins once it takes over.
+      if(!this.cc.following()) {
+        this.joiner.joinAll();
+      }
+    }
+  }
+
+  /**
+   * Joins the configured channels, once this instance has taken over from the primary.
+   */
+  public void activate() {
+    if(this.registered) {
+      // The server gave the standby another nick while the primary held it.
+      if(!this.client.getNick().equals(this.nick)) {
+        this.client.setNick(this.nick);
+      }
+      this.joiner.joinAll();
+    }
+  }
+
+  @Handler
+  public void onJoin(final ChannelJoinEvent event) {
+    if(event.getActor().getNick().equals(event.getClient().getNick())
+      && this.joining.remove(event.getChannel().getName().toLowerCase(Locale.ENGLISH))
+      && this.joining.isEmpty()) {
+      this.ready.complete(null);
+    }
+  }
+
+  // The client only reports lines as they are written, so the time spent queued is unknown.
+  private static void flushed(final String line) {
+    final OutboundFlushedEvent event = new OutboundFlushedEvent();
+    if(!event.isEnabled() || !(line.startsWith("PRIVMSG ") || line.startsWith("NOTICE "))) {
+      return;
+    }
+    final int target = line.indexOf(' ') + 1;
+    final int end = line.indexOf(' ', target);
+    if(end == -1) {
+      return;
     }
+    final int text = line.indexOf(':', end);
+    event.commit(Scope.irc(line.substring(target, end)), text == -1 ? 0 : line.length() - text - 1, 0);
   }
 }
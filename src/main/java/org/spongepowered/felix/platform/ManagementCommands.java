@@ -0,0 +1,1273 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.platform;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.kitteh.irc.client.library.util.Format;
+import org.spongepowered.felix.command.Actor;
+import org.spongepowered.felix.command.AliasIndex;
+import org.spongepowered.felix.command.Arguments;
+import org.spongepowered.felix.command.CommandConfiguration;
+import org.spongepowered.felix.command.CommandSnapshot;
+import org.spongepowered.felix.command.CommandUtil;
+import org.spongepowered.felix.command.Ignores;
+import org.spongepowered.felix.command.FactoidFormat;
+import org.spongepowered.felix.command.FactoidFormats;
+import org.spongepowered.felix.command.PhysicalCommand;
+import org.spongepowered.felix.command.Router;
+import org.spongepowered.felix.command.Schedule;
+import org.spongepowered.felix.command.Scope;
+import org.spongepowered.felix.command.SearchIndex;
+import org.spongepowered.felix.command.Trigger;
+import org.spongepowered.felix.history.History;
+import org.spongepowered.felix.plugin.Plugins;
+import org.spongepowered.felix.util.Cron;
+import org.spongepowered.felix.util.StringUtil;
+import org.spongepowered.felix.util.WireTrace;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+final class ManagementCommands {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final int SEARCH_PAGE_SIZE = 10;
+  private static final int LIST_PAGE_SIZE = 60;
+  // the longest line of a listing, leaving room for the rest of an IRC notice
+  private static final int LIST_LINE_LENGTH = 400;
+  private static final int HISTORY_LINES = 10;
+  private static final int DIFF_NAMES = 20;
+  // grabbed quotes are commands named quote.1, quote.2 and so on, in the scope they were grabbed in
+  private static final String QUOTE = "quote.";
+  private final CommandConfiguration cc;
+  private final WireTrace trace;
+  private final Health health;
+  private final Plugins plugins;
+  private final History history;
+
+  ManagementCommands(final CommandConfiguration cc, final WireTrace trace, final Health health, final Plugins plugins, final History history) {
+    this.cc = cc;
+    this.history = history;
+    this.trace = trace;
+    this.health = health;
+    this.plugins = plugins;
+  }
+
+  Router router() {
+    return new Router(this.cc.prefix)
+      .register(new String[]{"cmdinfo"}, "[-s <scope>] <name>", "s", "", this::commandInfo)
+      .register(new String[]{"addcmd", "setcmd"}, "[-v] [-s <scope>] [-t <ttl>] [-a <schedule>] <name> [value]", "sta", "v", this::setCommand)
+      .register(new String[]{"delcmd", "unsetcmd"}, "[-i <index>] [-s <scope>] <name>", "is", "", this::delCommand)
+      .register(new String[]{"addalias"}, "[-s <scope>] <command name> <alias names...>", "s", "", this::addAlias)
+      .register(new String[]{"search"}, "[-p <page>] <terms...>", "p", "", this::search)
+      .register(new String[]{"cmdlist"}, "[-s <scope>] [-p <page>] [prefix]", "sp", "", this::list)
+      .register(new String[]{"history"}, "[-s <scope>] [name]", "s", "", this::history)
+      .register(new String[]{"diff"}, "<from version> [to version]", "", "", this::diff)
+      .register(new String[]{"rollback"}, "[-s <scope>] <version> [name]", "s", "", this::rollback)
+      .register(new String[]{"wiredump"}, "[lines]", "", "", this::wireDump)
+      .register(new String[]{"health"}, "", "", "", this::health)
+      .register(new String[]{"plugins"}, "", "", "", this::plugins)
+      .register(new String[]{"addtrigger"}, "[-r] [-s <scope>] [-c <cooldown>] <name> <pattern> <response...>", "sc", "r", this::addTrigger)
+      .register(new String[]{"deltrigger"}, "<name>", "", "", this::delTrigger)
+      .register(new String[]{"triggers"}, "[name]", "", "", this::triggers)
+      .register(new String[]{"ignore"}, "<mask>", "", "", this::ignore)
+      .register(new String[]{"unignore"}, "<mask>", "", "", this::unignore)
+      .register(new String[]{"ignores"}, "[mask]", "", "", this::ignores)
+      .register(new String[]{"last"}, "<nick>", "", "", this::last)
+      .register(new String[]{"seen"}, "<nick>", "", "", this::seen)
+      .register(new String[]{"grab"}, "<nick> [words...]", "", "", this::grab)
+      .register(new String[]{"quote"}, "[number]", "", "", this::quote)
+      .register(new String[]{"import"}, "[-f <format>] [-s <scope>] <dump>", "fs", "", this::importDump)
+      .register(new String[]{"export"}, "[-f <format>] <dump>", "f", "", this::exportDump);
+  }
+
+  // Obtain information about a command.
+  private void commandInfo(final Actor actor, final Arguments args) {
+    this.preProcessCommand(args, actor, CommandType.COMMAND, QueryType.INFO, false, -1);
+  }
+
+  // Set a command.
+  private void setCommand(final Actor actor, final Arguments args) {
+    this.preProcessCommand(args, actor, CommandType.COMMAND, QueryType.MODIFY, args.hasFlag('v'), -1);
+  }
+
+  // Remove a command or command alias.
+  private void delCommand(final Actor actor, final Arguments args) {
+    if(args.size() > 1) {
+      actor.reply("Invalid usage.");
+      return;
+    }
+
+    this.preProcessCommand(args, actor, CommandType.DELETE, QueryType.DELETE, false, args.getFlag('i', -1));
+  }
+
+  // Add an alias for an existing command.
+  private void addAlias(final Actor actor, final Arguments args) {
+    this.preProcessCommand(args, actor, CommandType.ALIAS, QueryType.MODIFY, false, -1);
+  }
+
+  // Search for commands by name or value.
+  private void search(final Actor actor, final Arguments args) {
+    if(args.size() == 0) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "search [-p <page>] <terms...>"));
+      return;
+    }
+
+    final int page = args.getFlag('p', 1);
+    if(page < 1) {
+      actor.reply("Pages are 1-indexed.");
+      return;
+    }
+
+    final String query = args.getJoined(0);
+    final SearchIndex.Results results = this.cc.index.search(query, page - 1, SEARCH_PAGE_SIZE);
+    final int pages = (results.total + SEARCH_PAGE_SIZE - 1) / SEARCH_PAGE_SIZE;
+    if(results.results.isEmpty()) {
+      actor.reply(results.total == 0 ? "No commands matched " + CommandUtil.quote(query) + '.' : "There are only " + pages + " pages of results.");
+      return;
+    }
+
+    final List<String> names = Lists.newArrayListWithCapacity(results.results.size());
+    for(final SearchIndex.Result result : results.results) {
+      final String name = CommandUtil.prefix(this.cc.prefix, result.name);
+      names.add(result.command.scope == null ? name : name + " (" + result.command.scope + ')');
+    }
+    actor.reply("Results for " + CommandUtil.quote(query) + " (page " + page + '/' + pages + "): " + StringUtil.listToEnglishCompound(names, "", ""));
+  }
+
+  // List the commands whose names start with a prefix, in pages packed into as few lines as fit.
+  private void list(final Actor actor, final Arguments args) {
+    if(args.size() > 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "cmdlist [-s <scope>] [-p <page>] [prefix]"));
+      return;
+    }
+
+    @Nullable final String scopeName = args.getFlag('s');
+    if(!isValidScope(actor, scopeName)) {
+      return;
+    }
+    final int page = args.getFlag('p', 1);
+    if(page < 1) {
+      actor.reply("Pages are 1-indexed.");
+      return;
+    }
+
+    String prefix = args.size() == 0 ? "" : args.get(0).toLowerCase(Locale.ENGLISH);
+    if(prefix.startsWith(this.cc.prefix)) {
+      prefix = prefix.substring(this.cc.prefix.length());
+    }
+    final AliasIndex.Page results = this.cc.aliases.list(Scope.parse(scopeName, actor.here()), prefix, page - 1, LIST_PAGE_SIZE);
+    final int pages = (results.total + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE;
+    final String matching = prefix.isEmpty() ? "Commands" : "Commands starting with " + CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, prefix));
+    if(results.aliases.isEmpty()) {
+      actor.reply(results.total == 0 ? "There are no " + matching.toLowerCase(Locale.ENGLISH) + '.' : "There are only " + pages + " pages of " + matching.toLowerCase(Locale.ENGLISH) + '.');
+      return;
+    }
+
+    final StringBuilder reply = new StringBuilder(matching).append(" (page ").append(page).append('/').append(pages).append(", ").append(results.total).append(" in all)");
+    if(results.total > 1 && results.completion.length() > prefix.length()) {
+      reply.append(", all starting with ").append(CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, results.completion)));
+    }
+    reply.append(':');
+    int line = reply.length();
+    for(int i = 0; i < results.aliases.size(); i++) {
+      final String name = CommandUtil.prefix(this.cc.prefix, results.aliases.get(i));
+      if(line + name.length() + 2 > LIST_LINE_LENGTH) {
+        reply.append('\n');
+        line = reply.length();
+      } else if(i > 0) {
+        reply.append(',');
+      }
+      reply.append(' ').append(name);
+    }
+    actor.reply(reply.toString());
+  }
+
+  // List the most recent versions of the command database.
+  private void history(final Actor actor, final Arguments args) {
+    @Nullable final String scopeName = args.getFlag('s');
+    if(!isValidScope(actor, scopeName)) {
+      return;
+    }
+    @Nullable final String scope = Scope.parse(scopeName, actor.here());
+    @Nullable final String name = args.size() > 0 ? args.get(0).toLowerCase(Locale.ENGLISH) : null;
+
+    final List<CommandSnapshot> history = this.cc.history();
+    final List<CommandSnapshot> matching = Lists.newArrayList();
+    for(int i = history.size() - 1; i >= 0 && matching.size() < HISTORY_LINES; i--) {
+      final CommandSnapshot snapshot = history.get(i);
+      // When filtering by name, only list the versions which changed that name.
+      if(name == null || (i == 0 ? snapshot.get(scope, name) != null : history.get(i - 1).get(scope, name) != snapshot.get(scope, name))) {
+        matching.add(snapshot);
+      }
+    }
+
+    if(matching.isEmpty()) {
+      actor.reply(name == null ? "No versions are retained." : "No retained versions changed " + CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, name)) + '.');
+      return;
+    }
+    for(final CommandSnapshot snapshot : matching) {
+      actor.reply(describe(snapshot));
+    }
+  }
+
+  // Show which commands changed between two versions.
+  private void diff(final Actor actor, final Arguments args) {
+    if(args.size() == 0) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "diff <from version> [to version]"));
+      return;
+    }
+
+    @Nullable final CommandSnapshot from = this.version(actor, args.get(0));
+    @Nullable final CommandSnapshot to = args.size() > 1 ? this.version(actor, args.get(1)) : this.cc.snapshot();
+    if(from == null || to == null) {
+      return;
+    }
+
+    final Set<String> added = new TreeSet<>();
+    final Set<String> changed = new TreeSet<>();
+    final Set<String> removed = new TreeSet<>();
+    CommandSnapshot.diff(from, to, (scope, alias, a, b) -> {
+      final String name = scope == null ? CommandUtil.prefix(this.cc.prefix, alias) : CommandUtil.prefix(this.cc.prefix, alias) + " (" + scope + ')';
+      (a == null ? added : b == null ? removed : changed).add(name);
+    });
+
+    if(added.isEmpty() && changed.isEmpty() && removed.isEmpty()) {
+      actor.reply("Versions #" + from.version + " and #" + to.version + " are the same.");
+      return;
+    }
+    actor.reply("Changes from #" + from.version + " to #" + to.version + ':');
+    if(!added.isEmpty()) {
+      actor.reply("Added: " + StringUtil.listToEnglishCompound(truncate(added), "", ""));
+    }
+    if(!changed.isEmpty()) {
+      actor.reply("Changed: " + StringUtil.listToEnglishCompound(truncate(changed), "", ""));
+    }
+    if(!removed.isEmpty()) {
+      actor.reply("Removed: " + StringUtil.listToEnglishCompound(truncate(removed), "", ""));
+    }
+  }
+
+  // Roll the command database, or a single command, back to an earlier version.
+  private void rollback(final Actor actor, final Arguments args) {
+    if(args.size() == 0) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "rollback [-s <scope>] <version> [name]") + " - without a scope or name, every scope is rolled back.");
+      return;
+    }
+
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to modify commands.");
+      return;
+    }
+
+    @Nullable final String scopeName = args.getFlag('s');
+    if(!isValidScope(actor, scopeName) || !isPermittedScope(actor, scopeName)) {
+      return;
+    }
+    @Nullable final String scope = Scope.parse(scopeName, actor.here());
+    @Nullable final CommandSnapshot target = this.version(actor, args.get(0));
+    if(target == null) {
+      return;
+    }
+
+    if(args.size() == 1 && scopeName != null) {
+      this.cc.transaction(actor.name() + ": rollback " + (scope == null ? "global" : scope) + " to #" + target.version, transaction -> {
+        transaction.reset(target, scope);
+        return null;
+      });
+      actor.reply((scope == null ? "The global commands have" : "The commands of " + scope + " have") + " been rolled back to version #" + target.version + '.');
+      return;
+    }
+    if(args.size() == 1) {
+      // every channel's and guild's commands as well as the global ones
+      if(!actor.isAdmin()) {
+        actor.reply("Only admins may roll back every scope. Use -s here or -s global instead.");
+        return;
+      }
+      this.cc.transaction(actor.name() + ": rollback to #" + target.version, transaction -> {
+        transaction.reset(target);
+        return null;
+      });
+      actor.reply("The command database has been rolled back to version #" + target.version + '.');
+      return;
+    }
+
+    final String name = args.get(1).toLowerCase(Locale.ENGLISH);
+    final String result = this.cc.transaction(describe(actor, "rollback #" + target.version, scope, name), transaction -> {
+      @Nullable final PhysicalCommand current = transaction.get(scope, name);
+      @Nullable final PhysicalCommand previous = target.get(scope, name);
+      if(current == previous) {
+        return "Command " + CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, name)) + " is unchanged since version #" + target.version + '.';
+      }
+      if(current != null) {
+        transaction.remove(current);
+      }
+      if(previous == null) {
+        return "Command " + CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, name)) + " did not exist in version #" + target.version + ", so it has been removed.";
+      }
+      transaction.put(previous);
+      return "Command " + CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, name)) + " has been rolled back to version #" + target.version + '.';
+    });
+    actor.reply(result);
+  }
+
+  // Write the most recent raw lines from every platform to the log.
+  private void wireDump(final Actor actor, final Arguments args) {
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to dump the wire trace.");
+      return;
+    }
+
+    final int lines = args.getInt(0, 200);
+    LOGGER.info("Wire trace requested by {}", actor.name());
+    final int dumped = this.trace.dump(lines, line -> LOGGER.info("trace: {}", line));
+    actor.reply("Wrote " + dumped + " traced lines to the log.");
+  }
+
+  // Show the round-trip time and reconnections of every platform's connection.
+  private void health(final Actor actor, final Arguments args) {
+    for(final Health.Link link : this.health.links()) {
+      actor.reply(link.summary());
+    }
+    if(this.cc.responses != null) {
+      actor.reply(this.cc.responses.summary());
+    }
+    for(final Supplier<String> report : this.health.reports()) {
+      actor.reply(report.get());
+    }
+  }
+
+  // Show the latency and failures of every plugin.
+  private void plugins(final Actor actor, final Arguments args) {
+    final List<String> summaries = this.plugins.summaries();
+    if(summaries.isEmpty()) {
+      actor.reply("No plugins are loaded.");
+      return;
+    }
+    for(final String summary : summaries) {
+      actor.reply(summary);
+    }
+  }
+
+  // Respond automatically to a literal or regular expression anywhere in a message.
+  private void addTrigger(final Actor actor, final Arguments args) {
+    if(args.size() < 3) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "addtrigger [-r] [-s <scope>] [-c <cooldown>] <name> <pattern> <response...>"));
+      return;
+    }
+
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to modify triggers.");
+      return;
+    }
+
+    @Nullable final String scopeName = args.getFlag('s');
+    if(!isValidScope(actor, scopeName) || !isPermittedScope(actor, scopeName)) {
+      return;
+    }
+    final String name = args.get(0).toLowerCase(Locale.ENGLISH);
+    if(!name.matches("^[a-z0-9][a-z0-9_-]*$")) {
+      actor.reply("Illegal trigger name. Trigger names must be alphanumeric.");
+      return;
+    }
+    long cooldown = Trigger.DEFAULT_COOLDOWN;
+    @Nullable final String cooldownFlag = args.getFlag('c');
+    if(cooldownFlag != null) {
+      try {
+        cooldown = CommandUtil.parseDuration(cooldownFlag);
+      } catch(final IllegalArgumentException e) {
+        actor.reply(CommandUtil.quote(cooldownFlag) + " is not a duration. Durations look like '90s', '30m', '12h', '7d' or '1h30m', and are at most a year.");
+        return;
+      }
+    }
+
+    @Nullable final Trigger existing = this.cc.triggers.get(name);
+    if(existing != null && !isPermitted(actor, existing.scope)) {
+      return;
+    }
+
+    final Trigger trigger;
+    try {
+      trigger = new Trigger(name, Scope.parse(scopeName, actor.here()), args.hasFlag('r'), args.get(1), args.getJoined(2), cooldown);
+    } catch(final IllegalArgumentException e) {
+      actor.reply("Invalid pattern " + CommandUtil.quote(args.get(1)) + ": " + e.getMessage());
+      return;
+    }
+    LOGGER.info("{} set trigger {} to {} {}", actor.name(), name, trigger.regex ? "regex" : "literal", trigger.pattern);
+    @Nullable final Trigger previous = this.cc.triggers.put(trigger);
+    actor.reply("Trigger " + CommandUtil.quote(name) + (previous == null ? " added." : " replaced."));
+  }
+
+  // Remove a trigger.
+  private void delTrigger(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "deltrigger <name>"));
+      return;
+    }
+
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to modify triggers.");
+      return;
+    }
+
+    @Nullable final Trigger existing = this.cc.triggers.get(args.get(0));
+    if(existing == null) {
+      actor.reply("Could not find a trigger by that name.");
+      return;
+    }
+    if(!isPermitted(actor, existing.scope)) {
+      return;
+    }
+    @Nullable final Trigger previous = this.cc.triggers.remove(existing.name);
+    if(previous == null) {
+      actor.reply("Could not find a trigger by that name.");
+      return;
+    }
+    LOGGER.info("{} removed trigger {}", actor.name(), previous.name);
+    actor.reply("Trigger " + CommandUtil.quote(previous.name) + " removed.");
+  }
+
+  // List the triggers, or describe one.
+  private void triggers(final Actor actor, final Arguments args) {
+    if(args.size() == 0) {
+      final List<String> names = Lists.newArrayList();
+      for(final Trigger trigger : this.cc.triggers.all()) {
+        names.add(trigger.name);
+      }
+      actor.reply(names.isEmpty() ? "There are no triggers." : "Triggers: " + StringUtil.listToEnglishCompound(truncate(names), "", "") + '.');
+      return;
+    }
+
+    @Nullable final Trigger trigger = this.cc.triggers.get(args.get(0));
+    if(trigger == null) {
+      actor.reply("Could not find a trigger by that name.");
+      return;
+    }
+    actor.reply("Trigger " + CommandUtil.quote(trigger.name) + " fires on " + (trigger.regex ? "regex " : "literal ") + CommandUtil.quote(trigger.pattern)
+      + (trigger.scope == null ? "" : " in " + trigger.scope) + ", at most every " + CommandUtil.formatDuration(trigger.cooldown)
+      + " per channel, with " + CommandUtil.quote(trigger.response) + '.');
+  }
+
+  // Ignore everyone matching a mask, everywhere.
+  private void ignore(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "ignore <nick, id, nick!user@host, $a:<account> or $r:<role id>>"));
+      return;
+    }
+
+    // The ignore list applies everywhere, so an operator of one channel may not change it.
+    if(!actor.isAdmin()) {
+      actor.reply("Only admins may modify ignores.");
+      return;
+    }
+
+    final String mask = Ignores.normalize(args.get(0));
+    if(Ignores.matchesEveryone(mask)) {
+      actor.reply(CommandUtil.quote(mask) + " would ignore everyone.");
+      return;
+    }
+    if(actor.matches(mask)) {
+      actor.reply(CommandUtil.quote(mask) + " would ignore you.");
+      return;
+    }
+    if(!this.cc.ignores.add(mask)) {
+      actor.reply(CommandUtil.quote(mask) + " is already ignored.");
+      return;
+    }
+    LOGGER.info("{} ignored {}", actor.name(), mask);
+    actor.reply("Ignoring " + CommandUtil.quote(mask) + '.');
+  }
+
+  // Stop ignoring a mask.
+  private void unignore(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "unignore <mask>"));
+      return;
+    }
+
+    if(!actor.isAdmin()) {
+      actor.reply("Only admins may modify ignores.");
+      return;
+    }
+
+    final String mask = Ignores.normalize(args.get(0));
+    if(!this.cc.ignores.remove(mask)) {
+      actor.reply(CommandUtil.quote(mask) + " is not ignored.");
+      return;
+    }
+    LOGGER.info("{} stopped ignoring {}", actor.name(), mask);
+    actor.reply("No longer ignoring " + CommandUtil.quote(mask) + '.');
+  }
+
+  // List the masks ignored, or show how many messages one has ignored.
+  private void ignores(final Actor actor, final Arguments args) {
+    if(!actor.isOperator() && !actor.isAdmin()) {
+      actor.reply("You don't have permission to list ignores.");
+      return;
+    }
+
+    if(args.size() == 0) {
+      final List<String> masks = Lists.newArrayList(this.cc.ignores.all());
+      actor.reply(masks.isEmpty() ? "Nobody is ignored." : "Ignoring " + StringUtil.listToEnglishCompound(truncate(masks), "", "") + ", " + this.cc.ignores.hits() + " messages ignored since starting.");
+      return;
+    }
+
+    final long hits = this.cc.ignores.hits(args.get(0));
+    if(hits == -1) {
+      actor.reply(CommandUtil.quote(Ignores.normalize(args.get(0))) + " is not ignored.");
+      return;
+    }
+    actor.reply(CommandUtil.quote(Ignores.normalize(args.get(0))) + " has ignored " + hits + " messages since starting.");
+  }
+
+  // Show the last thing someone said here.
+  private void last(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "last <nick>"));
+      return;
+    }
+
+    @Nullable final String here = channel(actor);
+    if(here == null) {
+      return;
+    }
+    final String nick = args.get(0);
+    @Nullable final History.Entry entry = this.history.find(here, candidate -> candidate.nick.equalsIgnoreCase(nick));
+    if(entry == null) {
+      actor.reply("I don't remember " + nick + " saying anything here.");
+      return;
+    }
+    actor.reply(CommandUtil.formatDuration(System.currentTimeMillis() - entry.time) + " ago: <" + entry.nick + "> " + entry.message);
+  }
+
+  // Show when and where someone last said something.
+  private void seen(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "seen <nick>"));
+      return;
+    }
+
+    final String nick = args.get(0);
+    @Nullable final History.Entry entry = this.history.seen(nick);
+    if(entry == null) {
+      actor.reply("I haven't seen " + nick + '.');
+      return;
+    }
+    final String ago = CommandUtil.formatDuration(System.currentTimeMillis() - entry.time) + " ago";
+    if(entry.channel == null) {
+      actor.reply(nick + " was last seen " + ago + '.');
+    } else if(!entry.channel.equals(actor.here())) {
+      // what was said elsewhere stays there
+      actor.reply(entry.nick + " was last seen " + ago + " in " + channelName(entry.channel) + '.');
+    } else {
+      actor.reply(entry.nick + " was last seen " + ago + " in " + channelName(entry.channel) + ", saying: " + entry.message);
+    }
+  }
+
+  // Save something said here as a numbered quote.
+  private void grab(final Actor actor, final Arguments args) {
+    if(args.size() == 0) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "grab <nick> [words...]"));
+      return;
+    }
+
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to grab quotes.");
+      return;
+    }
+
+    @Nullable final String here = channel(actor);
+    if(here == null) {
+      return;
+    }
+    final String nick = args.get(0);
+    final String words = args.size() > 1 ? args.getJoined(1).toLowerCase(Locale.ENGLISH) : "";
+    @Nullable final History.Entry entry = this.history.find(here, candidate -> candidate.nick.equalsIgnoreCase(nick) && candidate.message.toLowerCase(Locale.ENGLISH).contains(words));
+    if(entry == null) {
+      actor.reply("I don't remember " + nick + " saying that here.");
+      return;
+    }
+
+    final String quote = '<' + entry.nick + "> " + entry.message;
+    final String name = this.cc.transaction(describe(actor, "grab", here, nick), transaction -> {
+      int number = this.cc.aliases.list(here, QUOTE, 0, 0).total + 1;
+      while(transaction.get(here, QUOTE + number) != null) {
+        number++;
+      }
+      transaction.put(new PhysicalCommand(here, Collections.singleton(QUOTE + number), Collections.singletonList(quote)));
+      return QUOTE + number;
+    });
+    actor.reply("Grabbed as " + CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, name)) + ": " + quote);
+  }
+
+  // Show a quote grabbed here, by number or at random.
+  private void quote(final Actor actor, final Arguments args) {
+    @Nullable final String here = channel(actor);
+    if(here == null) {
+      return;
+    }
+    final String name;
+    if(args.size() > 0) {
+      name = QUOTE + args.get(0);
+    } else {
+      final int total = this.cc.aliases.list(here, QUOTE, 0, 0).total;
+      if(total == 0) {
+        actor.reply("No quotes have been grabbed here.");
+        return;
+      }
+      name = this.cc.aliases.list(here, QUOTE, ThreadLocalRandom.current().nextInt(total), 1).aliases.get(0);
+    }
+
+    @Nullable final PhysicalCommand command = this.cc.get(here, name);
+    if(command == null || command.responses.isEmpty()) {
+      actor.reply("There is no quote " + CommandUtil.quote(name) + " here.");
+      return;
+    }
+    actor.reply(name + ": " + command.responses.get(0));
+  }
+
+  private static String channelName(final String scope) {
+    @Nullable final String channel = Scope.ircChannel(scope);
+    return channel != null ? channel : "<#" + Scope.discordChannelId(scope) + '>';
+  }
+
+  // Import a factoid dump from the dumps directory, in the background.
+  private void importDump(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "import [-f <format>] [-s <scope>] <dump>"));
+      return;
+    }
+
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to modify commands.");
+      return;
+    }
+
+    @Nullable final FactoidFormat format = this.format(actor, args);
+    @Nullable final String scopeName = args.getFlag('s');
+    if(format == null || !isValidScope(actor, scopeName) || !isPermittedScope(actor, scopeName)) {
+      return;
+    }
+    // Without -s, a dump keeps the scopes it gives, which may be any channel or guild.
+    if(scopeName == null && !actor.isAdmin()) {
+      actor.reply("Only admins may import a dump into the scopes it gives. Use -s here or -s global instead.");
+      return;
+    }
+    @Nullable final String problem = this.cc.dumps.startImport(args.get(0), format, scopeName == null ? null : Scope.parse(scopeName, actor.here()), actor.name(), actor::reply);
+    if(problem != null) {
+      actor.reply(problem);
+    }
+  }
+
+  // Export the command database to the dumps directory, in the background.
+  private void exportDump(final Actor actor, final Arguments args) {
+    if(args.size() != 1) {
+      actor.reply("Usage: " + CommandUtil.prefix(this.cc.prefix, "export [-f <format>] <dump>"));
+      return;
+    }
+
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to export commands.");
+      return;
+    }
+
+    @Nullable final FactoidFormat format = this.format(actor, args);
+    if(format == null) {
+      return;
+    }
+    @Nullable final String problem = this.cc.dumps.startExport(args.get(0), format, actor::reply);
+    if(problem != null) {
+      actor.reply(problem);
+    }
+  }
+
+  // Sends a notice and returns null if the format is not known.
+  @Nullable
+  private FactoidFormat format(final Actor actor, final Arguments args) {
+    @Nullable final String name = args.getFlag('f');
+    @Nullable final FactoidFormat format = name == null ? FactoidFormats.FELIX : FactoidFormats.get(name);
+    if(format == null) {
+      actor.reply("Unknown format " + CommandUtil.quote(name) + ". Formats are " + StringUtil.listToEnglishCompound(Lists.newArrayList(FactoidFormats.names()), "'", "'") + '.');
+    }
+    return format;
+  }
+
+  private void preProcessCommand(
+    final Arguments args, final Actor actor,
+    final CommandType type,
+    final QueryType queryType,
+    final boolean addValue,
+    final int delIndex
+  ) {
+    if(args.size() == 0) {
+      actor.reply("Usage: " + type.usage(this.cc.prefix));
+      return;
+    }
+
+    // check permissions
+    if(!actor.isOperator()) {
+      actor.reply("You don't have permission to modify commands.");
+      return;
+    }
+
+    @Nullable final String scopeName = args.getFlag('s');
+    if(!isValidScope(actor, scopeName) || (queryType != QueryType.INFO && !isPermittedScope(actor, scopeName))) {
+      return;
+    }
+    @Nullable final String scope = Scope.parse(scopeName, actor.here());
+
+    @Nullable final Timing timing = type == CommandType.COMMAND && queryType == QueryType.MODIFY ? timing(actor, args, scope) : Timing.NONE;
+    if(timing == null) {
+      return;
+    }
+
+    this.processCommand(args, actor, scope, type, queryType, addValue, delIndex, timing);
+  }
+
+  private void processCommand(
+    final Arguments args, final Actor actor,
+    @Nullable final String scope,
+    final CommandType type,
+    final QueryType queryType,
+    final boolean addValue,
+    final int delIndex,
+    final Timing timing
+  ) {
+    final String name = args.get(0).toLowerCase(); // COMMAND = name, ALIAS = command name
+    final String newValue = args.size() > 1 ? args.getJoined(1) : null;
+
+    if(!String.valueOf(name.charAt(0)).matches("^[a-zA-Z0-9]$")) {
+      actor.reply("Illegal command name. Command names must start with an alphanumeric character.");
+      return;
+    }
+
+    if(CommandConfiguration.RESERVED_COMMAND_NAMES.contains(name)) {
+      actor.reply("Sorry, but '" + name + "' is a reserved command name.");
+      return;
+    }
+
+    // We're getting information about an existing command, or command alias.
+    if(queryType == QueryType.INFO) {
+      @Nullable final PhysicalCommand command = this.cc.get(scope, name);
+      if(command == null) {
+        actor.reply(type.notFound(this.cc.prefix, name));
+        return;
+      }
+
+      // Always send values
+      for(final String value : command.responses) {
+        actor.reply(queryType.value(this.cc.prefix, name, command.responses.indexOf(value), value, false));
+      }
+      this.describeTiming(actor, name, command, command.expires != 0, command.schedule != null);
+    } else if((newValue == null || newValue.isEmpty()) && !timing.isEmpty()) {
+      // Only the expiry or schedule of an existing command is being changed.
+      @Nullable final PhysicalCommand changed = this.cc.transaction(describe(actor, "setcmd", scope, name), transaction -> {
+        @Nullable final PhysicalCommand command = transaction.get(scope, name);
+        if(command == null) {
+          return null;
+        }
+        final PhysicalCommand replacement = timing.apply(command);
+        transaction.replace(command, replacement);
+        return replacement;
+      });
+      if(changed == null) {
+        actor.reply(type.notFound(this.cc.prefix, name));
+      } else {
+        this.describeTiming(actor, name, changed, timing.setsExpiry, timing.setsSchedule);
+      }
+    } else if(newValue == null || newValue.isEmpty()) {
+      // korobi/Korobi#44 - values should be 1-indexed
+      if(delIndex == 0) {
+        actor.reply("Value indexes are 1-indexed.");
+        return;
+      }
+
+      final int deletionIndex = (delIndex - 1);
+
+      final String result = this.cc.transaction(describe(actor, "delcmd", scope, name), transaction -> {
+        @Nullable final PhysicalCommand command = transaction.get(scope, name);
+        if(command == null) {
+          return type.notFound(this.cc.prefix, name);
+        }
+
+        if(deletionIndex > 0) {
+          // wheeeee
+          final List<String> values = Lists.newArrayList(command.responses);
+          if(deletionIndex >= values.size()) {
+            return "Invalid index.";
+          }
+
+          final String originalValue = values.remove(deletionIndex);
+          transaction.replace(command, command.withResponses(values));
+
+          // create remove message
+          return type.removeValue(this.cc.prefix, name, originalValue);
+        } else {
+          transaction.remove(command);
+
+          return type.removeWithAliases(this.cc.prefix, name, command.responses, new HashSet<>(command.aliases));
+        }
+      });
+
+      actor.reply(result);
+    } else {
+      if(type == CommandType.ALIAS) {
+        final String[] aliases = newValue.split(" "); // multi-set alias
+        for(final String alias : aliases) {
+          if(CommandConfiguration.RESERVED_COMMAND_NAMES.contains(alias)) {
+            actor.reply("Sorry, but '" + alias + "' is a reserved command name.");
+            return;
+          }
+        }
+
+        final List<String> messages = this.cc.transaction(describe(actor, "addalias", scope, name + ' ' + newValue), transaction -> {
+          @Nullable final PhysicalCommand parent = transaction.get(scope, name);
+          if(parent == null) {
+            return Lists.newArrayList(type.parent(this.cc.prefix, name));
+          }
+
+          final List<String> added = Lists.newArrayList();
+          final Map<String, String> replaceMap = Maps.newLinkedHashMap();
+          final Set<String> parentAliases = new LinkedHashSet<>(parent.aliases);
+
+          for(final String alias : aliases) {
+            @Nullable final PhysicalCommand command = transaction.get(scope, alias.toLowerCase(Locale.ENGLISH));
+            if(command != null && command != parent) {
+              if(command.responses.isEmpty()) {
+                added.add(alias);
+              } else {
+                for(final String value : command.responses) {
+                  replaceMap.put(value, alias);
+                }
+              }
+
+              transaction.remove(command);
+            }
+            parentAliases.add(alias);
+          }
+
+          transaction.replace(parent, parent.withAliases(parentAliases));
+
+          final List<String> results = Lists.newArrayList();
+          if(!added.isEmpty()) {
+            results.add(type.add(this.cc.prefix, name, added, false));
+          }
+
+          for(final Map.Entry<String, String> entry : replaceMap.entrySet()) {
+            results.add(type.replace(this.cc.prefix, name, Lists.newArrayList(entry.getValue()), Lists.newArrayList(entry.getKey())));
+          }
+          return results;
+        });
+
+        for(final String message : messages) {
+          actor.reply(message);
+        }
+      } else {
+        final String result = this.cc.transaction(describe(actor, "setcmd", scope, name), transaction -> {
+          @Nullable final PhysicalCommand command = transaction.get(scope, name);
+          final List<String> oldValue = command == null ? Collections.emptyList() : command.responses;
+          final List<String> newValues;
+
+          if(addValue && !oldValue.isEmpty()) {
+            if(oldValue.size() >= 3) {
+              return "I'm sorry, but that command has reached the value limit (3).";
+            }
+            newValues = Lists.newArrayList(oldValue);
+            newValues.add(newValue);
+          } else {
+            newValues = Lists.newArrayList(newValue);
+          }
+
+          if(command == null) {
+            transaction.put(timing.apply(new PhysicalCommand(scope, Collections.singleton(name.toLowerCase(Locale.ENGLISH)), newValues)));
+          } else {
+            transaction.replace(command, timing.apply(command.withResponses(newValues)));
+          }
+
+          if(oldValue.isEmpty()) {
+            return type.add(this.cc.prefix, name, Lists.newArrayList(newValue), false);
+          } else {
+            return type.replace(this.cc.prefix, name, newValues, oldValue);
+          }
+        });
+
+        actor.reply(result);
+        @Nullable final PhysicalCommand command = timing.isEmpty() ? null : this.cc.get(scope, name);
+        if(command != null) {
+          this.describeTiming(actor, name, command, timing.setsExpiry, timing.setsSchedule);
+        }
+      }
+    }
+  }
+
+  private void describeTiming(final Actor actor, final String name, final PhysicalCommand command, final boolean expiry, final boolean schedule) {
+    final String quoted = CommandUtil.quote(CommandUtil.prefix(this.cc.prefix, name));
+    if(expiry) {
+      actor.reply(command.expires == 0
+        ? "Command " + quoted + " does not expire."
+        : "Command " + quoted + " expires in " + CommandUtil.formatDuration(command.expires - System.currentTimeMillis()) + '.');
+    }
+    if(schedule) {
+      actor.reply(command.schedule == null
+        ? "Command " + quoted + " is not announced."
+        : "Command " + quoted + " is announced in " + command.schedule.channel + " at " + CommandUtil.quote(command.schedule.cron.spec)
+          + " (UTC), next in " + CommandUtil.formatDuration(command.schedule.cron.next(System.currentTimeMillis()) - System.currentTimeMillis()) + '.');
+    }
+  }
+
+  // Sends a notice and returns null if the -t or -a flag of addcmd is malformed.
+  @Nullable
+  private static Timing timing(final Actor actor, final Arguments args, @Nullable final String scope) {
+    @Nullable final String ttl = args.getFlag('t');
+    @Nullable final String cron = args.getFlag('a');
+    long expires = 0;
+    if(ttl != null && !ttl.equalsIgnoreCase("off")) {
+      try {
+        expires = System.currentTimeMillis() + CommandUtil.parseDuration(ttl);
+      } catch(final IllegalArgumentException e) {
+        actor.reply(CommandUtil.quote(ttl) + " is not a duration. Durations look like '90s', '30m', '12h', '7d' or '1h30m', and are at most a year.");
+        return null;
+      }
+    }
+    @Nullable Schedule schedule = null;
+    if(cron != null && !cron.equalsIgnoreCase("off")) {
+      // Announce in the command's own channel, or failing that, wherever it was set.
+      @Nullable final String channel = scope != null && (Scope.ircChannel(scope) != null || Scope.discordChannelId(scope) != null) ? scope : actor.here();
+      if(channel == null) {
+        actor.reply("There is no channel here to announce in.");
+        return null;
+      }
+      try {
+        schedule = new Schedule(channel, Cron.parse(cron));
+      } catch(final IllegalArgumentException e) {
+        actor.reply("Invalid schedule " + CommandUtil.quote(cron) + ": " + e.getMessage());
+        return null;
+      }
+    }
+    return new Timing(ttl != null, expires, cron != null, schedule);
+  }
+
+  private static String describe(final Actor actor, final String action, @Nullable final String scope, final String name) {
+    return actor.name() + ": " + action + ' ' + name + (scope == null ? "" : " (" + scope + ')');
+  }
+
+  private static String describe(final CommandSnapshot snapshot) {
+    final long minutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - snapshot.time);
+    return '#' + String.valueOf(snapshot.version) + " (" + minutes + "m ago) " + (snapshot.description == null ? "" : CommandUtil.reset(snapshot.description));
+  }
+
+  private static Collection<String> truncate(final Collection<String> names) {
+    if(names.size() <= DIFF_NAMES) {
+      return names;
+    }
+    final List<String> truncated = Lists.newArrayList(Iterables.limit(names, DIFF_NAMES));
+    truncated.add((names.size() - DIFF_NAMES) + " more");
+    return truncated;
+  }
+
+  // Sends a notice and returns null if the command was not run in a channel, such as in a private message.
+  @Nullable
+  private static String channel(final Actor actor) {
+    @Nullable final String here = actor.here();
+    if(here == null) {
+      actor.reply("That only works in a channel.");
+    }
+    return here;
+  }
+
+  // Sends a notice and returns false if the scope is not recognised.
+  private static boolean isValidScope(final Actor actor, @Nullable final String scopeName) {
+    try {
+      Scope.parse(scopeName, actor.here());
+      return true;
+    } catch(final IllegalArgumentException e) {
+      actor.reply("Unknown scope " + CommandUtil.quote(scopeName) + ". Scopes are 'global', 'here', '#channel', 'discord:<channel id>' or 'guild:<guild id>'.");
+      return false;
+    }
+  }
+
+  // Sends a notice and returns false if a valid scope is neither global nor here, and the actor is not an admin.
+  // Being an operator here says nothing about other channels or guilds.
+  private static boolean isPermittedScope(final Actor actor, @Nullable final String scopeName) {
+    return isPermitted(actor, Scope.parse(scopeName, actor.here()));
+  }
+
+  private static boolean isPermitted(final Actor actor, @Nullable final String scope) {
+    if(scope == null || scope.equals(actor.here()) || actor.isAdmin()) {
+      return true;
+    }
+    actor.reply("Only admins may modify other channels. Use 'here' or 'global' instead.");
+    return false;
+  }
+
+  // Sends a notice and returns null if the version is not retained.
+  @Nullable
+  private CommandSnapshot version(final Actor actor, final String string) {
+    final long version;
+    try {
+      version = Long.parseLong(string.startsWith("#") ? string.substring(1) : string);
+    } catch(final NumberFormatException e) {
+      actor.reply(CommandUtil.quote(string) + " is not a version number.");
+      return null;
+    }
+    @Nullable final CommandSnapshot snapshot = this.cc.version(version);
+    if(snapshot == null) {
+      actor.reply("Version #" + version + " is not retained.");
+    }
+    return snapshot;
+  }
+
+  // The changes the -t and -a flags of addcmd make to when a command expires and announces itself.
+  private static final class Timing {
+    static final Timing NONE = new Timing(false, 0, false, null);
+    final boolean setsExpiry;
+    final long expires;
+    final boolean setsSchedule;
+    @Nullable final Schedule schedule;
+
+    Timing(final boolean setsExpiry, final long expires, final boolean setsSchedule, @Nullable final Schedule schedule) {
+      this.setsExpiry = setsExpiry;
+      this.expires = expires;
+      this.setsSchedule = setsSchedule;
+      this.schedule = schedule;
+    }
+
+    boolean isEmpty() {
+      return !this.setsExpiry && !this.setsSchedule;
+    }
+
+    PhysicalCommand apply(PhysicalCommand command) {
+      if(this.setsExpiry) {
+        command = command.withExpiry(this.expires);
+      }
+      if(this.setsSchedule) {
+        command = command.withSchedule(this.schedule);
+      }
+      return command;
+    }
+  }
+
+  enum CommandType {
+    /*
+     * Conventions for this class:
+     * Template strings have no quoting anywhere.
+     * Quotes are applied at replace-time, if needed for the value.
+     * Resets are always used around input - it's user input, make it work.
+     */
+
+    COMMAND(
+      "Command {0} has been set to {1}.",
+      null, // multiAdd
+      "Command {0} has been set to {1}. Old value: {2}.",
+      "Command {0} removed. Old value: {1}.",
+      "Command {0} removed. Old value: {1}. (Alias {2} was also removed.)",
+      "Command {0} removed. Old value: {1}. (Aliases {2} were also removed.)",
+      "Value {0} added to command {1}.",
+      "Value {0} removed from command {1}.",
+      "Could not find a command by that name.",
+      null, // parent
+      "addcmd [-s <scope>] [-t <ttl>] [-a <schedule>] <name> [value]"
+    ),
+    DELETE(
+      COMMAND,
+      "delcmd [-s <scope>] <name>"
+    ),
+    ALIAS(
+      "Alias {1} has been set to {0}.", // add
+      "Aliases {1} have been set to {0}.", // multiAdd
+      "Alias {0} has been set to {1}. Old value: {2}.", // replace
+      null, // remove
+      null, // removeWithAlias
+      null, // removeWithAliases
+      "Aliases can only have one value.", // addValue
+      "Alias {0} removed. Old value: {1}.", // removeValue
+      "Could not find an alias by that name.", // notFound
+      "Could not find the parent command {0}.", // parent
+      "addalias [-s <scope>] <command name> <alias names...>" // usage
+    );
+
+    private final String add;
+    private final String multiAdd;
+    private final String replace;
+    private final String remove;
+    private final String removeWithAlias;
+    private final String removeWithAliases;
+    private final String addValue;
+    private final String removeValue;
+    private final String notFound;
+    private final String parent;
+    private final String usage;
+
+    CommandType(final CommandType parent, final String usage) {
+      this.add = parent.add;
+      this.multiAdd = parent.multiAdd;
+      this.replace = parent.replace;
+      this.remove = parent.remove;
+      this.removeWithAlias = parent.removeWithAlias;
+      this.removeWithAliases = parent.removeWithAliases;
+      this.addValue = parent.addValue;
+      this.removeValue = parent.removeValue;
+      this.notFound = parent.notFound;
+      this.parent = parent.parent;
+      this.usage = usage;
+    }
+
+    CommandType(final String add, final String multiAdd, final String replace, final String remove, final String removeWithAlias, final String removeWithAliases, final String addValue, final String removeValue, final String notFound, final String parent, final String usage) {
+      this.add = add;
+      this.multiAdd = multiAdd;
+      this.replace = replace;
+      this.remove = remove;
+      this.removeWithAlias = removeWithAlias;
+      this.removeWithAliases = removeWithAliases;
+      this.addValue = addValue;
+      this.removeValue = removeValue;
+      this.notFound = notFound;
+      this.parent = parent;
+      this.usage = usage;
+    }
+
+    public String add(final String prefix, final String name, final List<String> value, final boolean valueAdd) {
+      if(valueAdd) {
+        return this.addValue
+          .replace("{0}", StringUtil.listToEnglishCompound(value, "'" + Format.RESET, Format.RESET + "'"))
+          .replace("{1}", CommandUtil.quote(CommandUtil.prefix(prefix, name)));
+      } else {
+        if(value.size() > 1) {
+          if(this == ALIAS) {
+            return this.multiAdd
+              .replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)))
+              .replace("{1}", StringUtil.listToEnglishCompound(value, "'" + Format.RESET, Format.RESET + "'", string -> CommandUtil.reset(CommandUtil.prefix(prefix, string))));
+          } else {
+            return this.multiAdd
+              .replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)))
+              .replace("{1}", StringUtil.listToEnglishCompound(value, "'" + Format.RESET, Format.RESET + "'"));
+          }
+        } else {
+          String value0 = value.get(0);
+          if(this == ALIAS) {
+            value0 = CommandUtil.prefix(prefix, value0);
+          }
+
+          return this.add
+            .replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)))
+            .replace("{1}", CommandUtil.quote(value0));
+        }
+      }
+    }
+
+    public String replace(final String prefix, final String name, final List<String> newValue, final List<String> oldValue) {
+      return this.replace
+        .replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)))
+        .replace("{1}", StringUtil.listToEnglishCompound(newValue, "'" + Format.RESET, Format.RESET + "'"))
+        .replace("{2}", StringUtil.listToEnglishCompound(oldValue, "'" + Format.RESET, Format.RESET + "'"));
+    }
+
+    public String remove(final String prefix, final String name, final List<String> oldValue) {
+      return this.remove
+        .replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)))
+        .replace("{1}", StringUtil.listToEnglishCompound(oldValue, "'" + Format.RESET, Format.RESET + "'"));
+    }
+
+    public String removeValue(final String prefix, final String name, final String value) {
+      return this.removeValue
+        .replace("{0}", CommandUtil.quote(value))
+        .replace("{1}", CommandUtil.quote(CommandUtil.prefix(prefix, name)));
+    }
+
+    public String removeWithAliases(final String prefix, final String name, final List<String> oldValue, final Set<String> aliases) {
+      aliases.remove(name);
+      final String string = aliases.size() == 1 ? this.removeWithAlias : this.removeWithAliases;
+      return string
+        .replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)))
+        .replace("{1}", StringUtil.listToEnglishCompound(oldValue, "'" + Format.RESET, Format.RESET + "'"))
+        .replace("{2}", StringUtil.listToEnglishCompound(aliases, "'" + Format.RESET, Format.RESET + "'"));
+    }
+
+    public String notFound(final String prefix, final String name) {
+      return this.notFound.replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, name)));
+    }
+
+    public String parent(final String prefix, final String parent) {
+      return this.parent.replace("{0}", CommandUtil.quote(CommandUtil.prefix(prefix, parent)));
+    }
+
+    public String usage(final String prefix) {
+      return CommandUtil.prefix(prefix, this.usage);
+    }
+  }
+
+  enum QueryType {
+    INFO(
+      "Command '{0}' has value #{2} '{1}'.",
+      "Command '{0}' is an alias of '{1}'.",
+      "Command '{0}' has aliases {1}."
+    ),
+    MODIFY,
+    DELETE;
+
+    private final String value;
+    private final String valueAlias;
+    private final String aliases;
+
+    QueryType() {
+      this(null, null, null);
+    }
+
+    QueryType(final String value, final String valueAlias, final String aliases) {
+      this.value = value;
+      this.valueAlias = valueAlias;
+      this.aliases = aliases;
+    }
+
+    public String value(final String prefix, final String name, final int index, final String value, final boolean alias) {
+      final String type = alias ? this.valueAlias : this.value;
+      return type
+        .replace("{0}", CommandUtil.prefix(prefix, name))
+        .replace("{1}", CommandUtil.reset(alias ? CommandUtil.prefix(prefix, value) : value))
+        .replace("{2}", String.valueOf(index));
+    }
+
+    public String aliases(final String prefix, final String name, final List<String> aliases) {
+      return this.aliases
+        .replace("{0}", CommandUtil.prefix(prefix, name))
+        .replace("{1}", StringUtil.listToEnglishCompound(aliases, "'", "'"));
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.plugin;
+
+import javax.annotation.Nullable;
+
+/**
+ * A use of a plugin command.
+ */
+public final class Invocation {
+  /**
+   * The name of the user.
+   */
+  public final String user;
+  /**
+   * The {@link org.spongepowered.felix.command.Scope} key of the channel the command was used in, or {@code null}
+   * if there is none.
+   */
+  @Nullable public final String channel;
+  /**
+   * Whether the user may manage commands in the channel.
+   */
+  public final boolean operator;
+  /**
+   * The name the command was used by.
+   */
+  public final String command;
+  /**
+   * Everything after the command name, trimmed.
+   */
+  public final String arguments;
+
+  Invocation(final String user, @Nullable final String channel, final boolean operator, final String command, final String arguments) {
+    this.user = user;
+    this.channel = channel;
+    this.operator = operator;
+    this.command = command;
+    this.arguments = arguments;
+  }
+}
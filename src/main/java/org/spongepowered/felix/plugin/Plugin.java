@@ -0,0 +1,48 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.plugin;
+
+/**
+ * A plugin, adding computed commands to every platform.
+ *
+ * <p>Plugins are discovered with {@link java.util.ServiceLoader} from the jars in the {@code plugins} directory, each
+ * jar in a class loader of its own. A jar provides plugins by listing their classes in
+ * {@code META-INF/services/org.spongepowered.felix.plugin.Plugin}.</p>
+ */
+public interface Plugin {
+  /**
+   * Gets the name of the plugin, used in metrics, logs and configuration.
+   *
+   * @return the name
+   */
+  String name();
+
+  /**
+   * Enables the plugin, which registers its commands.
+   *
+   * @param context the context
+   */
+  void enable(PluginContext context);
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.plugin;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.spongepowered.felix.command.CommandConfiguration;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * What a {@link Plugin} is given when it is enabled.
+ */
+public final class PluginContext {
+  private static final Pattern NAME = Pattern.compile("[a-z0-9][a-z0-9_-]*");
+  private final ConfigurationNode config;
+  final Map<String, CommandHandler> commands = new LinkedHashMap<>();
+
+  PluginContext(final ConfigurationNode config) {
+    this.config = config;
+  }
+
+  /**
+   * Gets the plugin's configuration, from {@code plugins.config.<plugin name>} in {@code config.json}.
+   *
+   * @return the configuration
+   */
+  public ConfigurationNode config() {
+    return this.config;
+  }
+
+  /**
+   * Registers a command.
+   *
+   * <p>Plugin commands take precedence over factoids of the same name.</p>
+   *
+   * @param name the name
+   * @param handler the handler
+   * @throws IllegalArgumentException if the name is malformed, reserved, or already registered by this plugin
+   */
+  public void register(final String name, final CommandHandler handler) {
+    final String key = name.toLowerCase(Locale.ENGLISH);
+    if(!NAME.matcher(key).matches()) {
+      throw new IllegalArgumentException("Command names must be alphanumeric: " + name);
+    }
+    if(CommandConfiguration.RESERVED_COMMAND_NAMES.contains(key)) {
+      throw new IllegalArgumentException("Reserved command name: " + name);
+    }
+    if(this.commands.putIfAbsent(key, handler) != null) {
+      throw new IllegalArgumentException("Command already registered: " + name);
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.plugin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.felix.command.Actor;
+import org.spongepowered.felix.util.Histogram;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * The loaded {@link Plugin}s, and their commands.
+ *
+ * <p>Each plugin runs its commands on a small pool of its own, behind a bounded queue, so that a slow plugin can
+ * neither block a platform's event thread nor hold up factoids or other plugins. A watchdog interrupts any invocation
+ * which runs longer than {@code plugins.timeout} milliseconds or allocates more than {@code plugins.allocation}
+ * bytes, and discards its response.</p>
+ */
+public final class Plugins {
+  private static final Logger LOGGER = LogManager.getLogger();
+  private static final long WATCHDOG_INTERVAL = 50;
+  private final Path directory;
+  private final long timeout;
+  private final long allocation;
+  private final int threads;
+  private final int queue;
+  private final List<LoadedPlugin> plugins = new ArrayList<>();
+  private final Map<String, Registration> commands = new HashMap<>();
+  private final Set<Call> running = ConcurrentHashMap.newKeySet();
+  @Nullable private final com.sun.management.ThreadMXBean allocations;
+
+  public Plugins(final ConfigurationNode config) {
+    this.directory = Paths.get(config.getNode("directory").getString("plugins"));
+    this.timeout = TimeUnit.MILLISECONDS.toNanos(config.getNode("timeout").getLong(2000));
+    this.allocation = config.getNode("allocation").getLong(64L * 1024 * 1024);
+    this.threads = Math.max(1, config.getNode("threads").getInt(2));
+    this.queue = Math.max(1, config.getNode("queue").getInt(16));
+    this.allocations = allocations();
+
+    if(Files.isDirectory(this.directory)) {
+      this.load(config.getNode("config"));
+    }
+    if(!this.plugins.isEmpty()) {
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("Felix plugin watchdog").setDaemon(true).build())
+        .scheduleWithFixedDelay(this::watch, WATCHDOG_INTERVAL, WATCHDOG_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Nullable
+  private static com.sun.management.ThreadMXBean allocations() {
+    if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+      final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      if(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+        return threads;
+      }
+    }
+    LOGGER.warn("This JVM cannot measure the memory a thread allocates, so plugins have no allocation budget.");
+    return null;
+  }
+
+  private void load(final ConfigurationNode config) {
+    final List<Path> jars = new ArrayList<>();
+    try(final DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*.jar")) {
+      stream.forEach(jars::add);
+    } catch(final IOException e) {
+      LOGGER.error("Could not list the plugins in {}", this.directory, e);
+      return;
+    }
+    Collections.sort(jars);
+
+    for(final Path jar : jars) {
+      final URLClassLoader loader;
+      try {
+        loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, Plugins.class.getClassLoader());
+      } catch(final MalformedURLException e) {
+        LOGGER.error("Could not load plugins from {}", jar, e);
+        continue;
+      }
+      // A plugin built against other libraries fails with a LinkageError, even from the iterator, which loads each
+      // provider's class: that must neither stop Felix starting nor lose the jar's other plugins.
+      final Iterator<Plugin> plugins = ServiceLoader.load(Plugin.class, loader).iterator();
+      while(true) {
+        final Plugin plugin;
+        try {
+          if(!plugins.hasNext()) {
+            break;
+          }
+          plugin = plugins.next();
+        } catch(final ServiceConfigurationError | LinkageError e) {
+          LOGGER.error("Could not load a plugin from {}", jar, e);
+          continue;
+        }
+        final String name;
+        try {
+          name = plugin.name();
+        } catch(final RuntimeException | LinkageError e) {
+          LOGGER.error("Could not name plugin {} from {}", plugin.getClass().getName(), jar, e);
+          continue;
+        }
+        this.enable(plugin, name, config.getNode(name));
+      }
+    }
+  }
+
+  private void enable(final Plugin plugin, final String name, final ConfigurationNode config) {
+    final PluginContext context = new PluginContext(config);
+    try {
+      plugin.enable(context);
+    } catch(final RuntimeException | LinkageError e) {
+      LOGGER.error("Could not enable plugin {}", name, e);
+      return;
+    }
+
+    final LoadedPlugin loaded = new LoadedPlugin(name, new ThreadPoolExecutor(
+      this.threads, this.threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(this.queue),
+      new ThreadFactoryBuilder().setNameFormat("Felix plugin " + name + " #%d").setDaemon(true).build()
+    ));
+    for(final Map.Entry<String, CommandHandler> entry : context.commands.entrySet()) {
+      @Nullable final Registration existing = this.commands.putIfAbsent(entry.getKey(), new Registration(loaded, entry.getValue()));
+      if(existing != null) {
+        LOGGER.warn("Plugin {} cannot register command {}: plugin {} already has", name, entry.getKey(), existing.plugin.name);
+      } else {
+        loaded.commands.add(entry.getKey());
+      }
+    }
+    this.plugins.add(loaded);
+    LOGGER.info("Enabled plugin {}, with commands {}", name, loaded.commands);
+  }
+
+  /**
+   * Runs a plugin command, if there is one by the name given. The command runs asynchronously.
+   *
+   * @param actor who used the command, who is told about failures
+   * @param name the command name, in lower case
+   * @param arguments everything after the command name
+   * @param output receives the response, to send to the channel the command was used in
+   * @return {@code true} if there is a plugin command by the name
+   */
+  public boolean dispatch(final Actor actor, final String name, final String arguments, final Consumer<List<String>> output) {
+    @Nullable final Registration registration = this.commands.get(name);
+    if(registration == null) {
+      return false;
+    }
+
+    final Call call = new Call(registration, actor, new Invocation(actor.name(), actor.here(), actor.isOperator(), name, arguments.trim()), output);
+    try {
+      registration.plugin.executor.execute(call.task);
+    } catch(final RejectedExecutionException e) {
+      registration.plugin.rejections.incrementAndGet();
+      actor.reply("Plugin " + registration.plugin.name + " is busy - try again in a moment.");
+    }
+    return true;
+  }
+
+  /**
+   * Gets a summary of the invocations of every plugin.
+   *
+   * @return the summaries
+   */
+  public List<String> summaries() {
+    final List<String> summaries = new ArrayList<>(this.plugins.size());
+    for(final LoadedPlugin plugin : this.plugins) {
+      summaries.add(plugin.summary());
+    }
+    return summaries;
+  }
+
+  private void watch() {
+    final long now = System.nanoTime();
+    for(final Call call : this.running) {
+      if(now - call.started > this.timeout) {
+        call.abort(call.registration.plugin.timeouts, "ran for longer than " + TimeUnit.NANOSECONDS.toMillis(this.timeout) + "ms");
+      } else if(this.allocations != null && this.allocations.getThreadAllocatedBytes(call.thread.getId()) - call.allocated > this.allocation) {
+        call.abort(call.registration.plugin.overAllocation, "allocated more than " + this.allocation / 1024 + "KiB");
+      }
+    }
+  }
+
+  private static final class LoadedPlugin {
+    final String name;
+    final ExecutorService executor;
+    final List<String> commands = new ArrayList<>();
+    // from use to response, in microseconds
+    final Histogram latency = new Histogram();
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicInteger timeouts = new AtomicInteger();
+    final AtomicInteger overAllocation = new AtomicInteger();
+    final AtomicInteger rejections = new AtomicInteger();
+
+    LoadedPlugin(final String name, final ExecutorService executor) {
+      this.name = name;
+      this.executor = executor;
+    }
+
+    String summary() {
+      final StringBuilder summary = new StringBuilder(this.name).append(": ").append(this.latency.count()).append(" answered");
+      if(this.latency.count() > 0) {
+        summary.append(", latency p50 ").append(millis(this.latency.percentile(50)))
+          .append(" p99 ").append(millis(this.latency.percentile(99)))
+          .append(" max ").append(millis(this.latency.max()));
+      }
+      return summary.append(", ").append(this.failures.get()).append(" failed, ")
+        .append(this.timeouts.get()).append(" timed out, ")
+        .append(this.overAllocation.get()).append(" over the allocation budget, ")
+        .append(this.rejections.get()).append(" rejected while busy").toString();
+    }
+
+    private static String millis(final long micros) {
+      return String.format("%.1fms", micros / 1000.0);
+    }
+  }
+
+  private static final class Registration {
+    final LoadedPlugin plugin;
+    final CommandHandler handler;
+
+    Registration(final LoadedPlugin plugin, final CommandHandler handler) {
+      this.plugin = plugin;
+      this.handler = handler;
+    }
+  }
+
+  private final class Call implements Runnable {
+    final Registration registration;
+    final Actor actor;
+    final Invocation invocation;
+    final Consumer<List<String>> output;
+    final FutureTask<Void> task = new FutureTask<>(this, null);
+    final long created = System.nanoTime();
+    // whichever of the handler and the watchdog finishes the call first gets to respond
+    final AtomicInteger finished = new AtomicInteger();
+    volatile Thread thread;
+    volatile long started;
+    volatile long allocated;
+
+    Call(final Registration registration, final Actor actor, final Invocation invocation, final Consumer<List<String>> output) {
+      this.registration = registration;
+      this.actor = actor;
+      this.invocation = invocation;
+      this.output = output;
+    }
+
+    @Override
+    public void run() {
+      this.thread = Thread.currentThread();
+      this.allocated = Plugins.this.allocations == null ? 0 : Plugins.this.allocations.getThreadAllocatedBytes(this.thread.getId());
+      this.started = System.nanoTime();
+      Plugins.this.running.add(this);
+      try {
+        final List<String> response = this.registration.handler.handle(this.invocation);
+        if(this.finished.compareAndSet(0, 1)) {
+          this.registration.plugin.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - this.created));
+          if(response != null && !response.isEmpty()) {
+            this.output.accept(response);
+          }
+        }
+      } catch(final Exception | StackOverflowError | LinkageError e) {
+        if(this.finished.compareAndSet(0, 1)) {
+          this.registration.plugin.failures.incrementAndGet();
+          LOGGER.error("Plugin {} failed to handle {}", this.registration.plugin.name, this.invocation.command, e);
+          this.actor.reply("Plugin " + this.registration.plugin.name + " could not handle that.");
+        }
+      } finally {
+        Plugins.this.running.remove(this);
+      }
+    }
+
+    void abort(final AtomicInteger counter, final String reason) {
+      if(this.finished.compareAndSet(0, 1)) {
+        counter.incrementAndGet();
+        this.task.cancel(true);
+        LOGGER.warn("Cancelled {} of plugin {} for {}: it {}", this.invocation.command, this.registration.plugin.name, this.invocation.user, reason);
+        this.actor.reply("Plugin " + this.registration.plugin.name + " was stopped: it " + reason + '.');
+      }
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An Aho-Corasick automaton, which finds every occurrence of any of a set of patterns in a single pass over the text,
+ * in time linear in the length of the text plus the number of occurrences.
+ *
+ * <p>Matching ignores case. Automata are immutable once built, and may be searched from any thread.</p>
+ *
+ * @param <T> the type of the values patterns are mapped to
+ */
+public final class AhoCorasick<T> {
+  private static final AhoCorasick<?> EMPTY = new Builder<>().build();
+  // the transitions of each state, with keys sorted for binary search; state 0 is the root
+  private final char[][] keys;
+  private final int[][] targets;
+  private final int[] failure;
+  // the nearest state along the failure links which completes a pattern, or 0 if there is none
+  private final int[] dictionary;
+  private final int[] depth;
+  private final Object[][] values;
+
+  private AhoCorasick(final char[][] keys, final int[][] targets, final int[] failure, final int[] dictionary, final int[] depth, final Object[][] values) {
+    this.keys = keys;
+    this.targets = targets;
+    this.failure = failure;
+    this.dictionary = dictionary;
+    this.depth = depth;
+    this.values = values;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> AhoCorasick<T> empty() {
+    return (AhoCorasick<T>) EMPTY;
+  }
+
+  public static <T> Builder<T> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Finds every occurrence of every pattern.
+   *
+   * @param text the text
+   * @param consumer receives each occurrence, in order of where it ends
+   */
+  @SuppressWarnings("unchecked")
+  public void search(final CharSequence text, final MatchConsumer<T> consumer) {
+    int state = 0;
+    for(int i = 0; i < text.length(); i++) {
+      final char c = Character.toLowerCase(text.charAt(i));
+      int next;
+      while((next = this.next(state, c)) == -1 && state != 0) {
+        state = this.failure[state];
+      }
+      state = next == -1 ? 0 : next;
+
+      for(int match = this.values[state].length > 0 ? state : this.dictionary[state]; match != 0; match = this.dictionary[match]) {
+        for(final Object value : this.values[match]) {
+          consumer.accept(i + 1 - this.depth[match], i + 1, (T) value);
+        }
+      }
+    }
+  }
+
+  private int next(final int state, final char c) {
+    final int index = Arrays.binarySearch(this.keys[state], c);
+    return index < 0 ? -1 : this.targets[state][index];
+  }
+
+  @FunctionalInterface
+  public interface MatchConsumer<T> {
+    void accept(int start, int end, T value);
+  }
+
+  public static final class Builder<T> {
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<List<Object>> values = new ArrayList<>();
+    private final List<Integer> depth = new ArrayList<>();
+
+    Builder() {
+      this.state(0);
+    }
+
+    private int state(final int depth) {
+      this.transitions.add(new HashMap<>());
+      this.values.add(new ArrayList<>());
+      this.depth.add(depth);
+      return this.transitions.size() - 1;
+    }
+
+    /**
+     * Adds a pattern.
+     *
+     * @param pattern the pattern, which must not be empty
+     * @param value the value reported when the pattern is found
+     * @return this builder
+     */
+    public Builder<T> add(final String pattern, final T value) {
+      if(pattern.isEmpty()) {
+        throw new IllegalArgumentException("empty pattern");
+      }
+      int state = 0;
+      for(int i = 0; i < pattern.length(); i++) {
+        final char c = Character.toLowerCase(pattern.charAt(i));
+        final Integer next = this.transitions.get(state).get(c);
+        if(next == null) {
+          final int created = this.state(i + 1);
+          this.transitions.get(state).put(c, created);
+          state = created;
+        } else {
+          state = next;
+        }
+      }
+      this.values.get(state).add(value);
+      return this;
+    }
+
+    public AhoCorasick<T> build() {
+      final int size = this.transitions.size();
+      final char[][] keys = new char[size][];
+      final int[][] targets = new int[size][];
+      for(int state = 0; state < size; state++) {
+        final Map<Character, Integer> transitions = this.transitions.get(state);
+        keys[state] = new char[transitions.size()];
+        int i = 0;
+        for(final char c : transitions.keySet()) {
+          keys[state][i++] = c;
+        }
+        Arrays.sort(keys[state]);
+        targets[state] = new int[keys[state].length];
+        for(i = 0; i < keys[state].length; i++) {
+          targets[state][i] = transitions.get(keys[state][i]);
+        }
+      }
+
+      // Breadth first, so that every state's failure target is finished before the state itself.
+      final int[] failure = new int[size];
+      final int[] dictionary = new int[size];
+      final Deque<Integer> queue = new ArrayDeque<>();
+      for(final int child : targets[0]) {
+        queue.add(child);
+      }
+      while(!queue.isEmpty()) {
+        final int state = queue.poll();
+        for(int i = 0; i < keys[state].length; i++) {
+          final char c = keys[state][i];
+          final int child = targets[state][i];
+          int fallback = failure[state];
+          int index;
+          while((index = Arrays.binarySearch(keys[fallback], c)) < 0 && fallback != 0) {
+            fallback = failure[fallback];
+          }
+          failure[child] = index < 0 ? 0 : targets[fallback][index];
+          dictionary[child] = this.values.get(failure[child]).isEmpty() ? dictionary[failure[child]] : failure[child];
+          queue.add(child);
+        }
+      }
+
+      final int[] depth = new int[size];
+      final Object[][] values = new Object[size][];
+      for(int state = 0; state < size; state++) {
+        depth[state] = this.depth.get(state);
+        values[state] = this.values.get(state).toArray();
+      }
+      return new AhoCorasick<>(keys, targets, failure, dictionary, depth, values);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable set backed by a plain array, for sets small enough that a linear scan beats hashing,
+ * and numerous enough that per-set overhead matters.
+ *
+ * @param <E> the element type
+ */
+public final class ArraySet<E> extends AbstractSet<E> {
+  private static final ArraySet<?> EMPTY = new ArraySet<>(new Object[0]);
+  private final Object[] elements;
+
+  private ArraySet(final Object[] elements) {
+    this.elements = elements;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> ArraySet<E> copyOf(final Collection<? extends E> elements) {
+    if(elements instanceof ArraySet) {
+      return (ArraySet<E>) elements;
+    } else if(elements.isEmpty()) {
+      return (ArraySet<E>) EMPTY;
+    }
+
+    final Object[] array = new Object[elements.size()];
+    int size = 0;
+    outer:
+    for(final E element : elements) {
+      Objects.requireNonNull(element, "element");
+      for(int i = 0; i < size; i++) {
+        if(array[i].equals(element)) {
+          continue outer;
+        }
+      }
+      array[size++] = element;
+    }
+    return new ArraySet<>(size == array.length ? array : Arrays.copyOf(array, size));
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    for(final Object element : this.elements) {
+      if(element.equals(o)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return this.index < ArraySet.this.elements.length;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if(this.index >= ArraySet.this.elements.length) {
+          throw new NoSuchElementException();
+        }
+        return (E) ArraySet.this.elements[this.index++];
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return this.elements.length;
+  }
+}
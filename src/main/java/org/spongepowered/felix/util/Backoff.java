@@ -0,0 +1,72 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Jittered exponential backoff.
+ *
+ * <p>Each delay is drawn from the upper half of a window which doubles with every attempt, up to a cap, so that
+ * clients which lost their connection together do not all come back together.</p>
+ */
+public final class Backoff {
+  private final long base;
+  private final long max;
+  private int attempts;
+
+  /**
+   * Creates a backoff.
+   *
+   * @param base the window of the first attempt, in milliseconds
+   * @param max the largest window, in milliseconds
+   */
+  public Backoff(final long base, final long max) {
+    this.base = Math.max(1, base);
+    this.max = Math.max(this.base, max);
+  }
+
+  /**
+   * Gets the delay before the next attempt, and counts the attempt.
+   *
+   * @return the delay, in milliseconds
+   */
+  public synchronized long next() {
+    // keep the shifted base positive
+    final int shift = Math.min(this.attempts, Long.numberOfLeadingZeros(this.base) - 1);
+    final long window = Math.min(this.max, this.base << shift);
+    this.attempts++;
+    final long half = window / 2;
+    return half + ThreadLocalRandom.current().nextLong(window - half + 1);
+  }
+
+  public synchronized int attempts() {
+    return this.attempts;
+  }
+
+  public synchronized void reset() {
+    this.attempts = 0;
+  }
+}
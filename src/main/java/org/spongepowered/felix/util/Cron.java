@@ -0,0 +1,170 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * A five-field cron expression - minute, hour, day of month, month and day of week - evaluated in UTC.
+ *
+ * <p>Each field is {@code *}, a number, a range or a comma-separated list of those, and any of them may be
+ * followed by {@code /step}. Days of the week run from 0 (Sunday) to 7 (Sunday again). As in cron, when both the day
+ * of the month and the day of the week are restricted, a day matching either is enough.</p>
+ */
+public final class Cron {
+  // no expression needs more than four years to come round, but a typo like "0 0 31 2 *" never does
+  private static final int MAX_DAYS = 5 * 366;
+  public final String spec;
+  private final long minutes;
+  private final long hours;
+  private final long days;
+  private final long months;
+  private final long weekdays;
+  private final boolean anyDay;
+  private final boolean anyWeekday;
+
+  private Cron(final String spec, final long[] fields, final boolean anyDay, final boolean anyWeekday) {
+    this.spec = spec;
+    this.minutes = fields[0];
+    this.hours = fields[1];
+    this.days = fields[2];
+    this.months = fields[3];
+    // 7 is another name for Sunday
+    this.weekdays = (fields[4] & 1L << 7) != 0 ? fields[4] | 1 : fields[4];
+    this.anyDay = anyDay;
+    this.anyWeekday = anyWeekday;
+  }
+
+  /**
+   * Parses an expression.
+   *
+   * @param spec the expression
+   * @return the expression
+   * @throws IllegalArgumentException if the expression is malformed or never matches
+   */
+  public static Cron parse(final String spec) {
+    final String[] parts = spec.trim().split("\\s+");
+    if(parts.length != 5) {
+      throw new IllegalArgumentException("A schedule needs five fields: minute, hour, day of month, month and day of week.");
+    }
+    final long[] fields = {
+      field(parts[0], 0, 59),
+      field(parts[1], 0, 23),
+      field(parts[2], 1, 31),
+      field(parts[3], 1, 12),
+      field(parts[4], 0, 7)
+    };
+    final Cron cron = new Cron(String.join(" ", parts), fields, parts[2].startsWith("*"), parts[4].startsWith("*"));
+    if(cron.next(0) < 0) {
+      throw new IllegalArgumentException("That schedule never fires.");
+    }
+    return cron;
+  }
+
+  private static long field(final String field, final int min, final int max) {
+    long bits = 0;
+    for(final String part : field.split(",", -1)) {
+      final int slash = part.indexOf('/');
+      final String range = slash == -1 ? part : part.substring(0, slash);
+      final int step = slash == -1 ? 1 : number(part.substring(slash + 1), 1, max);
+      final int from;
+      final int to;
+      if(range.equals("*")) {
+        from = min;
+        to = max;
+      } else {
+        final int dash = range.indexOf('-');
+        from = number(dash == -1 ? range : range.substring(0, dash), min, max);
+        // "5/15" means every 15 from 5, as "*/15" means every 15 from the minimum
+        to = dash == -1 ? (slash == -1 ? from : max) : number(range.substring(dash + 1), from, max);
+      }
+      for(int i = from; i <= to; i += step) {
+        bits |= 1L << i;
+      }
+    }
+    return bits;
+  }
+
+  private static int number(final String string, final int min, final int max) {
+    final int number;
+    try {
+      number = Integer.parseInt(string);
+    } catch(final NumberFormatException e) {
+      throw new IllegalArgumentException(string + " is not a number.");
+    }
+    if(number < min || number > max) {
+      throw new IllegalArgumentException(number + " is not between " + min + " and " + max + '.');
+    }
+    return number;
+  }
+
+  /**
+   * Finds when the expression next matches.
+   *
+   * @param after a time, in milliseconds since the epoch
+   * @return the first matching minute strictly after the time, in milliseconds since the epoch, or {@code -1} if it
+   *     never matches
+   */
+  public long next(final long after) {
+    LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(after), ZoneOffset.UTC).truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+    final LocalDateTime limit = time.plusDays(MAX_DAYS);
+    while(time.isBefore(limit)) {
+      if(!has(this.months, time.getMonthValue())) {
+        time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+      } else if(!this.matchesDay(time)) {
+        time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+      } else if(!has(this.hours, time.getHour())) {
+        time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+      } else if(!has(this.minutes, time.getMinute())) {
+        time = time.plusMinutes(1);
+      } else {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+      }
+    }
+    return -1;
+  }
+
+  private boolean matchesDay(final LocalDateTime time) {
+    final boolean day = has(this.days, time.getDayOfMonth());
+    // DayOfWeek runs from 1 (Monday) to 7 (Sunday)
+    final boolean weekday = has(this.weekdays, time.getDayOfWeek().getValue() % 7);
+    if(this.anyDay || this.anyWeekday) {
+      return day && weekday;
+    }
+    return day || weekday;
+  }
+
+  private static boolean has(final long bits, final int value) {
+    return (bits & 1L << value) != 0;
+  }
+
+  @Override
+  public String toString() {
+    return this.spec;
+  }
+}
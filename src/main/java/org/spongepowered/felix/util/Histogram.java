@@ -0,0 +1,96 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values.
+ *
+ * <p>Values below 8 are counted exactly. Above that, every power of two is split into 8 buckets, so a bucket is at
+ * most 12.5% wide and a percentile is never off by more than that.</p>
+ */
+public final class Histogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(final long value) {
+    final long clamped = Math.max(0, value);
+    this.buckets.incrementAndGet(index(clamped));
+    this.count.incrementAndGet();
+    this.max.accumulateAndGet(clamped, Math::max);
+  }
+
+  public long count() {
+    return this.count.get();
+  }
+
+  public long max() {
+    return this.max.get();
+  }
+
+  /**
+   * Gets the value below which a percentage of the recorded values fall.
+   *
+   * @param percentile the percentage, from 0 to 100
+   * @return the highest value of the bucket the percentile falls in, or 0 if nothing has been recorded
+   */
+  public long percentile(final double percentile) {
+    final long count = this.count.get();
+    if(count == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for(int i = 0; i < this.buckets.length(); i++) {
+      seen += this.buckets.get(i);
+      if(seen >= rank) {
+        return Math.min(highest(i), this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  private static int index(final long value) {
+    if(value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  private static long highest(final int index) {
+    if(index < SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKETS - 1;
+    final long next = (long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift;
+    return next < 0 ? Long.MAX_VALUE : next - 1;
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable hash map which shares structure between versions.
+ *
+ * <p>This is a hash array mapped trie: {@link #plus(Object, Object)} and {@link #minus(Object)} copy only
+ * the O(log32 n) nodes on the path to the changed entry, so old versions stay cheap to keep around, and
+ * {@link #diff(PersistentMap, PersistentMap, DiffConsumer)} can skip every subtree two versions share.</p>
+ *
+ * <p>Values are compared by identity.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class PersistentMap<K, V> {
+  private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+  private static final Object NOT_FOUND = new Object();
+  private static final int BITS = 5;
+  @Nullable private final Node root;
+  private final int size;
+
+  private PersistentMap(@Nullable final Node root, final int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentMap<K, V> empty() {
+    return (PersistentMap<K, V>) EMPTY;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public V get(final Object key) {
+    if(this.root == null) {
+      return null;
+    }
+    final Object value = this.root.get(0, hash(key), key);
+    return value == NOT_FOUND ? null : (V) value;
+  }
+
+  public PersistentMap<K, V> plus(final K key, final V value) {
+    final boolean[] added = new boolean[1];
+    final Node root = (this.root == null ? BitmapNode.EMPTY : this.root).put(0, hash(key), key, value, added);
+    if(root == this.root) {
+      return this;
+    }
+    return new PersistentMap<>(root, added[0] ? this.size + 1 : this.size);
+  }
+
+  public PersistentMap<K, V> minus(final Object key) {
+    if(this.root == null) {
+      return this;
+    }
+    final Node root = this.root.remove(0, hash(key), key);
+    if(root == this.root) {
+      return this;
+    } else if(root == null) {
+      return empty();
+    }
+    return new PersistentMap<>(root, this.size - 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  public void forEach(final BiConsumer<? super K, ? super V> consumer) {
+    if(this.root != null) {
+      this.root.forEach((BiConsumer<Object, Object>) consumer);
+    }
+  }
+
+  /**
+   * Reports every key whose value differs between two maps.
+   *
+   * @param from the old map
+   * @param to the new map
+   * @param consumer receives each key with its old and new values, either of which is {@code null} if absent
+   * @param <K> the key type
+   * @param <V> the value type
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> void diff(final PersistentMap<K, V> from, final PersistentMap<K, V> to, final DiffConsumer<? super K, ? super V> consumer) {
+    diff(from.root, to.root, 0, (DiffConsumer<Object, Object>) consumer);
+  }
+
+  private static void diff(@Nullable final Node from, @Nullable final Node to, final int shift, final DiffConsumer<Object, Object> consumer) {
+    if(from == to) {
+      return;
+    } else if(from == null) {
+      to.forEach((key, value) -> consumer.accept(key, null, value));
+    } else if(to == null) {
+      from.forEach((key, value) -> consumer.accept(key, value, null));
+    } else if(from instanceof BitmapNode && to instanceof BitmapNode) {
+      final BitmapNode a = (BitmapNode) from;
+      final BitmapNode b = (BitmapNode) to;
+      for(int bits = a.bitmap | b.bitmap; bits != 0; bits &= bits - 1) {
+        final int bit = bits & -bits;
+        final Object keyA = a.key(bit);
+        final Object keyB = b.key(bit);
+        if(keyA != null && keyB != null) {
+          final Object valueA = a.value(bit);
+          final Object valueB = b.value(bit);
+          if(keyA.equals(keyB)) {
+            if(valueA != valueB) {
+              consumer.accept(keyA, valueA, valueB);
+            }
+          } else {
+            consumer.accept(keyA, valueA, null);
+            consumer.accept(keyB, null, valueB);
+          }
+        } else {
+          diff(a.slot(bit, shift), b.slot(bit, shift), shift + BITS, consumer);
+        }
+      }
+    } else {
+      from.forEach((key, value) -> {
+        final Object other = to.get(shift, hash(key), key);
+        if(other == NOT_FOUND) {
+          consumer.accept(key, value, null);
+        } else if(other != value) {
+          consumer.accept(key, value, other);
+        }
+      });
+      to.forEach((key, value) -> {
+        if(from.get(shift, hash(key), key) == NOT_FOUND) {
+          consumer.accept(key, null, value);
+        }
+      });
+    }
+  }
+
+  private static int hash(final Object key) {
+    final int hash = key.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  @FunctionalInterface
+  public interface DiffConsumer<K, V> {
+    void accept(K key, @Nullable V from, @Nullable V to);
+  }
+
+  private abstract static class Node {
+    abstract Object get(int shift, int hash, Object key);
+
+    abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+    @Nullable
+    abstract Node remove(int shift, int hash, Object key);
+
+    abstract void forEach(BiConsumer<Object, Object> consumer);
+  }
+
+  // Each present bit owns two array slots: a key and its value, or null and a child node.
+  private static final class BitmapNode extends Node {
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+    final int bitmap;
+    final Object[] array;
+
+    BitmapNode(final int bitmap, final Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(final int bit) {
+      return Integer.bitCount(this.bitmap & (bit - 1)) * 2;
+    }
+
+    // The key stored inline for a bit, or null if the bit is absent or holds a child node.
+    @Nullable
+    Object key(final int bit) {
+      return (this.bitmap & bit) == 0 ? null : this.array[this.index(bit)];
+    }
+
+    Object value(final int bit) {
+      return this.array[this.index(bit) + 1];
+    }
+
+    // The slot for a bit as a node, so that slots can be compared regardless of how they are stored.
+    @Nullable
+    Node slot(final int bit, final int shift) {
+      if((this.bitmap & bit) == 0) {
+        return null;
+      }
+      final int index = this.index(bit);
+      final Object key = this.array[index];
+      if(key == null) {
+        return (Node) this.array[index + 1];
+      }
+      return EMPTY.put(shift + BITS, hash(key), key, this.array[index + 1], new boolean[1]);
+    }
+
+    @Override
+    Object get(final int shift, final int hash, final Object key) {
+      final int bit = 1 << ((hash >>> shift) & 31);
+      if((this.bitmap & bit) == 0) {
+        return NOT_FOUND;
+      }
+      final int index = this.index(bit);
+      final Object k = this.array[index];
+      if(k == null) {
+        return ((Node) this.array[index + 1]).get(shift + BITS, hash, key);
+      }
+      return key.equals(k) ? this.array[index + 1] : NOT_FOUND;
+    }
+
+    @Override
+    Node put(final int shift, final int hash, final Object key, final Object value, final boolean[] added) {
+      final int bit = 1 << ((hash >>> shift) & 31);
+      final int index = this.index(bit);
+      if((this.bitmap & bit) == 0) {
+        final Object[] array = new Object[this.array.length + 2];
+        System.arraycopy(this.array, 0, array, 0, index);
+        array[index] = key;
+        array[index + 1] = value;
+        System.arraycopy(this.array, index, array, index + 2, this.array.length - index);
+        added[0] = true;
+        return new BitmapNode(this.bitmap | bit, array);
+      }
+
+      final Object k = this.array[index];
+      final Object v = this.array[index + 1];
+      if(k == null) {
+        final Node child = ((Node) v).put(shift + BITS, hash, key, value, added);
+        return child == v ? this : this.with(index, null, child);
+      } else if(key.equals(k)) {
+        return v == value ? this : this.with(index, k, value);
+      }
+      added[0] = true;
+      return this.with(index, null, pair(shift + BITS, k, v, hash, key, value));
+    }
+
+    @Nullable
+    @Override
+    Node remove(final int shift, final int hash, final Object key) {
+      final int bit = 1 << ((hash >>> shift) & 31);
+      if((this.bitmap & bit) == 0) {
+        return this;
+      }
+      final int index = this.index(bit);
+      final Object k = this.array[index];
+      if(k == null) {
+        final Node child = (Node) this.array[index + 1];
+        final Node removed = child.remove(shift + BITS, hash, key);
+        if(removed == child) {
+          return this;
+        } else if(removed != null) {
+          return this.with(index, null, removed);
+        }
+      } else if(!key.equals(k)) {
+        return this;
+      }
+
+      if(this.bitmap == bit) {
+        return null;
+      }
+      final Object[] array = new Object[this.array.length - 2];
+      System.arraycopy(this.array, 0, array, 0, index);
+      System.arraycopy(this.array, index + 2, array, index, array.length - index);
+      return new BitmapNode(this.bitmap & ~bit, array);
+    }
+
+    @Override
+    void forEach(final BiConsumer<Object, Object> consumer) {
+      for(int i = 0; i < this.array.length; i += 2) {
+        if(this.array[i] == null) {
+          ((Node) this.array[i + 1]).forEach(consumer);
+        } else {
+          consumer.accept(this.array[i], this.array[i + 1]);
+        }
+      }
+    }
+
+    private BitmapNode with(final int index, @Nullable final Object key, final Object value) {
+      final Object[] array = this.array.clone();
+      array[index] = key;
+      array[index + 1] = value;
+      return new BitmapNode(this.bitmap, array);
+    }
+
+    private static Node pair(final int shift, final Object k1, final Object v1, final int h2, final Object k2, final Object v2) {
+      final int h1 = hash(k1);
+      if(h1 == h2) {
+        return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+      }
+      final boolean[] added = new boolean[1];
+      return EMPTY.put(shift, h1, k1, v1, added).put(shift, h2, k2, v2, added);
+    }
+  }
+
+  // Keys whose hashes are entirely equal.
+  private static final class CollisionNode extends Node {
+    final int hash;
+    final Object[] array;
+
+    CollisionNode(final int hash, final Object[] array) {
+      this.hash = hash;
+      this.array = array;
+    }
+
+    private int find(final Object key) {
+      for(int i = 0; i < this.array.length; i += 2) {
+        if(key.equals(this.array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object get(final int shift, final int hash, final Object key) {
+      final int index = hash == this.hash ? this.find(key) : -1;
+      return index == -1 ? NOT_FOUND : this.array[index + 1];
+    }
+
+    @Override
+    Node put(final int shift, final int hash, final Object key, final Object value, final boolean[] added) {
+      if(hash != this.hash) {
+        final Node node = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[]{null, this});
+        return node.put(shift, hash, key, value, added);
+      }
+      final int index = this.find(key);
+      if(index != -1) {
+        if(this.array[index + 1] == value) {
+          return this;
+        }
+        final Object[] array = this.array.clone();
+        array[index + 1] = value;
+        return new CollisionNode(this.hash, array);
+      }
+      final Object[] array = Arrays.copyOf(this.array, this.array.length + 2);
+      array[this.array.length] = key;
+      array[this.array.length + 1] = value;
+      added[0] = true;
+      return new CollisionNode(this.hash, array);
+    }
+
+    @Nullable
+    @Override
+    Node remove(final int shift, final int hash, final Object key) {
+      final int index = hash == this.hash ? this.find(key) : -1;
+      if(index == -1) {
+        return this;
+      } else if(this.array.length == 2) {
+        return null;
+      }
+      final Object[] array = new Object[this.array.length - 2];
+      System.arraycopy(this.array, 0, array, 0, index);
+      System.arraycopy(this.array, index + 2, array, index, array.length - index);
+      return new CollisionNode(this.hash, array);
+    }
+
+    @Override
+    void forEach(final BiConsumer<Object, Object> consumer) {
+      for(int i = 0; i < this.array.length; i += 2) {
+        consumer.accept(this.array[i], this.array[i + 1]);
+      }
+    }
+  }
+}
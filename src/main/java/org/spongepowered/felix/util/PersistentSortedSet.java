@@ -0,0 +1,239 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable sorted set which shares structure between versions, and finds elements by rank.
+ *
+ * <p>This is a weight-balanced tree: every node knows the size of its subtree, so {@link #rank(Comparable)} and
+ * {@link #forEach(int, int, Consumer)} only walk one path down the tree, plus the elements they visit.
+ * {@link #plus(Comparable)} and {@link #minus(Comparable)} copy only the O(log n) nodes on the path to the change.</p>
+ *
+ * @param <E> the element type
+ */
+public final class PersistentSortedSet<E extends Comparable<? super E>> {
+  private static final PersistentSortedSet<?> EMPTY = new PersistentSortedSet<>(null);
+  // a subtree may be at most DELTA times the size of its sibling; RATIO picks single or double rotations
+  private static final int DELTA = 3;
+  private static final int RATIO = 2;
+  @Nullable private final Node<E> root;
+
+  private PersistentSortedSet(@Nullable final Node<E> root) {
+    this.root = root;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E extends Comparable<? super E>> PersistentSortedSet<E> empty() {
+    return (PersistentSortedSet<E>) EMPTY;
+  }
+
+  public int size() {
+    return size(this.root);
+  }
+
+  public boolean isEmpty() {
+    return this.root == null;
+  }
+
+  public PersistentSortedSet<E> plus(final E element) {
+    final Node<E> root = plus(this.root, element);
+    return root == this.root ? this : new PersistentSortedSet<>(root);
+  }
+
+  public PersistentSortedSet<E> minus(final E element) {
+    @Nullable final Node<E> root = minus(this.root, element);
+    return root == this.root ? this : root == null ? empty() : new PersistentSortedSet<>(root);
+  }
+
+  /**
+   * Counts the elements less than an element, which need not be in the set.
+   *
+   * @param element the element
+   * @return the number of smaller elements
+   */
+  public int rank(final E element) {
+    int rank = 0;
+    @Nullable Node<E> node = this.root;
+    while(node != null) {
+      if(element.compareTo(node.value) <= 0) {
+        node = node.left;
+      } else {
+        rank += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return rank;
+  }
+
+  /**
+   * Gets the element at a rank.
+   *
+   * @param rank the rank, from 0
+   * @return the element
+   * @throws IndexOutOfBoundsException if there is no element at that rank
+   */
+  public E get(int rank) {
+    if(rank < 0 || rank >= this.size()) {
+      throw new IndexOutOfBoundsException(String.valueOf(rank));
+    }
+    Node<E> node = this.root;
+    while(true) {
+      final int left = size(node.left);
+      if(rank < left) {
+        node = node.left;
+      } else if(rank == left) {
+        return node.value;
+      } else {
+        rank -= left + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   * Visits the elements between two ranks, in order.
+   *
+   * @param from the rank of the first element, inclusive
+   * @param to the rank of the last element, exclusive
+   * @param consumer the consumer
+   */
+  public void forEach(final int from, final int to, final Consumer<? super E> consumer) {
+    forEach(this.root, 0, from, to, consumer);
+  }
+
+  private static <E> void forEach(@Nullable final Node<E> node, final int offset, final int from, final int to, final Consumer<? super E> consumer) {
+    if(node == null) {
+      return;
+    }
+    final int rank = offset + size(node.left);
+    if(from < rank) {
+      forEach(node.left, offset, from, to, consumer);
+    }
+    if(from <= rank && rank < to) {
+      consumer.accept(node.value);
+    }
+    if(rank + 1 < to) {
+      forEach(node.right, rank + 1, from, to, consumer);
+    }
+  }
+
+  private static <E extends Comparable<? super E>> Node<E> plus(@Nullable final Node<E> node, final E element) {
+    if(node == null) {
+      return new Node<>(element, null, null);
+    }
+    final int compare = element.compareTo(node.value);
+    if(compare < 0) {
+      final Node<E> left = plus(node.left, element);
+      return left == node.left ? node : balance(node.value, left, node.right);
+    } else if(compare > 0) {
+      final Node<E> right = plus(node.right, element);
+      return right == node.right ? node : balance(node.value, node.left, right);
+    }
+    return node;
+  }
+
+  @Nullable
+  private static <E extends Comparable<? super E>> Node<E> minus(@Nullable final Node<E> node, final E element) {
+    if(node == null) {
+      return null;
+    }
+    final int compare = element.compareTo(node.value);
+    if(compare < 0) {
+      @Nullable final Node<E> left = minus(node.left, element);
+      return left == node.left ? node : balance(node.value, left, node.right);
+    } else if(compare > 0) {
+      @Nullable final Node<E> right = minus(node.right, element);
+      return right == node.right ? node : balance(node.value, node.left, right);
+    }
+    return glue(node.left, node.right);
+  }
+
+  // Joins the two subtrees of a removed node, replacing it with an element from the larger one.
+  @Nullable
+  private static <E extends Comparable<? super E>> Node<E> glue(@Nullable final Node<E> left, @Nullable final Node<E> right) {
+    if(left == null) {
+      return right;
+    } else if(right == null) {
+      return left;
+    } else if(left.size > right.size) {
+      Node<E> max = left;
+      while(max.right != null) {
+        max = max.right;
+      }
+      return balance(max.value, minus(left, max.value), right);
+    } else {
+      Node<E> min = right;
+      while(min.left != null) {
+        min = min.left;
+      }
+      return balance(min.value, left, minus(right, min.value));
+    }
+  }
+
+  private static <E> Node<E> balance(final E value, @Nullable final Node<E> left, @Nullable final Node<E> right) {
+    final int sizeLeft = size(left);
+    final int sizeRight = size(right);
+    if(sizeLeft + sizeRight <= 1) {
+      return new Node<>(value, left, right);
+    } else if(sizeRight > DELTA * sizeLeft) {
+      // rotate left
+      if(size(right.left) < RATIO * size(right.right)) {
+        return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+      }
+      final Node<E> middle = right.left;
+      return new Node<>(middle.value, new Node<>(value, left, middle.left), new Node<>(right.value, middle.right, right.right));
+    } else if(sizeLeft > DELTA * sizeRight) {
+      // rotate right
+      if(size(left.right) < RATIO * size(left.left)) {
+        return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+      }
+      final Node<E> middle = left.right;
+      return new Node<>(middle.value, new Node<>(left.value, left.left, middle.left), new Node<>(value, middle.right, right));
+    }
+    return new Node<>(value, left, right);
+  }
+
+  private static int size(@Nullable final Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static final class Node<E> {
+    final E value;
+    @Nullable final Node<E> left;
+    @Nullable final Node<E> right;
+    final int size;
+
+    Node(final E value, @Nullable final Node<E> left, @Nullable final Node<E> right) {
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.size = size(left) + size(right) + 1;
+    }
+  }
+}
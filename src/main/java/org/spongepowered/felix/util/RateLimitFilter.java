@@ -0,0 +1,203 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.util.Unbox;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how often each logger may log, so that a flood of one warning becomes a count of what was dropped.
+ *
+ * <p>Each logger gets a bucket of {@code burst} events, refilled at {@code rate} events a second. Events at
+ * {@code level} or less severe are dropped while their logger's bucket is empty, and the next event let through is
+ * preceded by a line saying how many were. Checking an event allocates nothing.</p>
+ *
+ * <p>Configure it as a context-wide filter, so that dropped events are dropped before they are queued:</p>
+ *
+ * <pre>{@code <RateLimit level="WARN" rate="5" burst="50"/>}</pre>
+ */
+@Plugin(name = "RateLimit", category = Node.CATEGORY, elementType = Filter.ELEMENT_TYPE, printObject = true)
+public final class RateLimitFilter extends AbstractFilter {
+  private final Level level;
+  // the time between events, in nanoseconds, and how far ahead of now a logger may spend
+  private final long interval;
+  private final long allowance;
+  private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+  // set while reporting, so that the report is not itself limited
+  private final ThreadLocal<boolean[]> reporting = ThreadLocal.withInitial(() -> new boolean[1]);
+
+  private RateLimitFilter(final Level level, final double rate, final long burst) {
+    super(Result.NEUTRAL, Result.DENY);
+    this.level = level;
+    this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(rate, 1e-3));
+    this.allowance = this.interval * Math.max(burst, 1);
+  }
+
+  @PluginFactory
+  public static RateLimitFilter createFilter(
+    @PluginAttribute(value = "level", defaultString = "WARN") final String level,
+    @PluginAttribute(value = "rate", defaultDouble = 10) final double rate,
+    @PluginAttribute(value = "burst", defaultLong = 100) final long burst
+  ) {
+    return new RateLimitFilter(Level.toLevel(level, Level.WARN), rate, burst);
+  }
+
+  private Result filter(final Logger logger, final Level level) {
+    // A context-wide filter is asked before the logger's level, so leave disabled events to it without spending tokens.
+    if(level.intLevel() > logger.getLevel().intLevel() || !this.level.isMoreSpecificThan(level)) {
+      return Result.NEUTRAL;
+    }
+    final boolean[] reporting = this.reporting.get();
+    if(reporting[0]) {
+      return Result.NEUTRAL;
+    }
+    final Bucket bucket = this.buckets.computeIfAbsent(logger.getName(), name -> new Bucket());
+    if(!bucket.take(System.nanoTime(), this.interval, this.allowance)) {
+      bucket.dropped.incrementAndGet();
+      return this.onMismatch;
+    }
+    // The event is enabled and let through, so the report is logged at a level known to be enabled.
+    final long dropped = bucket.dropped.getAndSet(0);
+    if(dropped > 0) {
+      reporting[0] = true;
+      try {
+        logger.log(level, "Dropped {} messages from this logger, which was logging too often", Unbox.box(dropped));
+      } finally {
+        reporting[0] = false;
+      }
+    }
+    return this.onMatch;
+  }
+
+  @Override
+  public Result filter(final LogEvent event) {
+    // Only reached when configured on an appender, where there is no logger to report through.
+    return Result.NEUTRAL;
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final Message message, final Throwable t) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final Object message, final Throwable t) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object... params) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3, final Object p4) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3, final Object p4, final Object p5) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3, final Object p4, final Object p5, final Object p6) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3, final Object p4, final Object p5, final Object p6, final Object p7) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3, final Object p4, final Object p5, final Object p6, final Object p7, final Object p8) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public Result filter(final Logger logger, final Level level, final Marker marker, final String message, final Object p0, final Object p1, final Object p2, final Object p3, final Object p4, final Object p5, final Object p6, final Object p7, final Object p8, final Object p9) {
+    return this.filter(logger, level);
+  }
+
+  @Override
+  public String toString() {
+    return "RateLimit[level=" + this.level + ", interval=" + this.interval + "ns, allowance=" + this.allowance + "ns]";
+  }
+
+  // A generic cell rate algorithm: each event moves the logger's theoretical time forward by one interval.
+  private static final class Bucket {
+    final AtomicLong time = new AtomicLong(Long.MIN_VALUE);
+    final AtomicLong dropped = new AtomicLong();
+
+    boolean take(final long now, final long interval, final long allowance) {
+      while(true) {
+        final long time = this.time.get();
+        final long start = time == Long.MIN_VALUE || time - now < 0 ? now : time;
+        if(start - now >= allowance) {
+          return false;
+        }
+        if(this.time.compareAndSet(time, start + interval)) {
+          return true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel.
+ *
+ * <p>Timers are hashed into a fixed ring of buckets by their deadline, and a single thread expires one bucket per tick,
+ * so scheduling and cancelling cost O(1) however many timers are pending. A timer due more than one turn of the wheel
+ * away counts down the turns it still has to wait. Deadlines are only as precise as the tick.</p>
+ *
+ * <p>Tasks run on the ticking thread, so they should hand anything slow off elsewhere.</p>
+ */
+public final class TimerWheel {
+  private static final Logger LOGGER = LogManager.getLogger();
+  // how many newly scheduled timers to move into the wheel per tick, so a burst cannot stall expiry
+  private static final int MAX_TRANSFERS = 100000;
+  private final long tick;
+  private final Bucket[] buckets;
+  private final int mask;
+  private final long start = System.nanoTime();
+  private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  // only touched by the ticking thread
+  private long ticks;
+
+  /**
+   * Creates a wheel, and starts its ticking thread.
+   *
+   * @param name the name of the ticking thread
+   * @param tick the duration of a tick
+   * @param unit the unit of the tick
+   * @param buckets the number of buckets, rounded up to a power of two
+   */
+  public TimerWheel(final String name, final long tick, final TimeUnit unit, final int buckets) {
+    this.tick = unit.toNanos(tick);
+    final int size = buckets <= 1 ? 1 : Integer.highestOneBit(buckets - 1) << 1;
+    this.buckets = new Bucket[size];
+    for(int i = 0; i < size; i++) {
+      this.buckets[i] = new Bucket();
+    }
+    this.mask = size - 1;
+
+    final Thread thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Schedules a task.
+   *
+   * @param task the task
+   * @param delay how long to wait before running it
+   * @param unit the unit of the delay
+   * @return the timer, which can be cancelled
+   */
+  public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+    // saturated, so that a far-off deadline stays far off rather than wrapping into the past
+    final long now = System.nanoTime() - this.start;
+    final long nanos = unit.toNanos(Math.max(0, delay));
+    final Timeout timeout = new Timeout(this, task, nanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos);
+    this.pending.incrementAndGet();
+    this.scheduled.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Gets the number of timers which have been scheduled and have neither run nor been cancelled.
+   *
+   * @return the number of timers
+   */
+  public int pending() {
+    return this.pending.get();
+  }
+
+  private void run() {
+    while(true) {
+      final long deadline = (this.ticks + 1) * this.tick;
+      for(long now = System.nanoTime() - this.start; now < deadline; now = System.nanoTime() - this.start) {
+        LockSupport.parkNanos(deadline - now);
+      }
+
+      for(Timeout timeout; (timeout = this.cancelled.poll()) != null; ) {
+        if(timeout.bucket != null) {
+          timeout.bucket.remove(timeout);
+        }
+      }
+      this.transfer();
+      this.expire(this.buckets[(int) (this.ticks & this.mask)]);
+      this.ticks++;
+    }
+  }
+
+  private void transfer() {
+    for(int i = 0; i < MAX_TRANSFERS; i++) {
+      final Timeout timeout = this.scheduled.poll();
+      if(timeout == null) {
+        return;
+      }
+      if(timeout.state.get() != Timeout.WAITING) {
+        continue;
+      }
+      final long due = timeout.deadline / this.tick;
+      timeout.rounds = (due - this.ticks) / this.buckets.length;
+      // a timer already due goes into the bucket about to expire
+      this.buckets[(int) (Math.max(due, this.ticks) & this.mask)].add(timeout);
+    }
+  }
+
+  private void expire(final Bucket bucket) {
+    for(Timeout timeout = bucket.head; timeout != null; ) {
+      final Timeout next = timeout.next;
+      if(timeout.rounds <= 0) {
+        bucket.remove(timeout);
+        if(timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+          this.pending.decrementAndGet();
+          try {
+            timeout.task.run();
+          } catch(final RuntimeException e) {
+            LOGGER.error("A timer task failed", e);
+          }
+        }
+      } else {
+        timeout.rounds--;
+      }
+      timeout = next;
+    }
+  }
+
+  /**
+   * A scheduled task.
+   */
+  public static final class Timeout {
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private final TimerWheel wheel;
+    private final Runnable task;
+    // nanoseconds after the wheel started
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    // the rest are only touched by the ticking thread
+    private long rounds;
+    private Bucket bucket;
+    private Timeout previous;
+    private Timeout next;
+
+    Timeout(final TimerWheel wheel, final Runnable task, final long deadline) {
+      this.wheel = wheel;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the task, if it has not already run.
+     *
+     * @return {@code true} if the task will now never run
+     */
+    public boolean cancel() {
+      if(!this.state.compareAndSet(WAITING, CANCELLED)) {
+        return false;
+      }
+      this.wheel.pending.decrementAndGet();
+      // Unlinked by the ticking thread, which owns the buckets.
+      this.wheel.cancelled.add(this);
+      return true;
+    }
+  }
+
+  // A doubly linked list of timers, so that any of them can be removed in constant time.
+  private static final class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(final Timeout timeout) {
+      timeout.bucket = this;
+      if(this.head == null) {
+        this.head = this.tail = timeout;
+      } else {
+        this.tail.next = timeout;
+        timeout.previous = this.tail;
+        this.tail = timeout;
+      }
+    }
+
+    void remove(final Timeout timeout) {
+      if(timeout.previous != null) {
+        timeout.previous.next = timeout.next;
+      } else {
+        this.head = timeout.next;
+      }
+      if(timeout.next != null) {
+        timeout.next.previous = timeout.previous;
+      } else {
+        this.tail = timeout.previous;
+      }
+      timeout.previous = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of felix, licensed under the MIT License.
+ *
+ * Copyright (c) Korobi <https://korobi.io>
+ * Copyright (c) SpongePowered <https://spongepowered.org>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.spongepowered.felix.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A fixed-size ring of the most recent raw lines sent and received on every platform.
+ *
+ * <p>Recording is lock-free and allocates one small entry per line - the line itself is only referenced - so
+ * the trace can stay on all the time, and be dumped when something goes wrong.</p>
+ */
+public final class WireTrace {
+  private final int mask;
+  private final AtomicLong next = new AtomicLong();
+  private final AtomicReferenceArray<Entry> entries;
+  private final AtomicLong lastDump = new AtomicLong(Long.MIN_VALUE);
+
+  public WireTrace(final int capacity) {
+    final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.entries = new AtomicReferenceArray<>(size);
+  }
+
+  /**
+   * Records a line.
+   *
+   * @param source where the line came from, or went to
+   * @param context a platform-specific number identifying where the line belongs, such as a Discord channel id
+   * @param line the line
+   */
+  public void record(final Source source, final long context, final String line) {
+    final long sequence = this.next.getAndIncrement();
+    // the entry's fields are final, so a dump that sees the entry sees all of it
+    final Entry entry = new Entry(sequence, System.currentTimeMillis(), context, source, line);
+    this.entries.lazySet((int) (sequence & this.mask), entry);
+  }
+
+  /**
+   * Writes out the most recent lines, oldest first.
+   *
+   * @param count the maximum number of lines
+   * @param out receives each formatted line
+   * @return the number of lines written
+   */
+  public int dump(final int count, final Consumer<String> out) {
+    final SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+    final long end = this.next.get();
+    final long start = Math.max(0, end - Math.min(count, this.mask + 1));
+    int dumped = 0;
+    for(long sequence = start; sequence < end; sequence++) {
+      final Entry entry = this.entries.get((int) (sequence & this.mask));
+      if(entry == null || entry.sequence != sequence) {
+        continue; // not yet written, or already overwritten
+      }
+      out.accept(format.format(new Date(entry.time)) + ' ' + entry.source.prefix + (entry.context == 0 ? "" : " [" + entry.context + ']') + ' ' + redact(entry.line));
+      dumped++;
+    }
+    return dumped;
+  }
+
+  /**
+   * Writes out the most recent lines, unless that has already been done recently.
+   *
+   * @param count the maximum number of lines
+   * @param interval the minimum time between dumps, in milliseconds
+   * @param out receives each formatted line
+   * @return {@code true} if the lines were written
+   */
+  public boolean dumpAtMostEvery(final int count, final long interval, final Consumer<String> out) {
+    final long now = System.currentTimeMillis();
+    final long last = this.lastDump.get();
+    if(last != Long.MIN_VALUE && now - last < interval || !this.lastDump.compareAndSet(last, now)) {
+      return false;
+    }
+    this.dump(count, out);
+    return true;
+  }
+
+  private static String redact(final String line) {
+    if(line.regionMatches(true, 0, "PASS ", 0, 5) || line.regionMatches(true, 0, "AUTHENTICATE ", 0, 13)) {
+      return line.substring(0, line.indexOf(' ')) + " <redacted>";
+    }
+    final int identify = line.toUpperCase(Locale.ENGLISH).indexOf(":IDENTIFY ");
+    if(identify != -1) {
+      return line.substring(0, identify) + ":IDENTIFY <redacted>";
+    }
+    return line;
+  }
+
+  private static final class Entry {
+    final long sequence;
+    final long time;
+    final long context;
+    final Source source;
+    final String line;
+
+    Entry(final long sequence, final long time, final long context, final Source source, final String line) {
+      this.sequence = sequence;
+      this.time = time;
+      this.context = context;
+      this.source = source;
+      this.line = line;
+    }
+  }
+
+  public enum Source {
+    IRC_IN("IRC <"),
+    IRC_OUT("IRC >"),
+    DISCORD_IN("Discord <"),
+    DISCORD_OUT("Discord >");
+
+    final String prefix;
+
+    Source(final String prefix) {
+      this.prefix = prefix;
+    }
+  }
+}